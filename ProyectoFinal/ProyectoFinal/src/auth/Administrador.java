@@ -12,4 +12,13 @@ public class Administrador extends Usuario {
     public Administrador() {
         super("admin", "admin123"); // Usuario y contraseña predeterminados
     }
+
+    /**
+     * Restaura el administrador con la credencial guardada en el archivo de usuarios.
+     * @param credencial Credencial PBKDF2 (o contraseña antigua en texto plano).
+     */
+    Administrador(String credencial) {
+        super("admin");
+        setCredencial(credencial);
+    }
 }
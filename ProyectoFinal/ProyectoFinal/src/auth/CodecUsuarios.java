@@ -0,0 +1,138 @@
+package auth;
+
+import main.persistencia.CodecBinario;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Codificador binario versionado del archivo de usuarios ({@code usuarios.dat}).
+ * <p>
+ * Formato actual (versión 3): marca {@code UDFU}, byte de versión y luego registros hasta el
+ * final del archivo, cada uno con un byte de tipo, el nombre de usuario, la credencial PBKDF2 y
+ * la suma CRC32C del registro. Los registros nuevos se anexan al final; si un nombre aparece
+ * varias veces, vale el último. La suma va en cada registro y no en la cabecera porque el
+ * archivo crece con cada registro anexado.
+ * <p>
+ * La versión 2 no llevaba la suma. La versión 1 llevaba además la cantidad de usuarios antes
+ * de los registros y las contraseñas en texto plano; se leen para migrarlas.
+ */
+final class CodecUsuarios {
+    static final byte[] MARCA = {'U', 'D', 'F', 'U'};
+    private static final int VERSION = 3;
+    private static final int VERSION_SIN_SUMA = 2;
+    private static final int VERSION_CON_CANTIDAD = 1;
+    private static final int TIPO_USUARIO = 0;
+    private static final int TIPO_ADMINISTRADOR = 1;
+
+    private CodecUsuarios() { }
+
+    /**
+     * Resultado de leer el archivo de usuarios.
+     */
+    static final class Lectura {
+        /** Versión del archivo leído. */
+        int version;
+        /** Registros leídos, incluidos los que reemplazan a otros anteriores. */
+        int registros;
+        /** Bytes hasta el último registro completo; lo que sigue es un registro a medio escribir. */
+        int bytesValidos;
+        /** true si se omitió algún registro completo cuya suma no coincide. */
+        boolean danado;
+    }
+
+    /**
+     * Indica si el contenido del archivo está en el formato binario (y no en el de serialización de Java).
+     */
+    static boolean esFormatoBinario(byte[] datos) {
+        if (datos.length < MARCA.length) return false;
+        for (int i = 0; i < MARCA.length; i++) {
+            if (datos[i] != MARCA[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Codifica el archivo completo: cabecera y un registro por usuario.
+     */
+    static byte[] codificar(Collection<Usuario> usuarios) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        escribirCabecera(out);
+        for (Usuario u : usuarios) escribirRegistro(out, u);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Escribe la marca y la versión al inicio de un archivo nuevo.
+     */
+    static void escribirCabecera(DataOutputStream out) throws IOException {
+        out.write(MARCA);
+        out.writeByte(VERSION);
+    }
+
+    /**
+     * Escribe el registro de un usuario, para anexarlo al final del archivo.
+     */
+    static void escribirRegistro(DataOutputStream out, Usuario u) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream registro = new DataOutputStream(bytes);
+        registro.writeByte(u instanceof Administrador ? TIPO_ADMINISTRADOR : TIPO_USUARIO);
+        CodecBinario.escribirTexto(registro, u.getUsername());
+        CodecBinario.escribirTexto(registro, u.getPassword());
+
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray());
+        bytes.writeTo(out);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Lee el archivo de usuarios completo (incluida la marca).
+     * @param datos Contenido del archivo.
+     * @param destino Mapa por nombre de usuario donde se agregan los usuarios leídos.
+     * @return Versión, cantidad de registros y longitud válida del archivo.
+     */
+    static Lectura leer(byte[] datos, Map<String, Usuario> destino) throws IOException {
+        if (!esFormatoBinario(datos)) throw new IOException("usuarios.dat no tiene la marca esperada");
+        ByteArrayInputStream bytes = new ByteArrayInputStream(datos, MARCA.length, datos.length - MARCA.length);
+        DataInputStream in = new DataInputStream(bytes);
+
+        Lectura lectura = new Lectura();
+        lectura.version = in.readUnsignedByte();
+        if (lectura.version != VERSION && lectura.version != VERSION_SIN_SUMA && lectura.version != VERSION_CON_CANTIDAD) {
+            throw new IOException("Versión de usuarios.dat no soportada: " + lectura.version);
+        }
+        int cantidad = lectura.version == VERSION_CON_CANTIDAD ? CodecBinario.leerVarInt(in) : Integer.MAX_VALUE;
+        lectura.bytesValidos = datos.length - bytes.available();
+
+        boolean conSuma = lectura.version == VERSION;
+        while (lectura.registros < cantidad && bytes.available() > 0) {
+            Usuario u;
+            try {
+                int inicio = datos.length - bytes.available();
+                int tipo = in.readUnsignedByte();
+                String username = CodecBinario.leerTexto(in);
+                String credencial = CodecBinario.leerTexto(in);
+                if (conSuma) {
+                    CRC32C crc = new CRC32C();
+                    crc.update(datos, inicio, datos.length - bytes.available() - inicio);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        // Los siguientes registros tienen su propia suma: se omite solo este
+                        lectura.danado = true;
+                        continue;
+                    }
+                }
+                u = tipo == TIPO_ADMINISTRADOR ? new Administrador(credencial) : Usuario.conCredencial(username, credencial);
+            } catch (EOFException e) {
+                break; // Registro a medio escribir: se descarta
+            }
+            destino.put(u.getUsername(), u);
+            lectura.registros++;
+            lectura.bytesValidos = datos.length - bytes.available();
+        }
+        return lectura;
+    }
+}
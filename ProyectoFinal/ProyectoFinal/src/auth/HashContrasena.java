@@ -0,0 +1,87 @@
+package auth;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Derivación de contraseñas con PBKDF2 (HMAC-SHA256) y sal aleatoria por usuario.
+ * <p>
+ * El resultado se guarda como {@code pbkdf2$<iteraciones>$<sal>$<hash>}, con sal y hash en
+ * Base64, de modo que cada credencial recuerda con qué factor de trabajo se generó. El factor
+ * se configura con {@code -Dforo.auth.iteraciones} (210000 por defecto); las credenciales con
+ * menos iteraciones se regeneran en el siguiente inicio de sesión exitoso.
+ */
+final class HashContrasena {
+    private static final String PREFIJO = "pbkdf2$";
+    private static final String ALGORITMO = "PBKDF2WithHmacSHA256";
+    private static final int BYTES_SAL = 16;
+    private static final int BITS_HASH = 256;
+    static final int ITERACIONES = Integer.getInteger("foro.auth.iteraciones", 210_000);
+
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
+    private HashContrasena() { }
+
+    /**
+     * Genera la credencial de una contraseña con una sal nueva y el factor de trabajo configurado.
+     */
+    static String generar(String contrasena) {
+        byte[] sal = new byte[BYTES_SAL];
+        ALEATORIO.nextBytes(sal);
+        byte[] hash = derivar(contrasena, sal, ITERACIONES);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIJO + ITERACIONES + "$" + b64.encodeToString(sal) + "$" + b64.encodeToString(hash);
+    }
+
+    /**
+     * Verifica una contraseña contra una credencial guardada, comparando en tiempo constante.
+     */
+    static boolean verificar(String contrasena, String credencial) {
+        if (contrasena == null || !esHash(credencial)) return false;
+        String[] partes = credencial.split("\\$");
+        if (partes.length != 4) return false;
+        try {
+            int iteraciones = Integer.parseInt(partes[1]);
+            byte[] sal = Base64.getDecoder().decode(partes[2]);
+            byte[] esperado = Base64.getDecoder().decode(partes[3]);
+            return MessageDigest.isEqual(esperado, derivar(contrasena, sal, iteraciones));
+        } catch (IllegalArgumentException e) {
+            return false; // Credencial dañada
+        }
+    }
+
+    /**
+     * Indica si la credencial es un hash de este formato (y no una contraseña en texto plano antigua).
+     */
+    static boolean esHash(String credencial) {
+        return credencial != null && credencial.startsWith(PREFIJO);
+    }
+
+    /**
+     * Indica si la credencial se generó con menos iteraciones que las configuradas.
+     */
+    static boolean necesitaRegenerarse(String credencial) {
+        if (!esHash(credencial)) return true;
+        int fin = credencial.indexOf('$', PREFIJO.length());
+        try {
+            return Integer.parseInt(credencial.substring(PREFIJO.length(), fin)) < ITERACIONES;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    private static byte[] derivar(String contrasena, byte[] sal, int iteraciones) {
+        PBEKeySpec spec = new PBEKeySpec(contrasena.toCharArray(), sal, iteraciones, BITS_HASH);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITMO).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 no disponible en esta JVM", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
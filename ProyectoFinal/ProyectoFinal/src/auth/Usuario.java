@@ -5,20 +5,43 @@ import java.io.Serializable;
 /**
  * Clase que representa a un usuario del sistema.
  * Implementa Serializable para permitir la persistencia de usuarios en archivos.
+ * <p>
+ * La contraseña no se guarda: solo su credencial PBKDF2 con sal (ver {@link HashContrasena}).
  */
 public class Usuario implements Serializable {
     private static final long serialVersionUID = 1L;
     private String username;
+    // Credencial PBKDF2; en archivos antiguos puede ser la contraseña en texto plano
     private String password;
 
     /**
      * Constructor que inicializa un usuario con nombre de usuario y contraseña.
      * @param username Nombre de usuario.
-     * @param password Contraseña del usuario.
+     * @param password Contraseña del usuario; se guarda solo su hash.
      */
     public Usuario(String username, String password) {
         this.username = username;
-        this.password = password;
+        this.password = HashContrasena.generar(password);
+    }
+
+    /**
+     * Crea un usuario sin credencial; quien lo crea la asigna con {@link #setCredencial}.
+     * @param username Nombre de usuario.
+     */
+    Usuario(String username) {
+        this.username = username;
+    }
+
+    /**
+     * Crea un usuario a partir de una credencial ya guardada.
+     * @param username Nombre de usuario.
+     * @param credencial Credencial tal como está en el archivo.
+     * @return El usuario, sin volver a calcular la credencial.
+     */
+    static Usuario conCredencial(String username, String credencial) {
+        Usuario usuario = new Usuario(username);
+        usuario.setCredencial(credencial);
+        return usuario;
     }
 
     /**
@@ -27,10 +50,20 @@ public class Usuario implements Serializable {
      */
     public String getUsername() { return username; }
 
+    /**
+     * Obtiene la credencial almacenada, solo para persistencia dentro del paquete.
+     */
+    String getPassword() { return password; }
+
+    /**
+     * Reemplaza la credencial (al migrar contraseñas en texto plano o subir el factor de trabajo).
+     */
+    void setCredencial(String credencial) { this.password = credencial; }
+
     /**
      * Verifica si la contraseña proporcionada coincide con la del usuario.
      * @param password Contraseña a verificar.
      * @return true si la contraseña es correcta, false en caso contrario.
      */
-    public boolean checkPassword(String password) { return this.password.equals(password); }
+    public boolean checkPassword(String password) { return HashContrasena.verificar(password, this.password); }
 }
@@ -0,0 +1,132 @@
+package foro;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Análisis de texto en español para el índice de búsqueda: minúsculas, eliminación de tildes
+ * (también de la ñ y la ü), palabras vacías y una reducción ligera de plurales y género
+ * ("ideas", "idea" → "ide"; "luces" → "luz"). La reducción es deliberadamente conservadora:
+ * agrupa las formas de una misma palabra sin intentar llegar a la raíz gramatical.
+ */
+final class AnalizadorTexto {
+    private static final Set<String> PALABRAS_VACIAS = new HashSet<>(Arrays.asList(
+            "a", "al", "algo", "ante", "asi", "aun", "como", "con", "contra", "cual", "cuando", "de", "del",
+            "desde", "donde", "durante", "e", "el", "ella", "ellas", "ellos", "en", "entre", "era", "es",
+            "esa", "ese", "eso", "esta", "este", "esto", "fue", "ha", "hay", "la", "las", "le", "les", "lo",
+            "los", "mas", "me", "mi", "muy", "ni", "no", "nos", "o", "para", "pero", "por", "porque", "que",
+            "se", "sea", "ser", "si", "sin", "sobre", "son", "su", "sus", "tambien", "te", "tu", "u", "un",
+            "una", "uno", "unos", "unas", "y", "ya", "yo"));
+
+    private AnalizadorTexto() { }
+
+    /** Longitud de la palabra vacía más larga; las palabras más largas no se buscan en la lista */
+    private static final int MAX_PALABRA_VACIA = 7;
+
+    /**
+     * Devuelve los términos distintos de un texto, ya reducidos, sin palabras vacías.
+     * Crea una sola cadena por término: el índice analiza todo el texto del foro al reconstruirse.
+     */
+    static Set<String> terminos(String texto) {
+        Set<String> resultado = new HashSet<>();
+        if (texto == null) return resultado;
+        char[] c = normalizar(texto);
+        int inicio = -1;
+        for (int i = 0; i <= c.length; i++) {
+            boolean letra = i < c.length && Character.isLetterOrDigit(c[i]);
+            if (letra && inicio < 0) {
+                inicio = i;
+            } else if (!letra && inicio >= 0) {
+                if (i - inicio > MAX_PALABRA_VACIA || !PALABRAS_VACIAS.contains(new String(c, inicio, i - inicio))) {
+                    resultado.add(reducir(c, inicio, i));
+                }
+                inicio = -1;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Divide un texto en palabras normalizadas (minúsculas y sin tildes), en orden.
+     */
+    static List<String> palabras(String texto) {
+        List<String> resultado = new ArrayList<>();
+        char[] c = normalizar(texto);
+        int inicio = -1;
+        for (int i = 0; i <= c.length; i++) {
+            boolean letra = i < c.length && Character.isLetterOrDigit(c[i]);
+            if (letra && inicio < 0) {
+                inicio = i;
+            } else if (!letra && inicio >= 0) {
+                resultado.add(new String(c, inicio, i - inicio));
+                inicio = -1;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Reduce una palabra normalizada: quita el plural y la vocal final de género.
+     */
+    static String reducir(String palabra) {
+        return reducir(palabra.toCharArray(), 0, palabra.length());
+    }
+
+    /**
+     * Reduce la palabra {@code c[inicio, fin)}; puede modificar el arreglo.
+     */
+    private static String reducir(char[] c, int inicio, int fin) {
+        int n = fin - inicio;
+        if (n > 4 && c[fin - 4] == 'e' && c[fin - 3] == 's' && c[fin - 2] == 'e' && c[fin - 1] == 's') {
+            fin -= 2; // intereses → interes
+        } else if (n > 4 && c[fin - 3] == 'c' && c[fin - 2] == 'e' && c[fin - 1] == 's') {
+            c[fin - 3] = 'z'; // luces → luz
+            fin -= 2;
+        } else if (n > 3 && c[fin - 1] == 's' && esVocalDeGenero(c[fin - 2])) {
+            fin--; // casos → caso
+        }
+        if (fin - inicio > 3 && esVocalDeGenero(c[fin - 1])) fin--;
+        return new String(c, inicio, fin - inicio);
+    }
+
+    private static boolean esVocalDeGenero(char c) {
+        return c == 'a' || c == 'e' || c == 'o';
+    }
+
+    private static char[] normalizar(String texto) {
+        // Las letras del español se pliegan directamente; Normalizer solo para otros alfabetos
+        char[] resultado = new char[texto.length()];
+        for (int i = 0; i < texto.length(); i++) {
+            char c = Character.toLowerCase(texto.charAt(i));
+            if (c >= 0x80) {
+                c = plegar(c);
+                if (c == 0) return normalizarCompleto(texto);
+            }
+            resultado[i] = c;
+        }
+        return resultado;
+    }
+
+    private static char plegar(char c) {
+        switch (c) {
+            case 'á': case 'à': case 'ä': case 'â': return 'a';
+            case 'é': case 'è': case 'ë': case 'ê': return 'e';
+            case 'í': case 'ì': case 'ï': case 'î': return 'i';
+            case 'ó': case 'ò': case 'ö': case 'ô': return 'o';
+            case 'ú': case 'ù': case 'ü': case 'û': return 'u';
+            case 'ñ': return 'n';
+            case 'ç': return 'c';
+            default: return Character.isLetterOrDigit(c) ? 0 : ' ';
+        }
+    }
+
+    private static char[] normalizarCompleto(String texto) {
+        String descompuesto = Normalizer.normalize(texto.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(descompuesto.length());
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) sb.append(c);
+        }
+        return sb.toString().toCharArray();
+    }
+}
@@ -0,0 +1,191 @@
+package foro;
+
+import main.persistencia.CodecBinario;
+import main.persistencia.EntradaBuffer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codificador binario versionado de la instantánea de ideas ({@code ideas.dat}).
+ * <p>
+ * Formato: marca {@code UDFI}, byte de versión, secuencia del diario (varint) y
+ * cantidad de ideas (varint). Desde la versión 2 cada idea se escribe como una cabecera
+ * (nombre, código, título, URL de imagen y estado) seguida de un cuerpo con prefijo de
+ * longitud (contenido, votos y comentarios), de modo que un lector puede saltar los
+ * cuerpos y decodificarlos solo cuando se necesitan. La versión 3 agrega el identificador
+ * de la idea al inicio de la cabecera.
+ */
+final class CodecIdeas {
+    static final byte[] MARCA = {'U', 'D', 'F', 'I'};
+    private static final int VERSION = 3;
+    private static final int VERSION_SIN_ID = 2;
+    private static final int VERSION_SIN_INDICE = 1;
+
+    private CodecIdeas() { }
+
+    /**
+     * Indica si una instantánea con el byte de versión dado guarda el identificador de cada
+     * idea; las anteriores reciben uno nuevo en cada carga.
+     */
+    static boolean guardaIdentificadores(int version) {
+        return version == VERSION;
+    }
+
+    /**
+     * Escribe la instantánea completa de ideas.
+     * @param out Flujo de salida.
+     * @param ideas Ideas a guardar.
+     * @param secuencia Última secuencia del diario incluida en la instantánea.
+     */
+    static void escribir(DataOutputStream out, List<Idea> ideas, long secuencia) throws IOException {
+        out.write(MARCA);
+        out.writeByte(VERSION);
+        CodecBinario.escribirVarLong(out, secuencia);
+        CodecBinario.escribirVarInt(out, ideas.size());
+
+        ByteArrayOutputStream bufferCuerpo = new ByteArrayOutputStream(256);
+        DataOutputStream cuerpo = new DataOutputStream(bufferCuerpo);
+        for (Idea idea : ideas) {
+            CodecBinario.escribirVarLong(out, idea.getId());
+            CodecBinario.escribirTexto(out, idea.getNombreEstudiante());
+            CodecBinario.escribirTexto(out, idea.getCodigoEstudiante());
+            CodecBinario.escribirTexto(out, idea.getTitulo());
+            CodecBinario.escribirTexto(out, idea.getImageUrl());
+            out.writeByte(idea.getEstado().ordinal());
+
+            bufferCuerpo.reset();
+            escribirCuerpo(cuerpo, idea);
+            out.writeInt(bufferCuerpo.size());
+            bufferCuerpo.writeTo(out);
+        }
+    }
+
+    /**
+     * Lee y decodifica por completo una instantánea cuya marca ya fue consumida.
+     * @param in Flujo posicionado justo después de la marca.
+     * @param destino Lista donde se agregan las ideas leídas.
+     * @return Secuencia del diario incluida en la instantánea.
+     */
+    static long leer(DataInputStream in, List<Idea> destino) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version == VERSION_SIN_INDICE) return leerSinIndice(in, destino);
+        if (version != VERSION && version != VERSION_SIN_ID) {
+            throw new IOException("Versión de ideas.dat no soportada: " + version);
+        }
+        long secuencia = CodecBinario.leerVarLong(in);
+        int cantidad = CodecBinario.leerVarInt(in);
+        for (int i = 0; i < cantidad; i++) {
+            Idea idea = leerCabecera(in, version == VERSION);
+            in.readInt(); // Longitud del cuerpo, no se necesita al leer en orden
+            leerCuerpo(in, idea);
+            destino.add(idea);
+        }
+        return secuencia;
+    }
+
+    /**
+     * Lee solo las cabeceras de una instantánea mapeada en memoria; el cuerpo de cada idea
+     * queda como una vista del buffer y se decodifica la primera vez que se accede a él.
+     * @param buffer Buffer posicionado justo después de la marca.
+     * @param destino Lista donde se agregan las ideas leídas.
+     * @return Secuencia del diario incluida en la instantánea.
+     */
+    static long leerDiferido(ByteBuffer buffer, List<Idea> destino) throws IOException {
+        DataInputStream in = new DataInputStream(new EntradaBuffer(buffer));
+        int version = buffer.get(buffer.position());
+        if (version != VERSION && version != VERSION_SIN_ID) return leer(in, destino);
+        in.readUnsignedByte();
+        long secuencia = CodecBinario.leerVarLong(in);
+        int cantidad = CodecBinario.leerVarInt(in);
+        for (int i = 0; i < cantidad; i++) {
+            Idea idea = leerCabecera(in, version == VERSION);
+            int longitud = in.readInt();
+            idea.diferirCuerpo(buffer.slice(buffer.position(), longitud));
+            buffer.position(buffer.position() + longitud);
+            destino.add(idea);
+        }
+        return secuencia;
+    }
+
+    /**
+     * Decodifica el cuerpo (contenido, votos y comentarios) sobre una idea ya creada.
+     */
+    static void leerCuerpo(DataInputStream in, Idea idea) throws IOException {
+        idea.restaurarContenido(CodecBinario.leerTexto(in));
+        leerVotosYComentarios(in, idea);
+    }
+
+    private static void leerVotosYComentarios(DataInputStream in, Idea idea) throws IOException {
+        int votos = CodecBinario.leerVarInt(in);
+        for (int v = 0; v < votos; v++) {
+            idea.addVote(CodecBinario.leerTexto(in), in.readUnsignedByte());
+        }
+
+        int comentarios = CodecBinario.leerVarInt(in);
+        for (int c = 0; c < comentarios; c++) {
+            String autor = CodecBinario.leerTexto(in);
+            String texto = CodecBinario.leerTexto(in);
+            idea.agregarComentario(new Comentario(autor, texto, CodecBinario.leerFecha(in)));
+        }
+    }
+
+    private static void escribirCuerpo(DataOutputStream out, Idea idea) throws IOException {
+        CodecBinario.escribirTexto(out, idea.getContenido());
+
+        Map<String, Integer> votos = idea.getVotos();
+        CodecBinario.escribirVarInt(out, votos.size());
+        for (Map.Entry<String, Integer> voto : votos.entrySet()) {
+            CodecBinario.escribirTexto(out, voto.getKey());
+            out.writeByte(voto.getValue());
+        }
+
+        List<Comentario> comentarios = idea.getComentarios();
+        CodecBinario.escribirVarInt(out, comentarios.size());
+        for (Comentario comentario : comentarios) {
+            CodecBinario.escribirTexto(out, comentario.getAutor());
+            CodecBinario.escribirTexto(out, comentario.getTexto());
+            CodecBinario.escribirFecha(out, comentario.getFechaCreacion());
+        }
+    }
+
+    private static Idea leerCabecera(DataInputStream in, boolean conId) throws IOException {
+        long id = conId ? CodecBinario.leerVarLong(in) : 0;
+        String nombre = CodecBinario.leerTexto(in);
+        String codigo = CodecBinario.leerTexto(in);
+        String titulo = CodecBinario.leerTexto(in);
+        String imageUrl = CodecBinario.leerTexto(in);
+        Idea idea = new Idea(nombre, codigo, titulo, null, imageUrl);
+        if (conId) idea.restaurarId(id);
+        aplicarEstado(idea, in.readUnsignedByte());
+        return idea;
+    }
+
+    private static void aplicarEstado(Idea idea, int ordinal) {
+        Idea.Estado estado = Idea.Estado.values()[ordinal];
+        if (estado == Idea.Estado.APROBADA) idea.aprobar();
+        else if (estado == Idea.Estado.DESAPROBADA) idea.desaprobar();
+    }
+
+    /**
+     * Lee el formato de la versión 1, donde todos los campos de cada idea van seguidos.
+     */
+    private static long leerSinIndice(DataInputStream in, List<Idea> destino) throws IOException {
+        long secuencia = CodecBinario.leerVarLong(in);
+        int cantidad = CodecBinario.leerVarInt(in);
+        for (int i = 0; i < cantidad; i++) {
+            Idea idea = new Idea(
+                CodecBinario.leerTexto(in),
+                CodecBinario.leerTexto(in),
+                CodecBinario.leerTexto(in),
+                CodecBinario.leerTexto(in),
+                CodecBinario.leerTexto(in));
+            aplicarEstado(idea, in.readUnsignedByte());
+            leerVotosYComentarios(in, idea);
+            destino.add(idea);
+        }
+        return secuencia;
+    }
+}
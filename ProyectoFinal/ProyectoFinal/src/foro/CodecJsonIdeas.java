@@ -0,0 +1,140 @@
+package foro;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Representación JSON de las ideas y comentarios para la API HTTP del servidor del foro.
+ * Trabaja con los mapas y listas de {@link main.persistencia.Json}.
+ * <p>
+ * Una idea se representa con todos sus datos, incluidos identificador, versión, votos y
+ * comentarios, para que el cliente pueda mantener una copia local completa.
+ */
+public final class CodecJsonIdeas {
+
+    private CodecJsonIdeas() { }
+
+    /**
+     * Convierte una idea completa en un mapa JSON.
+     */
+    public static Map<String, Object> aMapa(Idea idea) {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        mapa.put("id", idea.getId());
+        mapa.put("version", idea.getVersion());
+        mapa.put("nombreEstudiante", idea.getNombreEstudiante());
+        mapa.put("codigoEstudiante", idea.getCodigoEstudiante());
+        mapa.put("titulo", idea.getTitulo());
+        mapa.put("contenido", idea.getContenido());
+        mapa.put("imageUrl", idea.getImageUrl());
+        mapa.put("estado", idea.getEstado().name());
+        mapa.put("votos", new LinkedHashMap<>(idea.getVotos()));
+        List<Object> comentarios = new ArrayList<>();
+        for (Comentario comentario : idea.getComentarios()) comentarios.add(aMapa(comentario));
+        mapa.put("comentarios", comentarios);
+        return mapa;
+    }
+
+    /**
+     * Convierte un comentario en un mapa JSON.
+     */
+    public static Map<String, Object> aMapa(Comentario comentario) {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        mapa.put("autor", comentario.getAutor());
+        mapa.put("texto", comentario.getTexto());
+        mapa.put("fecha", comentario.getFechaCreacion().toString());
+        return mapa;
+    }
+
+    /**
+     * Reconstruye una idea. Si el mapa no trae identificador, la idea conserva uno nuevo; el
+     * estado, los votos y los comentarios son opcionales.
+     * @throws IllegalArgumentException Si falta un campo obligatorio o tiene un tipo inválido.
+     */
+    public static Idea leerIdea(Map<String, Object> mapa) {
+        Idea idea = new Idea(texto(mapa, "nombreEstudiante", true), texto(mapa, "codigoEstudiante", true),
+                texto(mapa, "titulo", true), texto(mapa, "contenido", true), texto(mapa, "imageUrl", false));
+        if (mapa.get("id") != null) idea.restaurarId(entero(mapa, "id"));
+        if (mapa.get("version") != null) idea.setVersion((int) entero(mapa, "version"));
+        String estado = texto(mapa, "estado", false);
+        if (estado != null) {
+            switch (leerEstado(estado)) {
+                case APROBADA: idea.aprobar(); break;
+                case DESAPROBADA: idea.desaprobar(); break;
+                default: break;
+            }
+        }
+        Object votos = mapa.get("votos");
+        if (votos instanceof Map) {
+            for (Map.Entry<?, ?> voto : ((Map<?, ?>) votos).entrySet()) {
+                if (!(voto.getValue() instanceof Number)) throw new IllegalArgumentException("Voto inválido de " + voto.getKey());
+                idea.addVote(String.valueOf(voto.getKey()), ((Number) voto.getValue()).intValue());
+            }
+        }
+        Object comentarios = mapa.get("comentarios");
+        if (comentarios instanceof List) {
+            for (Object comentario : (List<?>) comentarios) idea.agregarComentario(leerComentario(comoMapa(comentario)));
+        }
+        return idea;
+    }
+
+    /**
+     * Reconstruye un comentario; sin fecha, se usa la actual.
+     * @throws IllegalArgumentException Si falta el autor o el texto, o la fecha es inválida.
+     */
+    public static Comentario leerComentario(Map<String, Object> mapa) {
+        String fecha = texto(mapa, "fecha", false);
+        try {
+            LocalDateTime fechaCreacion = fecha == null ? LocalDateTime.now() : LocalDateTime.parse(fecha);
+            return new Comentario(texto(mapa, "autor", true), texto(mapa, "texto", true), fechaCreacion);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha de comentario inválida: " + fecha);
+        }
+    }
+
+    /**
+     * Indica si dos comentarios son el mismo (mismo autor, texto y fecha), para identificar un
+     * comentario recibido por la API entre los de una idea.
+     */
+    public static boolean mismoComentario(Comentario a, Comentario b) {
+        return a.getAutor().equals(b.getAutor()) && a.getTexto().equals(b.getTexto())
+                && a.getFechaCreacion().equals(b.getFechaCreacion());
+    }
+
+    /**
+     * Lee el nombre de un estado.
+     * @throws IllegalArgumentException Si no es un estado conocido.
+     */
+    public static Idea.Estado leerEstado(String nombre) {
+        try {
+            return Idea.Estado.valueOf(nombre);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Estado desconocido: " + nombre);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> comoMapa(Object valor) {
+        if (!(valor instanceof Map)) throw new IllegalArgumentException("Se esperaba un objeto JSON");
+        return (Map<String, Object>) valor;
+    }
+
+    private static String texto(Map<String, Object> mapa, String campo, boolean obligatorio) {
+        Object valor = mapa.get(campo);
+        if (valor == null) {
+            if (obligatorio) throw new IllegalArgumentException("Falta el campo " + campo);
+            return null;
+        }
+        if (!(valor instanceof String)) throw new IllegalArgumentException("El campo " + campo + " debe ser texto");
+        return (String) valor;
+    }
+
+    private static long entero(Map<String, Object> mapa, String campo) {
+        Object valor = mapa.get(campo);
+        if (!(valor instanceof Long)) throw new IllegalArgumentException("El campo " + campo + " debe ser un entero");
+        return (Long) valor;
+    }
+}
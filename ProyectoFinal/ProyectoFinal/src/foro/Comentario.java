@@ -21,9 +21,19 @@ public class Comentario implements Serializable {
      * @param texto Contenido del comentario.
      */
     public Comentario(String autor, String texto) {
+        this(autor, texto, LocalDateTime.now());
+    }
+
+    /**
+     * Reconstruye un comentario existente conservando su fecha original.
+     * @param autor Nombre de usuario del autor del comentario.
+     * @param texto Contenido del comentario.
+     * @param fechaCreacion Fecha en que se creó el comentario.
+     */
+    Comentario(String autor, String texto, LocalDateTime fechaCreacion) {
         this.autor = autor;
         this.texto = texto;
-        this.fechaCreacion = LocalDateTime.now();
+        this.fechaCreacion = fechaCreacion;
     }
 
     /**
@@ -36,6 +46,11 @@ public class Comentario implements Serializable {
      */
     public String getTexto() { return texto; }
 
+    /**
+     * Devuelve la fecha de creación.
+     */
+    public LocalDateTime getFechaCreacion() { return fechaCreacion; }
+
     /**
      * Devuelve la fecha de creación en formato amigable.
      */
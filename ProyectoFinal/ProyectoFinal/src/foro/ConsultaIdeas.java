@@ -0,0 +1,221 @@
+package foro;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Consulta paginada de ideas: filtros, orden, tamaño de página y cursor opaco.
+ * <p>
+ * El cursor de cada página guarda la clave de orden de su último elemento, así la página
+ * siguiente empieza justo después de él aunque entretanto se agreguen o eliminen ideas
+ * (paginación por clave, no por posición). Un cursor solo vale para el mismo orden.
+ * <p>
+ * Ejemplo:
+ * <pre>
+ * PaginaIdeas pagina = ideaService.consultar(new ConsultaIdeas()
+ *         .estado(Idea.Estado.APROBADA).ordenarPor(ConsultaIdeas.Orden.MAS_RECIENTES).tamanoPagina(20));
+ * PaginaIdeas siguiente = ideaService.consultar(consulta.despuesDe(pagina.getSiguienteCursor()));
+ * </pre>
+ */
+public final class ConsultaIdeas {
+    /** Criterios de orden de los resultados. */
+    public enum Orden { MAS_ANTIGUAS, MAS_RECIENTES, TITULO, MEJOR_CALIFICADAS }
+
+    public static final int TAMANO_PAGINA_POR_DEFECTO = 50;
+    public static final int TAMANO_PAGINA_MAXIMO = 500;
+    private static final String VERSION_CURSOR = "1";
+
+    private Idea.Estado estado;
+    private String codigoEstudiante;
+    private LocalDateTime desde;
+    private LocalDateTime hasta;
+    private Orden orden = Orden.MAS_ANTIGUAS;
+    private int tamanoPagina = TAMANO_PAGINA_POR_DEFECTO;
+    private String cursor;
+
+    /** Solo ideas en este estado (null para cualquiera). */
+    public ConsultaIdeas estado(Idea.Estado estado) {
+        this.estado = estado;
+        return this;
+    }
+
+    /** Solo ideas de este código de estudiante (null para cualquiera). */
+    public ConsultaIdeas autor(String codigoEstudiante) {
+        this.codigoEstudiante = codigoEstudiante;
+        return this;
+    }
+
+    /** Solo ideas creadas en este instante o después (null sin límite). */
+    public ConsultaIdeas desde(LocalDateTime desde) {
+        this.desde = desde;
+        return this;
+    }
+
+    /** Solo ideas creadas antes de este instante (null sin límite). */
+    public ConsultaIdeas hasta(LocalDateTime hasta) {
+        this.hasta = hasta;
+        return this;
+    }
+
+    /** Orden de los resultados; por defecto, de la más antigua a la más nueva. */
+    public ConsultaIdeas ordenarPor(Orden orden) {
+        this.orden = Objects.requireNonNull(orden, "orden");
+        return this;
+    }
+
+    /**
+     * Cantidad de ideas por página, entre 1 y {@link #TAMANO_PAGINA_MAXIMO}.
+     */
+    public ConsultaIdeas tamanoPagina(int tamanoPagina) {
+        if (tamanoPagina < 1 || tamanoPagina > TAMANO_PAGINA_MAXIMO) {
+            throw new IllegalArgumentException("Tamaño de página fuera de rango: " + tamanoPagina);
+        }
+        this.tamanoPagina = tamanoPagina;
+        return this;
+    }
+
+    /**
+     * Continúa después de la página que devolvió este cursor (null para la primera página).
+     */
+    public ConsultaIdeas despuesDe(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    /**
+     * Clave de orden de una idea; también es el contenido del cursor.
+     */
+    private static final class Clave {
+        final long id;
+        final double numero;
+        final String texto;
+        final Idea idea;
+
+        Clave(long id, double numero, String texto, Idea idea) {
+            this.id = id;
+            this.numero = numero;
+            this.texto = texto;
+            this.idea = idea;
+        }
+    }
+
+    /**
+     * Ejecuta la consulta sobre ideas indexadas por identificador. Los órdenes por fecha recorren
+     * solo el rango de identificadores pedido, a partir del cursor.
+     */
+    PaginaIdeas ejecutar(NavigableMap<Long, Idea> porId) {
+        if (orden != Orden.MAS_ANTIGUAS && orden != Orden.MAS_RECIENTES) return ejecutar(porId.values());
+
+        Clave desdeCursor = leerCursor();
+        NavigableMap<Long, Idea> rango = porId.subMap(idMinimo(), true, idMaximo(), false);
+        Iterable<Idea> recorrido;
+        if (orden == Orden.MAS_ANTIGUAS) {
+            recorrido = (desdeCursor == null ? rango : rango.tailMap(desdeCursor.id, false)).values();
+        } else {
+            recorrido = (desdeCursor == null ? rango : rango.headMap(desdeCursor.id, false)).descendingMap().values();
+        }
+        List<Clave> pagina = new ArrayList<>(tamanoPagina + 1);
+        for (Idea idea : recorrido) {
+            if (!cumpleFiltros(idea)) continue;
+            pagina.add(clave(idea));
+            if (pagina.size() > tamanoPagina) break;
+        }
+        return armarPagina(pagina);
+    }
+
+    /**
+     * Ejecuta la consulta sobre cualquier colección. Solo se conservan las mejores
+     * {@code tamanoPagina + 1} claves en un montículo, sin ordenar todos los candidatos.
+     */
+    PaginaIdeas ejecutar(Collection<Idea> ideas) {
+        Clave desdeCursor = leerCursor();
+        Comparator<Clave> comparador = comparador();
+        PriorityQueue<Clave> mejores = new PriorityQueue<>(tamanoPagina + 2, comparador.reversed());
+        long minimo = idMinimo();
+        long maximo = idMaximo();
+        for (Idea idea : ideas) {
+            if (idea.getId() < minimo || idea.getId() >= maximo || !cumpleFiltros(idea)) continue;
+            Clave c = clave(idea);
+            if (desdeCursor != null && comparador.compare(c, desdeCursor) <= 0) continue;
+            mejores.add(c);
+            if (mejores.size() > tamanoPagina + 1) mejores.poll();
+        }
+        List<Clave> pagina = new ArrayList<>(mejores);
+        pagina.sort(comparador);
+        return armarPagina(pagina);
+    }
+
+    private boolean cumpleFiltros(Idea idea) {
+        return (estado == null || idea.getEstado() == estado)
+                && (codigoEstudiante == null || codigoEstudiante.equals(idea.getCodigoEstudiante()));
+    }
+
+    private long idMinimo() {
+        return desde == null ? Long.MIN_VALUE : GeneradorIds.primeroDesde(epoca(desde));
+    }
+
+    private long idMaximo() {
+        return hasta == null ? Long.MAX_VALUE : GeneradorIds.primeroDesde(epoca(hasta));
+    }
+
+    private static long epoca(LocalDateTime fecha) {
+        return fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private Clave clave(Idea idea) {
+        switch (orden) {
+            case TITULO:
+                return new Clave(idea.getId(), 0, Objects.toString(idea.getTitulo(), "").toLowerCase(Locale.ROOT), idea);
+            case MEJOR_CALIFICADAS:
+                return new Clave(idea.getId(), idea.getAverageRating(), "", idea);
+            default:
+                return new Clave(idea.getId(), 0, "", idea);
+        }
+    }
+
+    private Comparator<Clave> comparador() {
+        Comparator<Clave> porId = Comparator.comparingLong(c -> c.id);
+        switch (orden) {
+            case MAS_RECIENTES:
+                return porId.reversed();
+            case TITULO:
+                return Comparator.<Clave, String>comparing(c -> c.texto).thenComparing(porId);
+            case MEJOR_CALIFICADAS:
+                return Comparator.<Clave>comparingDouble(c -> -c.numero).thenComparing(porId);
+            default:
+                return porId;
+        }
+    }
+
+    /**
+     * Toma las primeras {@link #tamanoPagina} claves ordenadas y arma la página con su cursor.
+     */
+    private PaginaIdeas armarPagina(List<Clave> ordenadas) {
+        int fin = Math.min(ordenadas.size(), tamanoPagina);
+        List<ResumenIdea> elementos = new ArrayList<>(fin);
+        for (int i = 0; i < fin; i++) elementos.add(new ResumenIdea(ordenadas.get(i).idea));
+        String siguiente = ordenadas.size() > fin ? escribirCursor(ordenadas.get(fin - 1)) : null;
+        return new PaginaIdeas(elementos, siguiente);
+    }
+
+    private String escribirCursor(Clave c) {
+        String texto = String.join("|", VERSION_CURSOR, orden.name(), Long.toString(c.id), Double.toString(c.numero), c.texto);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Clave leerCursor() {
+        if (cursor == null) return null;
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = texto.split("\\|", 5);
+            if (partes.length != 5 || !partes[0].equals(VERSION_CURSOR) || !partes[1].equals(orden.name())) {
+                throw new IllegalArgumentException("El cursor no corresponde a esta consulta");
+            }
+            return new Clave(Long.parseLong(partes[2]), Double.parseDouble(partes[3]), partes[4], null);
+        } catch (IllegalArgumentException e) { // Incluye Base64 y números mal formados
+            throw new IllegalArgumentException("Cursor de consulta inválido", e);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package foro;
+
+import main.persistencia.Almacen;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Diario de operaciones (write-ahead log) de solo anexado para {@link IdeaService}.
+ * <p>
+ * Cada cambio sobre el foro se guarda como un registro pequeño al final de la entrada
+ * {@code ideas.log} del {@link Almacen},
+ * de modo que el costo de escritura depende del cambio y no del tamaño del foro.
+ * Al iniciar, los registros se reproducen sobre la última instantánea de {@code ideas.dat}.
+ * <p>
+ * Formato de cada registro: {@code [int longitud][long secuencia][byte operación][campos...]}.
+ * Un registro incompleto al final del archivo (por ejemplo, tras un cierre abrupto) se ignora.
+ * Las ideas se referencian por su identificador, así registrar un cambio no busca la idea en
+ * la lista; los comentarios, por su posición dentro de la idea, que es determinista al
+ * reproducir los registros en orden sobre la misma instantánea. Los registros de versiones
+ * anteriores, que referencian las ideas por su posición en la lista, se siguen reproduciendo.
+ * <p>
+ * Los métodos {@code registrar*} solo codifican el registro y lo dejan en memoria; los
+ * registros pendientes se escriben juntos con {@link #escribir(byte[])}. El llamador
+ * sincroniza el acceso: {@link IdeaService} registra y toma los pendientes con su propio
+ * bloqueo, y solo su hilo de escritura toca el archivo.
+ */
+class DiarioIdeas {
+    private static final byte OP_AGREGAR = 1;
+    private static final byte OP_APROBAR = 2;
+    private static final byte OP_DESAPROBAR = 3;
+    private static final byte OP_ELIMINAR = 4;
+    private static final byte OP_VOTAR = 5;
+    private static final byte OP_COMENTAR = 6;
+    private static final byte OP_ELIMINAR_COMENTARIO = 7;
+    private static final byte OP_AGREGAR_CON_ID = 8;
+    private static final byte OP_APROBAR_POR_ID = 9;
+    private static final byte OP_DESAPROBAR_POR_ID = 10;
+    private static final byte OP_ELIMINAR_POR_ID = 11;
+    private static final byte OP_VOTAR_POR_ID = 12;
+    private static final byte OP_COMENTAR_POR_ID = 13;
+    private static final byte OP_ELIMINAR_COMENTARIO_POR_ID = 14;
+    private static final int MAX_LONGITUD_REGISTRO = 16 * 1024 * 1024;
+
+    private final Almacen almacen;
+    private final String nombre;
+    private final ByteArrayOutputStream pendientes = new ByteArrayOutputStream();
+    private final DataOutputStream salidaPendientes = new DataOutputStream(pendientes);
+    private long ultimaSecuencia = 0;
+    private int registros = 0;
+    private boolean altasSinId = false;
+
+    /**
+     * Crea un diario asociado a una entrada del almacén.
+     * @param almacen Almacén donde se guarda el diario.
+     * @param nombre Nombre de la entrada del diario.
+     */
+    DiarioIdeas(Almacen almacen, String nombre) {
+        this.almacen = almacen;
+        this.nombre = nombre;
+    }
+
+    /**
+     * Devuelve la secuencia del último registro escrito o reproducido.
+     */
+    long getUltimaSecuencia() { return ultimaSecuencia; }
+
+    /**
+     * Devuelve la cantidad de registros pendientes de compactar, escritos o no.
+     */
+    int getRegistros() { return registros; }
+
+    /**
+     * Indica si la última reproducción aplicó altas de versiones anteriores, sin identificador:
+     * esas ideas recibieron uno nuevo que solo se conserva al escribir una instantánea.
+     */
+    boolean tieneAltasSinId() { return altasSinId; }
+
+    /**
+     * Devuelve los registros codificados que aún no se escriben y los quita de la cola.
+     */
+    byte[] tomarPendientes() {
+        byte[] datos = pendientes.toByteArray();
+        pendientes.reset();
+        return datos;
+    }
+
+    /**
+     * Descarta los registros pendientes porque la instantánea que se va a escribir ya los incluye.
+     */
+    void descartarPendientes() {
+        pendientes.reset();
+        registros = 0;
+    }
+
+    /**
+     * Descuenta los registros que ya incluye una instantánea escrita; los registrados después
+     * siguen contando para la próxima compactación.
+     */
+    void descontarRegistros(int cantidad) {
+        registros = Math.max(0, registros - cantidad);
+    }
+
+    /**
+     * Anexa al diario registros tomados con {@link #tomarPendientes()}, en una sola escritura.
+     */
+    void escribir(byte[] datos) throws IOException {
+        almacen.anexar(nombre, datos);
+    }
+
+    void registrarAlta(Idea idea) throws IOException {
+        Registro out = iniciarRegistro(OP_AGREGAR_CON_ID);
+        out.writeLong(idea.getId());
+        escribirTexto(out, idea.getNombreEstudiante());
+        escribirTexto(out, idea.getCodigoEstudiante());
+        escribirTexto(out, idea.getTitulo());
+        escribirTexto(out, idea.getContenido());
+        escribirTexto(out, idea.getImageUrl());
+        cerrarRegistro(out);
+    }
+
+    void registrarEstado(long id, Idea.Estado estado) throws IOException {
+        Registro out = iniciarRegistro(estado == Idea.Estado.APROBADA ? OP_APROBAR_POR_ID : OP_DESAPROBAR_POR_ID);
+        out.writeLong(id);
+        cerrarRegistro(out);
+    }
+
+    void registrarEliminacion(long id) throws IOException {
+        Registro out = iniciarRegistro(OP_ELIMINAR_POR_ID);
+        out.writeLong(id);
+        cerrarRegistro(out);
+    }
+
+    void registrarVoto(long id, String username, int rating) throws IOException {
+        Registro out = iniciarRegistro(OP_VOTAR_POR_ID);
+        out.writeLong(id);
+        escribirTexto(out, username);
+        out.writeInt(rating);
+        cerrarRegistro(out);
+    }
+
+    void registrarComentario(long id, Comentario comentario) throws IOException {
+        Registro out = iniciarRegistro(OP_COMENTAR_POR_ID);
+        out.writeLong(id);
+        escribirTexto(out, comentario.getAutor());
+        escribirTexto(out, comentario.getTexto());
+        escribirTexto(out, comentario.getFechaCreacion().toString());
+        cerrarRegistro(out);
+    }
+
+    void registrarEliminacionComentario(long id, int indiceComentario) throws IOException {
+        Registro out = iniciarRegistro(OP_ELIMINAR_COMENTARIO_POR_ID);
+        out.writeLong(id);
+        out.writeInt(indiceComentario);
+        cerrarRegistro(out);
+    }
+
+    /**
+     * Reproduce sobre la lista los registros posteriores a la secuencia de la instantánea.
+     * @param ideas Lista cargada desde la última instantánea.
+     * @param secuenciaInstantanea Secuencia ya incluida en la instantánea.
+     * @return Cantidad de registros aplicados.
+     */
+    int reproducir(List<Idea> ideas, long secuenciaInstantanea) throws IOException {
+        ultimaSecuencia = secuenciaInstantanea;
+        registros = 0;
+        altasSinId = false;
+        if (!almacen.existe(nombre)) return 0;
+
+        int aplicados = 0;
+        long posicionValida = 0;
+        byte[] contenido = almacen.leer(nombre);
+        Map<Long, Idea> ideasPorId = new HashMap<>();
+        for (Idea idea : ideas) ideasPorId.put(idea.getId(), idea);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(contenido))) {
+            while (true) {
+                byte[] datos;
+                try {
+                    int longitud = in.readInt();
+                    if (longitud <= 0 || longitud > MAX_LONGITUD_REGISTRO) break;
+                    datos = new byte[longitud];
+                    in.readFully(datos);
+                } catch (EOFException e) {
+                    break; // Fin del diario o registro incompleto
+                }
+                posicionValida += 4 + datos.length;
+                DataInputStream registro = new DataInputStream(new ByteArrayInputStream(datos));
+                long secuencia = registro.readLong();
+                registros++;
+                if (secuencia <= secuenciaInstantanea) continue;
+                if (secuencia != ultimaSecuencia + 1) {
+                    // La instantánea es más antigua que el inicio del diario (p. ej. la generación
+                    // anterior tras un archivo dañado): las posiciones ya no corresponden
+                    throw new IOException("Falta el registro " + (ultimaSecuencia + 1) + " del diario; el siguiente es " + secuencia);
+                }
+                aplicar(ideas, ideasPorId, registro.readByte(), registro);
+                ultimaSecuencia = secuencia;
+                aplicados++;
+            }
+        }
+        // Descarta la cola dañada para que los nuevos registros queden legibles
+        if (contenido.length > posicionValida) almacen.recortar(nombre, posicionValida);
+        return aplicados;
+    }
+
+    /**
+     * Vacía el diario tras escribir una instantánea completa (compactación).
+     * Los registros pendientes posteriores a la instantánea se conservan.
+     */
+    void truncar() throws IOException {
+        almacen.recortar(nombre, 0);
+    }
+
+
+    private void aplicar(List<Idea> ideas, Map<Long, Idea> ideasPorId, byte operacion, DataInputStream in) throws IOException {
+        switch (operacion) {
+            case OP_AGREGAR: {
+                Idea idea = new Idea(leerTexto(in), leerTexto(in), leerTexto(in), leerTexto(in), leerTexto(in));
+                ideas.add(idea);
+                ideasPorId.put(idea.getId(), idea);
+                altasSinId = true;
+                break;
+            }
+            case OP_AGREGAR_CON_ID: {
+                long id = in.readLong();
+                Idea idea = new Idea(leerTexto(in), leerTexto(in), leerTexto(in), leerTexto(in), leerTexto(in));
+                idea.restaurarId(id);
+                ideas.add(idea);
+                ideasPorId.put(id, idea);
+                break;
+            }
+            case OP_APROBAR:
+            case OP_APROBAR_POR_ID:
+                buscar(ideas, ideasPorId, operacion, in).aprobar();
+                break;
+            case OP_DESAPROBAR:
+            case OP_DESAPROBAR_POR_ID:
+                buscar(ideas, ideasPorId, operacion, in).desaprobar();
+                break;
+            case OP_ELIMINAR:
+            case OP_ELIMINAR_POR_ID: {
+                Idea idea = buscar(ideas, ideasPorId, operacion, in);
+                ideas.remove(idea);
+                ideasPorId.remove(idea.getId());
+                break;
+            }
+            case OP_VOTAR:
+            case OP_VOTAR_POR_ID: {
+                Idea idea = buscar(ideas, ideasPorId, operacion, in);
+                idea.addVote(leerTexto(in), in.readInt());
+                break;
+            }
+            case OP_COMENTAR:
+            case OP_COMENTAR_POR_ID: {
+                Idea idea = buscar(ideas, ideasPorId, operacion, in);
+                String autor = leerTexto(in);
+                String texto = leerTexto(in);
+                idea.agregarComentario(new Comentario(autor, texto, LocalDateTime.parse(leerTexto(in))));
+                break;
+            }
+            case OP_ELIMINAR_COMENTARIO:
+            case OP_ELIMINAR_COMENTARIO_POR_ID: {
+                Idea idea = buscar(ideas, ideasPorId, operacion, in);
+                idea.getComentarios().remove(in.readInt());
+                break;
+            }
+            default:
+                throw new IOException("Operación desconocida en el diario: " + operacion);
+        }
+    }
+
+    /**
+     * Lee la referencia a la idea de un registro: su identificador o, en los registros de
+     * versiones anteriores ({@code operacion} menor que {@link #OP_AGREGAR_CON_ID}), su posición.
+     */
+    private static Idea buscar(List<Idea> ideas, Map<Long, Idea> ideasPorId, byte operacion, DataInputStream in) throws IOException {
+        if (operacion < OP_AGREGAR_CON_ID) return ideas.get(in.readInt());
+        long id = in.readLong();
+        Idea idea = ideasPorId.get(id);
+        if (idea == null) throw new IOException("El diario referencia la idea " + id + ", que no existe");
+        return idea;
+    }
+
+    private Registro iniciarRegistro(byte operacion) throws IOException {
+        Registro out = new Registro();
+        out.writeLong(ultimaSecuencia + 1);
+        out.writeByte(operacion);
+        return out;
+    }
+
+    private void cerrarRegistro(Registro registro) throws IOException {
+        byte[] datos = registro.bytes();
+        salidaPendientes.writeInt(datos.length);
+        salidaPendientes.write(datos);
+        ultimaSecuencia++;
+        registros++;
+    }
+
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        if (texto == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String leerTexto(DataInputStream in) throws IOException {
+        int longitud = in.readInt();
+        if (longitud < 0) return null;
+        // El registro completo ya está en memoria: una longitud mayor solo viene de datos dañados
+        if (longitud > in.available()) throw new EOFException("Texto truncado en el diario");
+        byte[] bytes = new byte[longitud];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Buffer en memoria de un registro antes de anexarlo al diario.
+     */
+    private static final class Registro extends DataOutputStream {
+        Registro() { super(new ByteArrayOutputStream(64)); }
+        byte[] bytes() { return ((ByteArrayOutputStream) out).toByteArray(); }
+    }
+}
@@ -0,0 +1,159 @@
+package foro;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Planificador de escritura diferida (write-behind) para {@link IdeaService}.
+ * <p>
+ * Cada cambio marca el almacén como sucio. El primer cambio de una ráfaga programa un
+ * vaciado en un hilo propio tras {@code -Dforo.persistencia.retardoMaximoMs} (250 ms por
+ * defecto); los cambios que llegan mientras tanto se escriben en ese mismo vaciado. Así ningún
+ * cambio queda sin escribir más que ese retardo y la interfaz nunca espera al disco.
+ * Al cerrar (o al terminar la JVM) se vacía lo pendiente.
+ */
+class EscrituraDiferida {
+    static final long RETARDO_MAXIMO_MS = Long.getLong("foro.persistencia.retardoMaximoMs", 250);
+
+    private final ScheduledExecutorService hilo;
+    private final Runnable vaciado;
+    private final long retardoMaximoMs;
+    private final Thread cierreAlTerminar = new Thread(this::cerrar, "persistencia-ideas-cierre");
+
+    private final Object bloqueoVaciado = new Object();
+
+    // Estado de la ráfaga actual; protegido por this
+    private ScheduledFuture<?> programado;
+    private long cambiosPendientes = 0;
+    private long inicioRafagaNanos;
+    private volatile boolean cerrado = false;
+    private volatile Thread hiloEscritura;
+
+    // Métricas
+    private final AtomicLong vaciados = new AtomicLong();
+    private final AtomicLong cambiosEscritos = new AtomicLong();
+    private final AtomicLong latenciaTotalNanos = new AtomicLong();
+    private final AtomicLong latenciaMaximaNanos = new AtomicLong();
+
+    /**
+     * @param vaciado Escritura de todo lo pendiente; nunca se ejecuta dos veces en paralelo.
+     * @param retardoMaximoMs Tiempo máximo entre un cambio y su escritura.
+     */
+    EscrituraDiferida(Runnable vaciado, long retardoMaximoMs) {
+        this.vaciado = vaciado;
+        this.retardoMaximoMs = retardoMaximoMs;
+        this.hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "persistencia-ideas");
+            t.setDaemon(true);
+            hiloEscritura = t;
+            return t;
+        });
+        Runtime.getRuntime().addShutdownHook(cierreAlTerminar);
+    }
+
+    /**
+     * Registra un cambio y programa un vaciado si no hay uno pendiente.
+     */
+    synchronized void marcarSucio() {
+        cambiosPendientes++;
+        if (programado == null && !cerrado) {
+            inicioRafagaNanos = System.nanoTime();
+            programado = hilo.schedule(this::ejecutar, retardoMaximoMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Escribe de inmediato lo pendiente y espera a que termine.
+     * Desde el propio hilo de escritura se ejecuta en línea.
+     */
+    void vaciarAhora() {
+        if (Thread.currentThread() == hiloEscritura || hilo.isShutdown()) {
+            ejecutar();
+            return;
+        }
+        try {
+            hilo.submit(this::ejecutar).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error escribiendo ideas", e.getCause());
+        } catch (RejectedExecutionException e) {
+            ejecutar(); // Cerrado mientras tanto
+        }
+    }
+
+    /**
+     * Vacía lo pendiente y detiene el hilo de escritura. Se puede llamar más de una vez.
+     * Quita el gancho de cierre de la JVM, que si no mantendría vivo al servicio cerrado.
+     */
+    void cerrar() {
+        if (cerrado) return;
+        vaciarAhora();
+        cerrado = true;
+        if (Thread.currentThread() != cierreAlTerminar) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(cierreAlTerminar);
+            } catch (IllegalStateException e) {
+                // La JVM ya está terminando: el gancho se ejecutará y no hará nada
+            }
+        }
+        hilo.shutdown();
+        try {
+            hilo.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Cambios registrados que aún no se han escrito (profundidad de la cola). */
+    synchronized long getCambiosPendientes() { return cambiosPendientes; }
+
+    /** Cantidad de vaciados que escribieron al menos un cambio. */
+    long getVaciados() { return vaciados.get(); }
+
+    /** Cantidad total de cambios escritos. */
+    long getCambiosEscritos() { return cambiosEscritos.get(); }
+
+    /** Mayor tiempo entre el primer cambio de una ráfaga y el fin de su escritura, en nanosegundos. */
+    long getLatenciaMaximaNanos() { return latenciaMaximaNanos.get(); }
+
+    /**
+     * Devuelve un resumen de las métricas de escritura.
+     */
+    String getEstadisticas() {
+        long total = vaciados.get();
+        double promedioMs = total == 0 ? 0 : latenciaTotalNanos.get() / 1e6 / total;
+        return String.format("Persistencia: %d cambios en %d escrituras, %d pendientes, "
+                + "latencia promedio %.2f ms, latencia máxima %.2f ms",
+                cambiosEscritos.get(), total, getCambiosPendientes(), promedioMs, latenciaMaximaNanos.get() / 1e6);
+    }
+
+    /**
+     * Toma la ráfaga actual y la escribe. El monitor de este objeto solo se toma para leer la
+     * ráfaga, así que {@link #marcarSucio()} nunca espera al disco; el orden entre vaciados
+     * lo garantiza {@link #bloqueoVaciado}.
+     */
+    private void ejecutar() {
+        long cambios;
+        long inicio;
+        synchronized (bloqueoVaciado) {
+            synchronized (this) {
+                if (programado != null) {
+                    programado.cancel(false);
+                    programado = null;
+                }
+                cambios = cambiosPendientes;
+                inicio = inicioRafagaNanos;
+                cambiosPendientes = 0;
+            }
+            vaciado.run();
+        }
+        if (cambios > 0) {
+            long latencia = System.nanoTime() - inicio;
+            vaciados.incrementAndGet();
+            cambiosEscritos.addAndGet(cambios);
+            latenciaTotalNanos.addAndGet(latencia);
+            latenciaMaximaNanos.accumulateAndGet(latencia, Math::max);
+        }
+    }
+}
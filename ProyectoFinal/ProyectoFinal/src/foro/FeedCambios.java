@@ -0,0 +1,295 @@
+package foro;
+
+import main.persistencia.CodecBinario;
+import main.persistencia.EntradaBuffer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Feed de cambios numerados en la carpeta compartida ({@code ideas.feed}).
+ * <p>
+ * Cada cliente anexa un registro por operación y recuerda hasta qué posición y secuencia
+ * leyó, de modo que al sincronizar solo lee los registros nuevos en vez de volver a
+ * procesar {@code ideas.properties} completo. Las secuencias crecen de forma global y nunca
+ * se reinician.
+ * <p>
+ * Formato: cabecera {@code [marca UDFC][long secuencia base]} y registros
+ * {@code [int longitud][varint secuencia][byte operación][campos...]}. Los cambios de estado
+ * llevan la versión resultante de la idea; los registros de estado sin versión, escritos por
+ * clientes anteriores, la incrementan en uno. La secuencia base es la
+ * de la instantánea desde la que parte el feed; al compactar se escribe una nueva instantánea
+ * y el feed se reemplaza por uno vacío con la nueva base. Un cliente que no alcanzó a leer
+ * los registros compactados debe recargar la instantánea.
+ */
+class FeedCambios {
+    private static final byte[] MARCA = {'U', 'D', 'F', 'C'};
+    private static final int LONGITUD_CABECERA = MARCA.length + Long.BYTES;
+
+    private static final byte OP_AGREGAR = 1;
+    private static final byte OP_APROBAR = 2;
+    private static final byte OP_DESAPROBAR = 3;
+    private static final byte OP_ELIMINAR = 4;
+    private static final byte OP_ESTADO = 5;
+
+    private final Path archivo;
+    private long base = -1;
+    private long posicion = LONGITUD_CABECERA;
+    private long ultimaSecuencia = 0;
+    private int registros = 0;
+
+    /**
+     * @param archivo Ruta del feed en la carpeta compartida.
+     */
+    FeedCambios(Path archivo) {
+        this.archivo = archivo;
+    }
+
+    /**
+     * Devuelve la secuencia del último cambio aplicado por este cliente.
+     */
+    long getUltimaSecuencia() { return ultimaSecuencia; }
+
+    /**
+     * Devuelve la cantidad de registros en el feed desde la última compactación.
+     */
+    int getRegistros() { return registros; }
+
+    /**
+     * Fija el punto de partida tras cargar una instantánea completa.
+     * @param secuenciaInstantanea Última secuencia incluida en la instantánea.
+     */
+    void reiniciarDesde(long secuenciaInstantanea) {
+        ultimaSecuencia = secuenciaInstantanea;
+        base = -1; // Obliga a revisar la cabecera en la siguiente lectura
+    }
+
+    /**
+     * Lee y aplica los registros que este cliente aún no ha visto. Las ideas que cambian de
+     * estado se reemplazan en el mapa por copias; las instancias existentes no se modifican.
+     * @param ideas Ideas en memoria, indexadas por identificador.
+     * @return false si se perdieron registros por una compactación y hay que recargar la instantánea.
+     */
+    boolean leerNuevos(Map<Long, Idea> ideas) throws IOException {
+        if (!Files.exists(archivo)) return true;
+
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano < LONGITUD_CABECERA) return true;
+
+            ByteBuffer cabecera = ByteBuffer.allocate(LONGITUD_CABECERA);
+            canal.read(cabecera, 0);
+            cabecera.flip();
+            byte[] marca = new byte[MARCA.length];
+            cabecera.get(marca);
+            if (!Arrays.equals(marca, MARCA)) throw new IOException("Feed de cambios con formato desconocido");
+            long baseArchivo = cabecera.getLong();
+
+            if (baseArchivo != base) {
+                // El feed se compactó (o es la primera lectura)
+                if (ultimaSecuencia < baseArchivo) return false;
+                base = baseArchivo;
+                posicion = LONGITUD_CABECERA;
+                registros = 0;
+            }
+            if (tamano <= posicion) return true;
+
+            ByteBuffer nuevos = ByteBuffer.allocate((int) (tamano - posicion));
+            while (nuevos.hasRemaining()) {
+                if (canal.read(nuevos, posicion + nuevos.position()) < 0) break;
+            }
+            nuevos.flip();
+
+            while (nuevos.remaining() >= Integer.BYTES) {
+                int longitud = nuevos.getInt(nuevos.position());
+                if (longitud <= 0 || nuevos.remaining() < Integer.BYTES + longitud) break; // Registro aún incompleto
+                nuevos.position(nuevos.position() + Integer.BYTES);
+                ByteBuffer registro = nuevos.slice(nuevos.position(), longitud);
+                nuevos.position(nuevos.position() + longitud);
+
+                DataInputStream in = new DataInputStream(new EntradaBuffer(registro));
+                long secuencia = CodecBinario.leerVarLong(in);
+                if (secuencia > ultimaSecuencia + 1) return false; // Hueco: falta una parte del historial
+                if (secuencia == ultimaSecuencia + 1) {
+                    aplicar(ideas, in.readByte(), in);
+                    ultimaSecuencia = secuencia;
+                }
+                posicion += Integer.BYTES + longitud;
+                registros++;
+            }
+        }
+        return true;
+    }
+
+    void anexarAlta(Idea idea) throws IOException {
+        Registro out = iniciarRegistro(OP_AGREGAR);
+        CodecBinario.escribirVarLong(out, idea.getId());
+        CodecBinario.escribirTexto(out, idea.getNombreEstudiante());
+        CodecBinario.escribirTexto(out, idea.getCodigoEstudiante());
+        CodecBinario.escribirTexto(out, idea.getTitulo());
+        CodecBinario.escribirTexto(out, idea.getContenido());
+        CodecBinario.escribirTexto(out, idea.getImageUrl());
+        anexar(out);
+    }
+
+    /**
+     * Anexa el estado y la versión actuales de una idea.
+     */
+    void anexarEstado(Idea idea) throws IOException {
+        Registro out = iniciarRegistro(OP_ESTADO);
+        CodecBinario.escribirVarLong(out, idea.getId());
+        CodecBinario.escribirVarInt(out, idea.getVersion());
+        out.writeByte(idea.getEstado().ordinal());
+        anexar(out);
+    }
+
+    void anexarEliminacion(long id) throws IOException {
+        Registro out = iniciarRegistro(OP_ELIMINAR);
+        CodecBinario.escribirVarLong(out, id);
+        anexar(out);
+    }
+
+    /**
+     * Reemplaza el feed por uno vacío que parte de la instantánea recién escrita.
+     * Debe llamarse con el bloqueo compartido tomado y después de escribir la instantánea.
+     * @param secuenciaInstantanea Última secuencia incluida en la nueva instantánea.
+     */
+    void compactar(long secuenciaInstantanea) throws IOException {
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temporal))) {
+            out.write(MARCA);
+            out.writeLong(secuenciaInstantanea);
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        base = secuenciaInstantanea;
+        posicion = LONGITUD_CABECERA;
+        registros = 0;
+    }
+
+    /**
+     * Anexa un registro al final del feed. El llamador debe tener el bloqueo compartido
+     * y haber leído antes los registros pendientes.
+     */
+    private void anexar(Registro registro) throws IOException {
+        byte[] datos = registro.bytes();
+        try (FileChannel canal = FileChannel.open(archivo,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (canal.size() < LONGITUD_CABECERA) {
+                ByteBuffer cabecera = ByteBuffer.allocate(LONGITUD_CABECERA);
+                cabecera.put(MARCA).putLong(ultimaSecuencia).flip();
+                canal.truncate(0);
+                canal.write(cabecera, 0);
+                base = ultimaSecuencia;
+                posicion = LONGITUD_CABECERA;
+                registros = 0;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + datos.length);
+            buffer.putInt(datos.length).put(datos).flip();
+            long tamano = canal.size();
+            long destino = finValido(canal, tamano);
+            // Un cliente que murió a mitad de un anexado deja un registro incompleto en el que los
+            // lectores se detienen: se descarta para que el nuevo quede legible
+            if (destino < tamano) canal.truncate(destino);
+            while (buffer.hasRemaining()) destino += canal.write(buffer, destino);
+            posicion = destino;
+        }
+        ultimaSecuencia++;
+        registros++;
+    }
+
+    /**
+     * Devuelve el fin del último registro completo. Si la cabecera no cambió desde la última
+     * lectura, el recorrido parte de la posición ya leída en vez del inicio.
+     */
+    private long finValido(FileChannel canal, long tamano) throws IOException {
+        ByteBuffer cabecera = ByteBuffer.allocate(LONGITUD_CABECERA);
+        while (cabecera.hasRemaining()) {
+            if (canal.read(cabecera, cabecera.position()) < 0) break;
+        }
+        long fin = cabecera.getLong(MARCA.length) == base && posicion <= tamano ? posicion : LONGITUD_CABECERA;
+        ByteBuffer longitud = ByteBuffer.allocate(Integer.BYTES);
+        while (fin + Integer.BYTES <= tamano) {
+            longitud.clear();
+            while (longitud.hasRemaining()) {
+                if (canal.read(longitud, fin + longitud.position()) < 0) break;
+            }
+            int bytes = longitud.getInt(0);
+            if (bytes <= 0 || fin + Integer.BYTES + bytes > tamano) break;
+            fin += Integer.BYTES + bytes;
+        }
+        return fin;
+    }
+
+    private void aplicar(Map<Long, Idea> ideas, byte operacion, DataInputStream in) throws IOException {
+        long id = CodecBinario.leerVarLong(in);
+        switch (operacion) {
+            case OP_AGREGAR: {
+                Idea idea = new Idea(
+                    CodecBinario.leerTexto(in),
+                    CodecBinario.leerTexto(in),
+                    CodecBinario.leerTexto(in),
+                    CodecBinario.leerTexto(in),
+                    CodecBinario.leerTexto(in));
+                idea.restaurarId(id);
+                ideas.put(id, idea);
+                break;
+            }
+            case OP_APROBAR:
+            case OP_DESAPROBAR: {
+                Idea idea = ideas.get(id);
+                if (idea != null) {
+                    Idea.Estado estado = operacion == OP_APROBAR ? Idea.Estado.APROBADA : Idea.Estado.DESAPROBADA;
+                    cambiarEstado(ideas, idea, estado, idea.getVersion() + 1);
+                }
+                break;
+            }
+            case OP_ESTADO: {
+                int version = CodecBinario.leerVarInt(in);
+                int ordinal = in.readUnsignedByte();
+                Idea.Estado[] estados = Idea.Estado.values();
+                if (ordinal >= estados.length) throw new IOException("Estado desconocido en el feed: " + ordinal);
+                Idea idea = ideas.get(id);
+                if (idea != null) cambiarEstado(ideas, idea, estados[ordinal], version);
+                break;
+            }
+            case OP_ELIMINAR:
+                ideas.remove(id);
+                break;
+            default:
+                throw new IOException("Operación desconocida en el feed: " + operacion);
+        }
+    }
+
+    /**
+     * Reemplaza la idea por una copia con el nuevo estado: la instancia anterior puede estar publicada.
+     */
+    private static void cambiarEstado(Map<Long, Idea> ideas, Idea idea, Idea.Estado estado, int version) {
+        Idea copia = idea.copiar();
+        switch (estado) {
+            case APROBADA: copia.aprobar(); break;
+            case DESAPROBADA: copia.desaprobar(); break;
+            default: return; // Una idea no vuelve a quedar pendiente
+        }
+        copia.setVersion(version);
+        ideas.put(copia.getId(), copia);
+    }
+
+    private Registro iniciarRegistro(byte operacion) throws IOException {
+        Registro out = new Registro();
+        CodecBinario.escribirVarLong(out, ultimaSecuencia + 1);
+        out.writeByte(operacion);
+        return out;
+    }
+
+    /**
+     * Buffer en memoria de un registro antes de anexarlo al feed.
+     */
+    private static final class Registro extends DataOutputStream {
+        Registro() { super(new ByteArrayOutputStream(64)); }
+        byte[] bytes() { return ((ByteArrayOutputStream) out).toByteArray(); }
+    }
+}
@@ -2,8 +2,12 @@ package foro;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
-import java.awt.Component;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.BiConsumer;
 import auth.Usuario;
 
 /**
@@ -11,6 +15,21 @@ import auth.Usuario;
  * Permite mostrar el muro global, gestionar ideas pendientes y agregar nuevas ideas.
  */
 public class Foro {
+    /** Alto fijo de cada idea en el muro; evita medir todas las filas al abrirlo */
+    private static final int ALTO_FILA_MURO = 290;
+    /** Ancho mínimo de las filas del muro; el ancho real sigue al de la ventana */
+    private static final int ANCHO_MINIMO_MURO = 600;
+    /** Filas por debajo de las visibles cuyas imágenes se precargan con prioridad baja */
+    private static final int FILAS_PRECARGA = 3;
+    /** Ideas mostradas en los muros por ranking */
+    private static final int TOP_RANKING = 50;
+    /** Resultados mostrados al buscar en el muro */
+    private static final int MAX_RESULTADOS_BUSQUEDA = 200;
+    /** Opciones de orden del muro; la primera es el orden de creación */
+    private static final String[] ORDENES_MURO = {"Orden de publicación", "Mejor calificadas", "Más votadas", "Más comentadas"};
+    private static final IdeaService.Ranking[] RANKINGS_MURO = {null,
+            IdeaService.Ranking.MEJOR_CALIFICADAS, IdeaService.Ranking.MAS_VOTADAS, IdeaService.Ranking.MAS_COMENTADAS};
+
     private final IdeaService ideaService;
 
     /**
@@ -22,11 +41,12 @@ public class Foro {
     }
 
     /**
-     * Muestra el muro global de ideas aprobadas.
+     * Muestra el muro global de ideas aprobadas, en orden de creación o según un ranking,
+     * con búsqueda por texto.
      * @param usuarioActual Usuario que visualiza el muro (puede ser nulo).
      */
     public void mostrarMuroGlobalIdeas(Usuario usuarioActual) {
-        List<Idea> ideasAprobadas = ideaService.getIdeasAprobadas();
+        Collection<Idea> ideasAprobadas = ideaService.getIdeasAprobadas();
         if (ideasAprobadas.isEmpty()) {
             JOptionPane.showMessageDialog(null,
                     "<html><div style='font-size:16px;'>No hay ideas aprobadas para mostrar.</div></html>",
@@ -34,27 +54,143 @@ public class Foro {
             return;
         }
 
-        JPanel ideasContainer = new JPanel();
-        ideasContainer.setLayout(new BoxLayout(ideasContainer, BoxLayout.Y_AXIS));
-
-        for (Idea idea : ideasAprobadas) {
-            IdeaPanel panelDeIdea = new IdeaPanel(idea, usuarioActual, ideaService);
-            panelDeIdea.setAlignmentX(Component.LEFT_ALIGNMENT);
-            ideasContainer.add(panelDeIdea);
-        }
+        // Lista virtualizada: solo se pintan las filas visibles, todas con el mismo panel reutilizado
+        DefaultListModel<Idea> modelo = new DefaultListModel<>();
+        modelo.addAll(ideasAprobadas);
+        JList<Idea> listaIdeas = new JList<Idea>(modelo) {
+            @Override
+            public boolean getScrollableTracksViewportWidth() {
+                return true;
+            }
+        };
+        IdeaListCellRenderer renderer = new IdeaListCellRenderer(usuarioActual, ideaService);
+        listaIdeas.setCellRenderer(renderer);
+        listaIdeas.setFixedCellHeight(ALTO_FILA_MURO);
+        listaIdeas.setFixedCellWidth(ANCHO_MINIMO_MURO);
+        listaIdeas.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        listaIdeas.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                renderer.procesarClic(listaIdeas, e);
+            }
+        });
 
-        JScrollPane scrollPane = new JScrollPane(ideasContainer);
+        JScrollPane scrollPane = new JScrollPane(listaIdeas);
         scrollPane.setPreferredSize(new java.awt.Dimension(800, 600));
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        int[] rangoVisible = {-1, -1};
+        scrollPane.getViewport().addChangeListener(e -> actualizarCargasDeImagenes(listaIdeas, rangoVisible));
 
-        JOptionPane.showMessageDialog(null, scrollPane, "Muro Global de Ideas", JOptionPane.PLAIN_MESSAGE);
+        JComboBox<String> orden = new JComboBox<>(ORDENES_MURO);
+        JTextField busqueda = new JTextField(20);
+        Runnable recargar = () -> {
+            String consulta = busqueda.getText().trim();
+            IdeaService.Ranking ranking = RANKINGS_MURO[orden.getSelectedIndex()];
+            Collection<Idea> ideas;
+            if (!consulta.isEmpty()) {
+                ideas = ideaService.buscarIdeas(consulta, Idea.Estado.APROBADA, MAX_RESULTADOS_BUSQUEDA);
+            } else if (ranking != null) {
+                ideas = ideaService.getTopIdeas(ranking, TOP_RANKING);
+            } else {
+                ideas = ideaService.getIdeasAprobadas();
+            }
+            for (int i = 0; i < modelo.getSize(); i++) modelo.getElementAt(i).cancelarCargaImagen();
+            modelo.clear();
+            modelo.addAll(ideas);
+            rangoVisible[0] = rangoVisible[1] = -1;
+            if (!modelo.isEmpty()) listaIdeas.ensureIndexIsVisible(0);
+        };
+        orden.addActionListener(e -> recargar.run());
+        // Búsqueda mientras se escribe: el índice responde en pocos milisegundos
+        busqueda.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { recargar.run(); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { recargar.run(); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) { }
+        });
+        JPanel barra = new JPanel(new java.awt.FlowLayout(java.awt.FlowLayout.LEFT));
+        barra.add(new JLabel("Buscar:"));
+        barra.add(busqueda);
+        barra.add(new JLabel("Ordenar por:"));
+        barra.add(orden);
+
+        JPanel muro = new JPanel(new java.awt.BorderLayout());
+        muro.add(barra, java.awt.BorderLayout.NORTH);
+        muro.add(scrollPane, java.awt.BorderLayout.CENTER);
+
+        // Con un servidor, los cambios de otros usuarios llegan mientras el muro está abierto
+        BiConsumer<TipoCambio, Idea> oyente = (cambio, idea) -> {
+            if (cambio == TipoCambio.RECARGA) {
+                recargar.run();
+            } else {
+                actualizarFila(modelo, idea, cambio, busqueda.getText().trim().isEmpty() && orden.getSelectedIndex() == 0);
+            }
+        };
+        IdeaServiceRemoto remoto = ideaService instanceof IdeaServiceRemoto ? (IdeaServiceRemoto) ideaService : null;
+        if (remoto != null) remoto.agregarOyente(oyente);
+        try {
+            JOptionPane.showMessageDialog(null, muro, "Muro Global de Ideas", JOptionPane.PLAIN_MESSAGE);
+        } finally {
+            if (remoto != null) remoto.quitarOyente(oyente);
+        }
+    }
+
+    /**
+     * Refleja en el muro un cambio hecho por otro usuario: repinta solo la fila de la idea, la
+     * quita si dejó de estar aprobada, o la agrega en su lugar si se aprobó y el muro muestra
+     * todas las ideas en orden de publicación (las búsquedas y rankings se actualizan al
+     * volver a consultarlos).
+     */
+    private void actualizarFila(DefaultListModel<Idea> modelo, Idea idea, TipoCambio cambio, boolean ordenPublicacion) {
+        int indice = modelo.indexOf(idea);
+        boolean visible = cambio != TipoCambio.IDEA_ELIMINADA && idea.getEstado() == Idea.Estado.APROBADA;
+        if (indice >= 0) {
+            if (visible) {
+                modelo.set(indice, idea);
+            } else {
+                idea.cancelarCargaImagen();
+                modelo.remove(indice);
+            }
+        } else if (visible && ordenPublicacion) {
+            int posicion = 0;
+            for (Idea aprobada : ideaService.getIdeasAprobadas()) {
+                if (aprobada == idea) break;
+                if (posicion < modelo.getSize() && modelo.getElementAt(posicion) == aprobada) posicion++;
+            }
+            modelo.add(posicion, idea);
+        }
+    }
+
+    /**
+     * Cancela las cargas de imágenes de las filas que salieron de la pantalla y precarga
+     * las de las siguientes filas.
+     * @param lista Lista del muro.
+     * @param rangoVisible Primera y última fila visibles en la llamada anterior; se actualiza.
+     */
+    private static void actualizarCargasDeImagenes(JList<Idea> lista, int[] rangoVisible) {
+        int primera = lista.getFirstVisibleIndex();
+        int ultima = lista.getLastVisibleIndex();
+        if (primera == rangoVisible[0] && ultima == rangoVisible[1]) return;
+
+        ListModel<Idea> modelo = lista.getModel();
+        if (rangoVisible[0] >= 0) {
+            for (int i = rangoVisible[0]; i <= rangoVisible[1] && i < modelo.getSize(); i++) {
+                if (i < primera || i > ultima) modelo.getElementAt(i).cancelarCargaImagen();
+            }
+        }
+        if (ultima >= 0) {
+            for (int i = ultima + 1; i <= ultima + FILAS_PRECARGA && i < modelo.getSize(); i++) {
+                modelo.getElementAt(i).precargarImagen();
+            }
+        }
+        rangoVisible[0] = primera;
+        rangoVisible[1] = ultima;
     }
 
     /**
      * Muestra la tabla de ideas pendientes para su revisión y gestión.
      */
     public void mostrarIdeasPendientes() {
-        List<Idea> pendientes = ideaService.getIdeasPendientes();
+        Collection<Idea> pendientes = ideaService.getIdeasPendientes();
         if (pendientes.isEmpty()) {
             JOptionPane.showMessageDialog(null,
                     "<html><div style='font-size:16px;'>No hay ideas pendientes para revisar.</div></html>",
@@ -70,7 +206,9 @@ public class Foro {
             }
         };
 
-        for (Idea idea : pendientes) {
+        // Copia de las filas mostradas; se mantiene alineada con el modelo de la tabla
+        List<Idea> filas = new ArrayList<>(pendientes);
+        for (Idea idea : filas) {
             model.addRow(new Object[]{
                 idea.getNombreEstudiante(), 
                 idea.getCodigoEstudiante(), 
@@ -92,10 +230,9 @@ public class Foro {
                 int col = table.columnAtPoint(evt.getPoint());
                 if (row < 0 || col < 3) return;
 
-                List<Idea> pendientesActuales = ideaService.getIdeasPendientes();
-                if (row >= pendientesActuales.size()) return;
+                if (row >= filas.size()) return;
                 
-                Idea idea = pendientesActuales.get(row);
+                Idea idea = filas.get(row);
 
                 if (col == 3) { // Aprobar
                     ideaService.aprobarIdea(idea);
@@ -118,6 +255,7 @@ public class Foro {
                     }
                 }
                 model.removeRow(row);
+                filas.remove(row);
             }
         });
 
@@ -0,0 +1,55 @@
+package foro;
+
+import java.security.SecureRandom;
+
+/**
+ * Generador de identificadores únicos y ordenados por tiempo para las ideas.
+ * <p>
+ * Cada identificador es un {@code long} compuesto por 41 bits de milisegundos desde
+ * {@link #EPOCA}, 10 bits de nodo aleatorio por proceso (para distinguir los equipos
+ * del laboratorio que escriben en la carpeta compartida) y 12 bits de secuencia.
+ * Dentro de un mismo proceso los identificadores son estrictamente crecientes.
+ */
+final class GeneradorIds {
+    /** 1 de enero de 2025 en milisegundos de época. */
+    private static final long EPOCA = 1735689600000L;
+    private static final int BITS_NODO = 10;
+    private static final int BITS_SECUENCIA = 12;
+    private static final long MAX_SECUENCIA = (1L << BITS_SECUENCIA) - 1;
+    private static final long NODO = new SecureRandom().nextInt(1 << BITS_NODO);
+
+    private static long ultimoMilisegundo = -1;
+    private static long secuencia = 0;
+
+    private GeneradorIds() { }
+
+    /**
+     * Devuelve el instante de creación codificado en un identificador, en milisegundos de época.
+     */
+    static long milisegundos(long id) {
+        return (id >>> (BITS_NODO + BITS_SECUENCIA)) + EPOCA;
+    }
+
+    /**
+     * Devuelve el menor identificador posible generado en el instante indicado o después;
+     * sirve para convertir un rango de fechas en un rango de identificadores.
+     */
+    static long primeroDesde(long milisegundosEpoca) {
+        return Math.max(0, milisegundosEpoca - EPOCA) << (BITS_NODO + BITS_SECUENCIA);
+    }
+
+    /**
+     * Devuelve un nuevo identificador.
+     */
+    static synchronized long siguiente() {
+        long ahora = Math.max(System.currentTimeMillis() - EPOCA, ultimoMilisegundo);
+        if (ahora == ultimoMilisegundo) {
+            secuencia = (secuencia + 1) & MAX_SECUENCIA;
+            if (secuencia == 0) ahora++; // Secuencia agotada: se toma el siguiente milisegundo
+        } else {
+            secuencia = 0;
+        }
+        ultimoMilisegundo = ahora;
+        return (ahora << (BITS_NODO + BITS_SECUENCIA)) | (NODO << BITS_SECUENCIA) | secuencia;
+    }
+}
@@ -1,17 +1,24 @@
 package foro;
 
 import javax.swing.ImageIcon;
-import javax.swing.SwingWorker;
 import java.awt.Component;
-import java.awt.Image;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.net.URL;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import javax.imageio.ImageIO;
+import main.imagenes.CacheImagenes;
+import main.imagenes.CargadorImagenes;
+import main.persistencia.EntradaBuffer;
 
 /**
  * Representa una idea publicada en el foro.
@@ -22,6 +29,7 @@ public class Idea implements Serializable {
 
     public enum Estado { APROBADA, PENDIENTE, DESAPROBADA }
 
+    private long id;
     private String nombreEstudiante;
     private String codigoEstudiante;
     private String titulo;
@@ -31,12 +39,38 @@ public class Idea implements Serializable {
     private Map<String, Integer> votes;
     private List<Comentario> comentarios;
 
-    // Campos transitorios para la imagen cargada
-    private transient ImageIcon loadedImage;
-    private transient boolean isLoading = false;
+    /** Máximo de estrellas de una calificación (la mínima es 1). */
+    public static final int MAX_ESTRELLAS = 5;
+
+    // Agregados de los votos, mantenidos en cada voto; protegidos por this y reconstruidos al deserializar
+    private transient long sumaVotos;
+    /** Cantidad de votos por estrellas; la posición 0 es 1 estrella */
+    private transient int[] distribucion = new int[MAX_ESTRELLAS];
+
+    // Cuerpo aún sin decodificar cuando la idea proviene de un almacén mapeado en memoria; se
+    // anula recién cuando el cuerpo está completo, así quien lo lee nulo ve todos los campos
+    private transient volatile ByteBuffer cuerpoPendiente;
+    // El hilo que decodifica el cuerpo llama a los métodos de la idea; protegido por this
+    private transient boolean materializando;
+
+    // Orden de creación asignado por IdeaService para sus índices por estado
+    private transient long orden;
+
+    // Versión de la idea en el foro compartido: aumenta en cada cambio de estado (en
+    // IdeaService, que la usa el servidor del foro, solo mientras el proceso está abierto)
+    private transient int version;
+
+    // Tamaño máximo de la imagen mostrada; la imagen escalada se guarda en CacheImagenes
+    private static final int ANCHO_IMAGEN = 200;
+    private static final int ALTO_IMAGEN = 200;
+
+    // Estado transitorio de la carga de la imagen
+    private transient CargadorImagenes.Solicitud solicitudImagen;
+    /** Evita reintentar en cada repintado una imagen que ya falló */
+    private transient boolean imagenFallida = false;
 
     /**
-     * Crea una nueva idea.
+     * Crea una nueva idea con un identificador único ordenado por tiempo.
      * @param nombreEstudiante Nombre del estudiante.
      * @param codigoEstudiante Código del estudiante.
      * @param titulo Título de la idea.
@@ -44,6 +78,7 @@ public class Idea implements Serializable {
      * @param imageUrl URL de la imagen asociada (opcional).
      */
     public Idea(String nombreEstudiante, String codigoEstudiante, String titulo, String contenido, String imageUrl) {
+        this.id = GeneradorIds.siguiente();
         this.nombreEstudiante = nombreEstudiante;
         this.codigoEstudiante = codigoEstudiante;
         this.titulo = titulo;
@@ -54,8 +89,52 @@ public class Idea implements Serializable {
         this.comentarios = new ArrayList<>();
     }
 
+    /**
+     * Copia independiente de la idea (mismo identificador, estado, votos y comentarios), para
+     * cambiarla sin alterar la versión que otros hilos pueden estar leyendo.
+     */
+    Idea copiar() {
+        Idea copia = new Idea(nombreEstudiante, codigoEstudiante, titulo, getContenido(), imageUrl);
+        copia.id = id;
+        copia.estado = estado;
+        copia.version = version;
+        copia.comentarios.addAll(getComentarios());
+        getVotesMap().forEach(copia::addVote);
+        return copia;
+    }
+
+    /**
+     * Versión de la idea en el foro compartido: cuántos cambios de estado se le confirmaron.
+     */
+    public int getVersion() { return version; }
+    void setVersion(int version) { this.version = version; }
+
+    long getOrden() { return orden; }
+    void setOrden(long orden) { this.orden = orden; }
+
+    // Decodificación diferida del cuerpo (contenido, votos y comentarios)
+    void diferirCuerpo(ByteBuffer cuerpo) { this.cuerpoPendiente = cuerpo; }
+    void restaurarContenido(String contenido) { this.contenido = contenido; }
+    void materializar() {
+        if (cuerpoPendiente == null) return;
+        synchronized (this) {
+            ByteBuffer cuerpo = cuerpoPendiente;
+            if (cuerpo == null || materializando) return;
+            materializando = true;
+            try {
+                CodecIdeas.leerCuerpo(new DataInputStream(new EntradaBuffer(cuerpo)), this);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo decodificar la idea " + titulo, e);
+            } finally {
+                materializando = false;
+                cuerpoPendiente = null;
+            }
+        }
+    }
+
     // Métodos para comentarios
     public List<Comentario> getComentarios() {
+        materializar();
         if (comentarios == null) comentarios = new ArrayList<>();
         return comentarios;
     }
@@ -63,10 +142,19 @@ public class Idea implements Serializable {
     public void eliminarComentario(Comentario comentario) { getComentarios().remove(comentario); }
 
     // Getters de campos principales
+    public long getId() { return id; }
+    /**
+     * Fecha de creación, tomada del identificador. Las ideas anteriores a los identificadores
+     * tienen la fecha en que se les asignó uno.
+     */
+    public LocalDateTime getFechaCreacion() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(GeneradorIds.milisegundos(id)), ZoneId.systemDefault());
+    }
+    void restaurarId(long id) { this.id = id; }
     public String getNombreEstudiante() { return nombreEstudiante; }
     public String getCodigoEstudiante() { return codigoEstudiante; }
     public String getTitulo() { return titulo; }
-    public String getContenido() { return contenido; }
+    public String getContenido() { materializar(); return contenido; }
     public String getImageUrl() { return imageUrl; }
     public Estado getEstado() { return estado; }
     public void aprobar() { this.estado = Estado.APROBADA; }
@@ -74,64 +162,130 @@ public class Idea implements Serializable {
 
     // Métodos de votación
     private Map<String, Integer> getVotesMap() {
+        materializar();
         if (this.votes == null) this.votes = new ConcurrentHashMap<>();
         return this.votes;
     }
+    /**
+     * Registra o cambia el voto de un usuario y actualiza los agregados: si el usuario ya
+     * había votado, su voto anterior se descuenta.
+     */
     public void addVote(String username, int rating) {
-        if (username != null && !username.isEmpty()) getVotesMap().put(username, rating);
+        if (username == null || username.isEmpty()) return;
+        Map<String, Integer> votos = getVotesMap();
+        synchronized (this) {
+            Integer anterior = votos.put(username, rating);
+            if (anterior != null) acumularVoto(anterior, -1);
+            acumularVoto(rating, 1);
+        }
     }
+    Map<String, Integer> getVotos() { return Collections.unmodifiableMap(getVotesMap()); }
     public int getUserVote(String username) { return getVotesMap().getOrDefault(username, 0); }
     public int getVoteCount() { return getVotesMap().size(); }
+
+    /**
+     * Promedio de las calificaciones, sin recorrer los votos.
+     */
     public double getAverageRating() {
-        if (getVotesMap().isEmpty()) return 0.0;
-        double sum = 0;
-        for (int rating : getVotesMap().values()) sum += rating;
-        return sum / getVotesMap().size();
+        Map<String, Integer> votos = getVotesMap();
+        synchronized (this) {
+            return votos.isEmpty() ? 0.0 : (double) sumaVotos / votos.size();
+        }
+    }
+
+    /**
+     * Suma de todas las calificaciones.
+     */
+    synchronized long getSumaVotos() {
+        materializar();
+        return sumaVotos;
+    }
+
+    /**
+     * Devuelve cuántos votos hay de cada cantidad de estrellas.
+     * @return Arreglo de {@link #MAX_ESTRELLAS} posiciones; la posición 0 corresponde a 1 estrella.
+     */
+    public int[] getDistribucionVotos() {
+        materializar();
+        synchronized (this) {
+            return distribucion.clone();
+        }
+    }
+
+    /**
+     * Devuelve cuántos votos tienen exactamente la cantidad de estrellas indicada.
+     */
+    public int getVotosConEstrellas(int estrellas) {
+        if (estrellas < 1 || estrellas > MAX_ESTRELLAS) return 0;
+        materializar();
+        synchronized (this) {
+            return distribucion[estrellas - 1];
+        }
+    }
+
+    private void acumularVoto(int rating, int signo) {
+        sumaVotos += (long) signo * rating;
+        if (rating >= 1 && rating <= MAX_ESTRELLAS) distribucion[rating - 1] += signo;
     }
 
     /**
      * Carga y devuelve el icono de la imagen asociada a la idea, escalada.
+     * La carga se pide con prioridad alta y se cancela si el componente se quita de su ventana.
      * @param componentToRepaint Componente que debe repintarse al cargar la imagen.
      * @return ImageIcon escalado o null si aún no está cargado.
      */
     public ImageIcon getImageIcon(Component componentToRepaint) {
-        if (loadedImage != null) return loadedImage;
-        if (isLoading || imageUrl == null || imageUrl.trim().isEmpty()) return null;
-        isLoading = true;
-
-        new SwingWorker<ImageIcon, Void>() {
-            @Override
-            protected ImageIcon doInBackground() throws Exception {
-                URL url = new URL(imageUrl);
-                Image image = ImageIO.read(url);
-                if (image == null) throw new IOException("No se pudo leer la imagen desde la URL.");
-                int originalWidth = image.getWidth(null);
-                int originalHeight = image.getHeight(null);
-                int maxWidth = 200, maxHeight = 200;
-                int newWidth = originalWidth, newHeight = originalHeight;
-                if (originalWidth > maxWidth) {
-                    newWidth = maxWidth;
-                    newHeight = (newWidth * originalHeight) / originalWidth;
-                }
-                if (newHeight > maxHeight) {
-                    newHeight = maxHeight;
-                    newWidth = (newHeight * originalWidth) / originalHeight;
-                }
-                return new ImageIcon(image.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH));
-            }
-            @Override
-            protected void done() {
-                try { loadedImage = get(); } catch (Exception ignored) {}
-                finally {
-                    isLoading = false;
-                    componentToRepaint.repaint();
-                }
-            }
-        }.execute();
+        if (imageUrl == null || imageUrl.trim().isEmpty()) return null;
+        ImageIcon enCache = CacheImagenes.getInstance().obtenerEnMemoria(imageUrl, ANCHO_IMAGEN, ALTO_IMAGEN);
+        if (enCache != null) return enCache;
+        if (imagenFallida) return null;
+        CargadorImagenes.Solicitud anterior = solicitudImagen;
+        if (anterior != null && !anterior.isTerminada() && anterior.getPrioridad() == CargadorImagenes.Prioridad.ALTA) return null;
 
+        solicitudImagen = CargadorImagenes.getInstance().solicitar(imageUrl, ANCHO_IMAGEN, ALTO_IMAGEN,
+                CargadorImagenes.Prioridad.ALTA,
+                icono -> componentToRepaint.repaint(),
+                error -> {
+                    imagenFallida = true;
+                    componentToRepaint.repaint();
+                }).cancelarAlQuitar(componentToRepaint);
+        // Una precarga pendiente queda absorbida por la nueva solicitud
+        if (anterior != null) anterior.cancelar();
         return null;
     }
 
+    /**
+     * Pide la imagen con prioridad baja para tenerla lista antes de que se muestre.
+     * Debe llamarse desde el hilo de eventos.
+     */
+    public void precargarImagen() {
+        if (imageUrl == null || imageUrl.trim().isEmpty() || imagenFallida) return;
+        if (solicitudImagen != null && !solicitudImagen.isTerminada()) return;
+        if (CacheImagenes.getInstance().obtenerEnMemoria(imageUrl, ANCHO_IMAGEN, ALTO_IMAGEN) != null) return;
+        solicitudImagen = CargadorImagenes.getInstance().solicitar(imageUrl, ANCHO_IMAGEN, ALTO_IMAGEN,
+                CargadorImagenes.Prioridad.BAJA, null, error -> imagenFallida = true);
+    }
+
+    /**
+     * Cancela la carga pendiente de la imagen, por ejemplo cuando la idea sale de la pantalla.
+     * Debe llamarse desde el hilo de eventos.
+     */
+    public void cancelarCargaImagen() {
+        if (solicitudImagen != null) solicitudImagen.cancelar();
+    }
+
+    /**
+     * Asigna un identificador a las ideas guardadas antes de que existieran los identificadores.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (id == 0) id = GeneradorIds.siguiente();
+        distribucion = new int[MAX_ESTRELLAS];
+        if (votes != null) {
+            for (int rating : votes.values()) acumularVoto(rating, 1);
+        }
+    }
+
     public String getDescripcion() {
         // TODO Auto-generated method stub
         throw new UnsupportedOperationException("Unimplemented method 'getDescripcion'");
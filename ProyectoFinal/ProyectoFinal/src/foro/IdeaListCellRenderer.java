@@ -3,6 +3,7 @@ package foro;
 import auth.Usuario;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseEvent;
 
 /**
  * {@code IdeaListCellRenderer} es un renderizador personalizado para listas de objetos {@link Idea}.
@@ -11,6 +12,11 @@ import java.awt.*;
  * <p>
  * Este componente se utiliza principalmente en interfaces donde se desea listar múltiples ideas en un {@link JList},
  * como en el muro global del foro.
+ * <p>
+ * El renderizador usa un único {@link IdeaPanel} que se vuelve a llenar en cada llamada, así que el
+ * costo de pintar la lista depende solo de las filas visibles. Como el panel no forma parte de la
+ * jerarquía de componentes, los clics sobre sus botones y estrellas se reenvían con
+ * {@link #procesarClic(JList, MouseEvent)}.
  *
  * <p><b>Aplicación del PDF - Categoría 3: Eventos Sociales y Académicos de la Carrera:</b><br>
  * Esta clase contribuye a la presentación visual de las ideas propuestas por los estudiantes, facilitando
@@ -19,13 +25,13 @@ import java.awt.*;
  * con eventos académicos y sociales.
  */
 public class IdeaListCellRenderer implements ListCellRenderer<Idea> {
-    
-    /** Usuario actual que está visualizando la lista de ideas */
-    private final Usuario usuarioActual;
 
-    /** Servicio que administra las ideas (para operaciones de voto, eliminación, etc.) */
-    private final IdeaService ideaService;
-    
+    /** Color de fondo de la celda seleccionada */
+    private static final Color FONDO_SELECCIONADO = new Color(220, 235, 255); // Azul claro
+
+    /** Panel reutilizado para pintar todas las celdas */
+    private final IdeaPanel panel;
+
     /**
      * Constructor del renderizador de celdas para ideas.
      *
@@ -33,13 +39,12 @@ public class IdeaListCellRenderer implements ListCellRenderer<Idea> {
      * @param ideaService Servicio que gestiona el almacenamiento y actualización de ideas.
      */
     public IdeaListCellRenderer(Usuario usuarioActual, IdeaService ideaService) {
-        this.usuarioActual = usuarioActual;
-        this.ideaService = ideaService;
+        this.panel = new IdeaPanel(usuarioActual, ideaService);
     }
 
     /**
-     * Este método crea un componente visual que representa una idea dentro de una celda del {@link JList}.
-     * Utiliza {@link IdeaPanel} para construir el componente y adapta su apariencia si está seleccionada.
+     * Devuelve el panel compartido con los datos de la idea de esta celda.
+     * No crea componentes: {@link IdeaPanel#mostrar(Idea, Component)} solo actualiza textos e imagen.
      *
      * @param list La lista que contiene las ideas.
      * @param idea El objeto {@link Idea} actual a renderizar.
@@ -51,16 +56,58 @@ public class IdeaListCellRenderer implements ListCellRenderer<Idea> {
     @Override
     public Component getListCellRendererComponent(JList<? extends Idea> list, Idea idea, int index,
                                                   boolean isSelected, boolean cellHasFocus) {
-        // Crea el panel visual personalizado con la información de la idea
-        IdeaPanel panel = new IdeaPanel(idea, usuarioActual, ideaService);
+        panel.mostrar(idea, list);
 
         // Cambia el fondo si está seleccionada para mayor contraste visual
-        if (isSelected) {
-            panel.setBackground(new Color(220, 235, 255)); // Azul claro
-        } else {
-            panel.setBackground(Color.WHITE); // Fondo por defecto
+        panel.setBackground(isSelected ? FONDO_SELECCIONADO : Color.WHITE);
+        return panel;
+    }
+
+    /**
+     * Reenvía un clic sobre la lista al botón o estrella de la celda que está bajo el cursor.
+     * <p>
+     * Se dispone el panel con la idea y el tamaño de la celda pulsada, se busca el componente
+     * en esa posición y se le entrega el clic. Si la acción elimina la idea, se quita también
+     * del modelo de la lista.
+     *
+     * @param list La lista que recibió el clic.
+     * @param e Evento del clic, en coordenadas de la lista.
+     */
+    public void procesarClic(JList<Idea> list, MouseEvent e) {
+        int index = list.locationToIndex(e.getPoint());
+        if (index < 0) return;
+        Rectangle celda = list.getCellBounds(index, index);
+        if (celda == null || !celda.contains(e.getPoint())) return;
+
+        Idea idea = list.getModel().getElementAt(index);
+        getListCellRendererComponent(list, idea, index, list.isSelectedIndex(index), false);
+        panel.setAlEliminar(eliminada -> {
+            if (list.getModel() instanceof DefaultListModel) {
+                ((DefaultListModel<Idea>) list.getModel()).removeElement(eliminada);
+            }
+        });
+        panel.setBounds(0, 0, celda.width, celda.height);
+        disponer(panel);
+
+        Component destino = SwingUtilities.getDeepestComponentAt(panel, e.getX() - celda.x, e.getY() - celda.y);
+        if (destino instanceof AbstractButton) {
+            ((AbstractButton) destino).doClick(0);
+        } else if (destino != null && destino != panel) {
+            Point p = SwingUtilities.convertPoint(panel, e.getX() - celda.x, e.getY() - celda.y, destino);
+            destino.dispatchEvent(new MouseEvent(destino, MouseEvent.MOUSE_CLICKED, e.getWhen(),
+                    e.getModifiersEx(), p.x, p.y, e.getClickCount(), false, e.getButton()));
         }
+        list.repaint();
+    }
 
-        return panel;
+    /**
+     * Calcula la disposición del panel y sus hijos, que no están dentro de una ventana.
+     */
+    private static void disponer(Component componente) {
+        if (componente instanceof Container) {
+            Container contenedor = (Container) componente;
+            contenedor.doLayout();
+            for (Component hijo : contenedor.getComponents()) disponer(hijo);
+        }
     }
 }
@@ -4,15 +4,33 @@ import auth.Usuario;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.util.function.Consumer;
 
 /**
  * Panel visual para mostrar la información de una idea en el muro.
  * Incluye título, autor, contenido, calificación, imagen y botones de acción.
+ * <p>
+ * Los componentes se crean una sola vez; {@link #mostrar(Idea, Component)} cambia la idea
+ * mostrada, lo que permite reutilizar el mismo panel como renderizador de celdas.
  */
 public class IdeaPanel extends JPanel {
 
-    private final Idea idea;
+    private final Usuario usuarioActual;
     private final IdeaService ideaService;
+    private Idea idea;
+
+    /** Componente que aloja al panel: se repinta al cargar la imagen y es dueño de los diálogos. */
+    private Component anfitrion = this;
+
+    /** Acción al eliminar la idea; por defecto el panel se quita de su contenedor. */
+    private Consumer<Idea> alEliminar = eliminada -> quitarDelContenedor();
+
+    private final JLabel tituloLabel = new JLabel();
+    private final JLabel autorLabel = new JLabel();
+    private final JTextArea contenidoArea = new JTextArea();
+    private final StarRatingPanel starRatingPanel;
+    private final JLabel avgLabel = new JLabel();
+    private final JLabel imageLabel = new JLabel("Cargando imagen...", SwingConstants.CENTER);
 
     /**
      * Crea un nuevo panel para mostrar una idea.
@@ -21,9 +39,19 @@ public class IdeaPanel extends JPanel {
      * @param ideaService Servicio de ideas.
      */
     public IdeaPanel(Idea idea, Usuario usuarioActual, IdeaService ideaService) {
-        this.idea = idea;
+        this(usuarioActual, ideaService);
+        mostrar(idea, this);
+    }
+
+    /**
+     * Crea un panel reutilizable sin idea asignada; se debe llamar a {@link #mostrar(Idea, Component)}.
+     * @param usuarioActual Usuario actual (para permisos y votación).
+     * @param ideaService Servicio de ideas.
+     */
+    IdeaPanel(Usuario usuarioActual, IdeaService ideaService) {
+        this.usuarioActual = usuarioActual;
         this.ideaService = ideaService;
-        
+
         setLayout(new BorderLayout(15, 15));
         setBorder(BorderFactory.createCompoundBorder(
             BorderFactory.createEmptyBorder(10, 0, 10, 0),
@@ -41,21 +69,18 @@ public class IdeaPanel extends JPanel {
         topTextPanel.setLayout(new BoxLayout(topTextPanel, BoxLayout.Y_AXIS));
         topTextPanel.setOpaque(false);
 
-        JLabel tituloLabel = new JLabel(idea.getTitulo());
         tituloLabel.setFont(new Font("Segoe UI", Font.BOLD, 22));
         tituloLabel.setForeground(new Color(150, 0, 0));
         topTextPanel.add(tituloLabel);
-        
+
         topTextPanel.add(Box.createRigidArea(new Dimension(0, 5)));
-        
-        JLabel autorLabel = new JLabel("Por: " + idea.getNombreEstudiante() + " (" + idea.getCodigoEstudiante() + ")");
+
         autorLabel.setFont(new Font("Segoe UI", Font.ITALIC, 14));
         autorLabel.setForeground(new Color(150, 150, 150));
         topTextPanel.add(autorLabel);
 
         topTextPanel.add(Box.createRigidArea(new Dimension(0, 15)));
 
-        JTextArea contenidoArea = new JTextArea(idea.getContenido());
         contenidoArea.setEditable(false);
         contenidoArea.setLineWrap(true);
         contenidoArea.setWrapStyleWord(true);
@@ -68,17 +93,16 @@ public class IdeaPanel extends JPanel {
         JPanel bottomPanel = new JPanel();
         bottomPanel.setLayout(new BoxLayout(bottomPanel, BoxLayout.X_AXIS));
         bottomPanel.setOpaque(false);
-        
+
         if (usuarioActual != null && !usuarioActual.getUsername().equals("admin")) {
-            bottomPanel.add(new StarRatingPanel(idea, usuarioActual, ideaService));
+            starRatingPanel = new StarRatingPanel(usuarioActual, ideaService);
+            bottomPanel.add(starRatingPanel);
         } else {
-            double avg = idea.getAverageRating();
-            String avgText = String.format("Calificación: %.1f ★ (%d votos)", avg, idea.getVoteCount());
-            JLabel avgLabel = new JLabel(avgText);
+            starRatingPanel = null;
             avgLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
             bottomPanel.add(avgLabel);
         }
-        
+
         bottomPanel.add(Box.createHorizontalGlue());
 
         JButton verDetallesButton = new JButton("Comentarios");
@@ -86,10 +110,10 @@ public class IdeaPanel extends JPanel {
         verDetallesButton.setBackground(new Color(204, 0, 0));
         verDetallesButton.setForeground(Color.WHITE);
         verDetallesButton.setBorder(BorderFactory.createEmptyBorder(8, 15, 8, 15));
-        
+
         verDetallesButton.addActionListener(e -> {
-            Window owner = SwingUtilities.getWindowAncestor(this);
-            VentanaDetalleIdea dialog = new VentanaDetalleIdea(owner, idea, ideaService, usuarioActual);
+            Window owner = SwingUtilities.getWindowAncestor(anfitrion);
+            VentanaDetalleIdea dialog = new VentanaDetalleIdea(owner, this.idea, ideaService, usuarioActual);
             dialog.setVisible(true);
         });
         bottomPanel.add(verDetallesButton);
@@ -101,37 +125,72 @@ public class IdeaPanel extends JPanel {
             deleteButton.addActionListener(e -> eliminarIdea());
             bottomPanel.add(deleteButton);
         }
-        
+
         panelIzquierdo.add(bottomPanel, BorderLayout.SOUTH);
         add(panelIzquierdo, BorderLayout.CENTER);
 
-        if (idea.getImageUrl() != null && !idea.getImageUrl().isEmpty()) {
-            JLabel imageLabel = new JLabel("Cargando imagen...", SwingConstants.CENTER);
-            imageLabel.setPreferredSize(new Dimension(200, 200));
-            imageLabel.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY));
-            add(imageLabel, BorderLayout.EAST);
-            ImageIcon icon = idea.getImageIcon(this);
-            if (icon != null) {
-                imageLabel.setIcon(icon);
-                imageLabel.setText(null);
-            }
+        imageLabel.setPreferredSize(new Dimension(200, 200));
+        imageLabel.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY));
+        add(imageLabel, BorderLayout.EAST);
+    }
+
+    /**
+     * Muestra una idea en este panel, reutilizando sus componentes.
+     * @param idea Idea a mostrar.
+     * @param anfitrion Componente a repintar cuando termine de cargar la imagen
+     *                  (la lista, cuando el panel se usa como renderizador).
+     */
+    void mostrar(Idea idea, Component anfitrion) {
+        this.idea = idea;
+        this.anfitrion = anfitrion;
+
+        tituloLabel.setText(idea.getTitulo());
+        autorLabel.setText("Por: " + idea.getNombreEstudiante() + " (" + idea.getCodigoEstudiante() + ")");
+        contenidoArea.setText(idea.getContenido());
+
+        if (starRatingPanel != null) {
+            starRatingPanel.setIdea(idea);
+        } else {
+            avgLabel.setText(String.format("Calificación: %.1f ★ (%d votos)", idea.getAverageRating(), idea.getVoteCount()));
+        }
+
+        boolean tieneImagen = idea.getImageUrl() != null && !idea.getImageUrl().isEmpty();
+        imageLabel.setVisible(tieneImagen);
+        if (tieneImagen) {
+            ImageIcon icon = idea.getImageIcon(anfitrion);
+            imageLabel.setIcon(icon);
+            imageLabel.setText(icon != null ? null : "Cargando imagen...");
         }
     }
-    
+
+    /**
+     * Define qué hacer cuando el administrador elimina la idea mostrada.
+     */
+    void setAlEliminar(Consumer<Idea> alEliminar) {
+        this.alEliminar = alEliminar;
+    }
+
     /**
      * Elimina la idea actual tras confirmación.
      */
     private void eliminarIdea() {
         int confirm = JOptionPane.showConfirmDialog(
-            this, "¿Estás seguro de que deseas eliminar esta idea permanentemente?", "Confirmar Eliminación", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            anfitrion, "¿Estás seguro de que deseas eliminar esta idea permanentemente?", "Confirmar Eliminación", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
         if (confirm == JOptionPane.YES_OPTION) {
             ideaService.eliminarIdea(this.idea);
-            Container parentContainer = this.getParent();
-            if (parentContainer != null) {
-                parentContainer.remove(this);
-                parentContainer.revalidate();
-                parentContainer.repaint();
-            }
+            alEliminar.accept(this.idea);
+        }
+    }
+
+    /**
+     * Quita el panel de su contenedor (uso fuera de una lista).
+     */
+    private void quitarDelContenedor() {
+        Container parentContainer = this.getParent();
+        if (parentContainer != null) {
+            parentContainer.remove(this);
+            parentContainer.revalidate();
+            parentContainer.repaint();
         }
     }
 }
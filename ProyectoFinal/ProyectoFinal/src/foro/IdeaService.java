@@ -1,21 +1,115 @@
 package foro;
 
+import main.persistencia.Almacen;
+import main.persistencia.CodecBinario;
+import main.persistencia.ConfiguracionAlmacen;
+import main.persistencia.EscrituraAtomica;
+
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.*;
 
 /**
  * Servicio para gestionar la persistencia y operaciones sobre las ideas del foro.
  * Permite agregar, aprobar, desaprobar, eliminar y obtener ideas.
+ * <p>
+ * Cada cambio se anexa a un diario de operaciones ({@link DiarioIdeas}); la instantánea
+ * completa en {@code ideas.dat} solo se reescribe al compactar el diario.
+ * <p>
+ * Los métodos que modifican el foro solo cambian la memoria y codifican el registro del diario;
+ * la escritura en disco la hace {@link EscrituraDiferida} en segundo plano, agrupando las
+ * ráfagas de cambios. {@link #cerrar()} escribe lo pendiente antes de salir.
+ * <p>
+ * Con la propiedad de sistema {@code -Dforo.almacenMapeado=true} la instantánea se mapea en
+ * memoria y solo se leen las cabeceras; el contenido, los votos y los comentarios de cada idea
+ * se decodifican cuando se accede a ellos por primera vez.
+ * <p>
+ * La búsqueda de texto usa un índice invertido ({@link IndiceTexto}) que se mantiene con cada
+ * cambio y se guarda en {@code ideas.idx} al cerrar; al arrancar se reutiliza si corresponde a
+ * la misma secuencia del diario y, si no, se reconstruye en la primera búsqueda.
+ * <p>
+ * Los archivos se guardan en el {@link Almacen} configurado con {@code foro.almacen.ideas}
+ * (ver {@link ConfiguracionAlmacen}); por defecto, en el directorio de trabajo.
  */
 public class IdeaService {
+    /**
+     * Criterios de orden de los muros por ranking de ideas aprobadas.
+     */
+    public enum Ranking { MEJOR_CALIFICADAS, MAS_VOTADAS, MAS_COMENTADAS }
+
     private List<Idea> ideas = new ArrayList<>();
     private static final String ARCHIVO_IDEAS = "ideas.dat";
+    private static final String ARCHIVO_DIARIO = "ideas.log";
+    private static final String ARCHIVO_INDICE = "ideas.idx";
+    private static final int MAX_REGISTROS_DIARIO = 500;
+    private static final boolean ALMACEN_MAPEADO = Boolean.getBoolean("foro.almacenMapeado");
+    // Los tres son null en una copia en memoria sin persistencia
+    private final Almacen almacen;
+    private final DiarioIdeas diario;
+    private final EscrituraDiferida escritura;
+    private boolean cuerposDiferidos = false;
+    // Protegido por this: la siguiente escritura debe ser una instantánea completa
+    private boolean puntoDeControlPendiente = false;
+
+    // Índices por estado, ordenados por orden de creación, y sus vistas de solo lectura
+    private final Map<Idea.Estado, NavigableSet<Idea>> indicePorEstado = new EnumMap<>(Idea.Estado.class);
+    private final Map<Idea.Estado, Collection<Idea>> vistasPorEstado = new EnumMap<>(Idea.Estado.class);
+    private long siguienteOrden = 0;
+    // Ideas por identificador (orden de creación) para las consultas paginadas
+    private final NavigableMap<Long, Idea> ideasPorId = new TreeMap<>();
+
+    // Rankings de ideas aprobadas; se construyen en la primera consulta para no decodificar
+    // todas las ideas al cargar el almacén mapeado. Protegidos por this
+    private final RankingIdeas ranking = new RankingIdeas();
+    private boolean rankingConstruido = false;
+
+    // Índice de texto completo; null hasta la primera búsqueda si no se pudo cargar. Protegido por this
+    private IndiceTexto indiceTexto;
+
+    /**
+     * Constructor que carga las ideas desde el almacén configurado.
+     */
+    public IdeaService() {
+        this(ConfiguracionAlmacen.almacenIdeas());
+    }
 
     /**
-     * Constructor que carga las ideas desde archivo.
+     * Constructor que carga las ideas desde el almacén indicado.
+     * @param almacen Almacén de la instantánea, el diario y el índice de texto.
      */
-    public IdeaService() { cargarIdeas(); }
+    public IdeaService(Almacen almacen) {
+        this.almacen = almacen;
+        this.diario = new DiarioIdeas(almacen, ARCHIVO_DIARIO);
+        this.escritura = new EscrituraDiferida(this::vaciar, EscrituraDiferida.RETARDO_MAXIMO_MS);
+        crearIndicesPorEstado();
+        cargarIdeas();
+        reconstruirIndices();
+        cargarIndiceTexto();
+    }
+
+    /**
+     * Constructor de una copia en memoria de ideas que se guardan en otro lugar (por ejemplo,
+     * en el servidor del foro): sin almacén, diario ni escritura diferida, así que los cambios
+     * solo actualizan la memoria y los índices.
+     * @param ideas Ideas iniciales.
+     */
+    IdeaService(List<Idea> ideas) {
+        this.almacen = null;
+        this.diario = null;
+        this.escritura = null;
+        this.ideas = new ArrayList<>(ideas);
+        crearIndicesPorEstado();
+        reconstruirIndices();
+    }
+
+    private void crearIndicesPorEstado() {
+        for (Idea.Estado estado : Idea.Estado.values()) {
+            NavigableSet<Idea> indice = new TreeSet<>(Comparator.comparingLong(Idea::getOrden));
+            indicePorEstado.put(estado, indice);
+            vistasPorEstado.put(estado, Collections.unmodifiableSet(indice));
+        }
+    }
 
     /**
      * Devuelve la lista completa de ideas.
@@ -23,80 +117,487 @@ public class IdeaService {
     public List<Idea> getIdeas() { return ideas; }
 
     /**
-     * Devuelve la lista de ideas pendientes de aprobación.
+     * Busca una idea por su identificador.
+     * @return La idea, o null si no existe.
      */
-    public List<Idea> getIdeasPendientes() {
-        List<Idea> pendientes = new ArrayList<>();
-        for (Idea idea : ideas) {
-            if (idea.getEstado() == Idea.Estado.PENDIENTE) pendientes.add(idea);
+    public synchronized Idea getIdea(long id) { return ideasPorId.get(id); }
+
+    /**
+     * Devuelve una vista de solo lectura de las ideas pendientes de aprobación,
+     * en orden de creación. La vista refleja los cambios posteriores del servicio.
+     */
+    public Collection<Idea> getIdeasPendientes() { return vistasPorEstado.get(Idea.Estado.PENDIENTE); }
+
+    /**
+     * Devuelve una vista de solo lectura de las ideas aprobadas, en orden de creación.
+     * La vista refleja los cambios posteriores del servicio.
+     */
+    public Collection<Idea> getIdeasAprobadas() { return vistasPorEstado.get(Idea.Estado.APROBADA); }
+
+    /**
+     * Devuelve las primeras ideas aprobadas según un ranking, sin ordenar todas las ideas:
+     * los rankings se actualizan con cada voto, comentario o cambio de estado.
+     * @param criterio Criterio de orden.
+     * @param k Cantidad máxima de ideas.
+     * @return Copia de las primeras {@code k} ideas, de mayor a menor.
+     */
+    public synchronized List<Idea> getTopIdeas(Ranking criterio, int k) {
+        if (!rankingConstruido) {
+            for (Idea idea : indicePorEstado.get(Idea.Estado.APROBADA)) ranking.actualizar(idea);
+            rankingConstruido = true;
         }
-        return pendientes;
+        return ranking.primeras(criterio, k);
     }
 
     /**
-     * Devuelve la lista de ideas aprobadas.
+     * Ejecuta una consulta paginada y devuelve solo la página pedida, como resúmenes.
+     * Los órdenes por fecha recorren únicamente el rango pedido desde el cursor.
+     * @throws IllegalArgumentException Si el cursor no es válido para la consulta.
      */
-    public List<Idea> getIdeasAprobadas() {
-        List<Idea> aprobadas = new ArrayList<>();
-        for (Idea idea : ideas) {
-            if (idea.getEstado() == Idea.Estado.APROBADA) aprobadas.add(idea);
+    public synchronized PaginaIdeas consultar(ConsultaIdeas consulta) {
+        return consulta.ejecutar(ideasPorId);
+    }
+
+    /**
+     * Busca ideas por su título, contenido y comentarios. Las palabras se comparan sin tildes ni
+     * mayúsculas y agrupando plurales; la última palabra también se busca como prefijo, para
+     * mostrar resultados mientras se escribe.
+     * @param consulta Texto a buscar.
+     * @param estado Estado de las ideas buscadas, o null para cualquiera.
+     * @param limite Cantidad máxima de resultados.
+     * @return Ideas que contienen todas las palabras, en orden de creación.
+     */
+    public synchronized List<Idea> buscarIdeas(String consulta, Idea.Estado estado, int limite) {
+        if (indiceTexto == null) {
+            indiceTexto = new IndiceTexto();
+            for (Idea idea : ideas) indiceTexto.agregar(idea);
         }
-        return aprobadas;
+        return indiceTexto.buscar(consulta, estado, limite);
     }
 
     /**
-     * Agrega una nueva idea y la guarda en archivo.
+     * Agrega una nueva idea y registra el cambio en el diario.
      */
-    public void agregarIdea(Idea idea) {
+    public synchronized void agregarIdea(Idea idea) {
         ideas.add(idea);
-        guardarIdeas();
+        ideasPorId.put(idea.getId(), idea);
+        idea.setOrden(siguienteOrden++);
+        indicePorEstado.get(idea.getEstado()).add(idea);
+        if (indiceTexto != null) indiceTexto.agregar(idea);
+        registrar(d -> d.registrarAlta(idea));
     }
 
     /**
-     * Marca una idea como aprobada y guarda los cambios.
+     * Marca una idea como aprobada, aumenta su versión y registra el cambio.
      */
-    public void aprobarIdea(Idea idea) {
+    public synchronized void aprobarIdea(Idea idea) {
+        if (!contiene(idea)) return;
+        Idea.Estado anterior = idea.getEstado();
         idea.aprobar();
-        guardarIdeas();
+        idea.setVersion(idea.getVersion() + 1);
+        registrarEstado(idea, anterior);
     }
 
     /**
-     * Marca una idea como desaprobada y guarda los cambios.
+     * Marca una idea como desaprobada, aumenta su versión y registra el cambio.
      */
-    public void desaprobarIdea(Idea idea) {
+    public synchronized void desaprobarIdea(Idea idea) {
+        if (!contiene(idea)) return;
+        Idea.Estado anterior = idea.getEstado();
         idea.desaprobar();
-        guardarIdeas();
+        idea.setVersion(idea.getVersion() + 1);
+        registrarEstado(idea, anterior);
     }
 
     /**
-     * Elimina una idea del sistema y guarda los cambios.
+     * Elimina una idea del sistema y registra el cambio.
      */
-    public void eliminarIdea(Idea idea) {
+    public synchronized void eliminarIdea(Idea idea) {
+        if (!contiene(idea)) return;
         ideas.remove(idea);
-        guardarIdeas();
+        ideasPorId.remove(idea.getId());
+        indicePorEstado.get(idea.getEstado()).remove(idea);
+        if (rankingConstruido) ranking.quitar(idea);
+        if (indiceTexto != null) indiceTexto.quitar(idea);
+        registrar(d -> d.registrarEliminacion(idea.getId()));
+    }
+
+    /**
+     * Registra el voto de un usuario sobre una idea.
+     * @param idea Idea calificada.
+     * @param username Usuario que vota.
+     * @param rating Calificación de 1 a 5.
+     */
+    public synchronized void votarIdea(Idea idea, String username, int rating) {
+        if (!contiene(idea)) return;
+        idea.addVote(username, rating);
+        actualizarRanking(idea);
+        registrar(d -> d.registrarVoto(idea.getId(), username, rating));
+    }
+
+    /**
+     * Agrega un comentario a una idea y registra el cambio.
+     */
+    public synchronized void agregarComentario(Idea idea, Comentario comentario) {
+        if (!contiene(idea)) return;
+        idea.agregarComentario(comentario);
+        actualizarRanking(idea);
+        if (indiceTexto != null) indiceTexto.agregarTexto(idea, comentario.getTexto());
+        registrar(d -> d.registrarComentario(idea.getId(), comentario));
+    }
+
+    /**
+     * Elimina un comentario de una idea y registra el cambio.
+     */
+    public synchronized void eliminarComentario(Idea idea, Comentario comentario) {
+        if (!contiene(idea)) return;
+        int indiceComentario = idea.getComentarios().indexOf(comentario);
+        if (indiceComentario < 0) return;
+        idea.getComentarios().remove(indiceComentario);
+        actualizarRanking(idea);
+        if (indiceTexto != null) indiceTexto.quitarTexto(idea, comentario.getTexto());
+        registrar(d -> d.registrarEliminacionComentario(idea.getId(), indiceComentario));
     }
 
     /**
-     * Guarda la lista de ideas en el archivo de persistencia.
+     * Guarda la instantánea completa de ideas y vacía el diario (punto de control).
+     * Espera a que la escritura termine.
      */
     public void guardarIdeas() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(ARCHIVO_IDEAS))) {
-            oos.writeObject(ideas);
+        if (escritura == null) return;
+        synchronized (this) {
+            puntoDeControlPendiente = true;
+        }
+        escritura.vaciarAhora();
+    }
+
+    /**
+     * Escribe los cambios pendientes y detiene el hilo de escritura. Llamar al salir de la aplicación;
+     * si no se llama, los cambios pendientes se escriben al terminar la JVM.
+     */
+    public void cerrar() {
+        if (escritura == null) return;
+        escritura.cerrar();
+        guardarIndiceTexto();
+    }
+
+    /**
+     * Devuelve un resumen de las métricas de escritura diferida (latencia y cambios pendientes).
+     */
+    public String getEstadisticasPersistencia() { return escritura == null ? "sin persistencia" : escritura.getEstadisticas(); }
+
+    /**
+     * Devuelve la cantidad de cambios aún no escritos en disco.
+     */
+    public long getCambiosPendientes() { return escritura == null ? 0 : escritura.getCambiosPendientes(); }
+
+    /**
+     * Escribe lo pendiente; lo llama {@link EscrituraDiferida}, nunca en paralelo consigo mismo.
+     * Los datos se toman con el bloqueo del servicio y se escriben fuera de él, así los
+     * métodos que modifican el foro no esperan al disco.
+     */
+    private void vaciar() {
+        byte[] instantanea = null;
+        byte[] registros;
+        int incluidos = 0;
+        synchronized (this) {
+            if (puntoDeControlPendiente || diario.getRegistros() >= MAX_REGISTROS_DIARIO) {
+                instantanea = codificarInstantanea();
+                if (instantanea != null) {
+                    incluidos = diario.getRegistros();
+                    puntoDeControlPendiente = false;
+                }
+            }
+            // Los registros se conservan hasta que la instantánea que los incluye esté en disco
+            registros = diario.tomarPendientes();
+        }
+
+        if (instantanea != null) {
+            if (escribirInstantanea(instantanea)) {
+                synchronized (this) {
+                    diario.descontarRegistros(incluidos);
+                }
+                return;
+            }
+            // Sin instantánea nueva, el diario debe seguir completo: se anexan los registros
+            // tomados y se reintenta el punto de control en la próxima escritura
+            synchronized (this) {
+                puntoDeControlPendiente = true;
+            }
+            escritura.marcarSucio();
+        }
+        if (registros.length == 0) return;
+        try {
+            diario.escribir(registros);
+        } catch (IOException e) {
+            // Los registros tomados ya no se pueden reintentar: la próxima escritura será una instantánea
+            guardarErrorEnTxt("Error escribiendo diario de ideas: " + e.getMessage());
+            synchronized (this) {
+                puntoDeControlPendiente = true;
+            }
+            escritura.marcarSucio();
+        }
+    }
+
+    /**
+     * Codifica todas las ideas en memoria. Se llama con el bloqueo del servicio tomado.
+     * @return Los bytes de la instantánea, o null si falló.
+     */
+    private byte[] codificarInstantanea() {
+        if (cuerposDiferidos) {
+            // El archivo mapeado se va a reemplazar: se decodifica todo antes de escribir
+            for (Idea idea : ideas) idea.materializar();
+            cuerposDiferidos = false;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            CodecIdeas.escribir(out, ideas, diario.getUltimaSecuencia());
+        } catch (IOException | RuntimeException e) {
+            guardarErrorEnTxt("Error codificando ideas: " + e.getMessage());
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Escribe la instantánea en {@code ideas.dat} y vacía el archivo del diario.
+     * La instantánea se reemplaza de forma atómica y con suma de verificación, así que un corte
+     * a mitad de la escritura deja intacta la anterior; el diario solo se vacía después.
+     * @return false si no se pudo escribir la instantánea (el diario queda intacto).
+     */
+    private boolean escribirInstantanea(byte[] instantanea) {
+        try {
+            almacen.escribirVerificado(ARCHIVO_IDEAS, instantanea);
         } catch (IOException e) {
             guardarErrorEnTxt("Error guardando ideas: " + e.getMessage());
+            return false;
+        }
+        try {
+            diario.truncar();
+        } catch (IOException e) {
+            // Los registros que quedan ya están en la instantánea y se saltan al reproducir
+            guardarErrorEnTxt("Error compactando diario de ideas: " + e.getMessage());
         }
+        return true;
+    }
+
+    /**
+     * Mueve la idea al índice de su nuevo estado y registra el cambio en el diario.
+     */
+    private void registrarEstado(Idea idea, Idea.Estado anterior) {
+        indicePorEstado.get(anterior).remove(idea);
+        indicePorEstado.get(idea.getEstado()).add(idea);
+        actualizarRanking(idea);
+        registrar(d -> d.registrarEstado(idea.getId(), idea.getEstado()));
     }
 
     /**
-     * Carga la lista de ideas desde el archivo de persistencia.
+     * Indica si la idea es la que el servicio tiene con su identificador; los cambios sobre una
+     * idea eliminada o ajena al servicio se ignoran. Se llama con el bloqueo del servicio tomado.
+     */
+    private boolean contiene(Idea idea) {
+        return ideasPorId.get(idea.getId()) == idea;
+    }
+
+    /**
+     * Anota un cambio en el diario y programa su escritura; en una copia en memoria no hace nada.
+     * Se llama con el bloqueo del servicio tomado.
+     */
+    private void registrar(OperacionDiario operacion) {
+        if (diario == null) return;
+        try {
+            operacion.registrar(diario);
+        } catch (IOException e) {
+            registrarFalloDiario(e);
+        }
+        escritura.marcarSucio();
+    }
+
+    @FunctionalInterface
+    private interface OperacionDiario {
+        void registrar(DiarioIdeas diario) throws IOException;
+    }
+
+    /**
+     * Vuelve a ubicar la idea en los rankings tras un cambio. Se llama con el bloqueo del servicio tomado.
+     */
+    private void actualizarRanking(Idea idea) {
+        if (rankingConstruido) ranking.actualizar(idea);
+    }
+
+    /**
+     * Si un registro no se puede codificar, la siguiente escritura será una instantánea completa
+     * para no perder el cambio. Se llama con el bloqueo del servicio tomado.
+     */
+    private void registrarFalloDiario(IOException e) {
+        guardarErrorEnTxt("Error escribiendo diario de ideas: " + e.getMessage());
+        puntoDeControlPendiente = true;
+    }
+
+    /**
+     * Carga la última instantánea de ideas y reproduce el diario sobre ella.
+     * Si el archivo aún está en el formato de serialización de Java, se lee con
+     * {@link ObjectInputStream} y se reescribe de inmediato en el formato binario.
+     * <p>
+     * Si la suma de verificación de {@code ideas.dat} no coincide, se carga la generación
+     * anterior ({@code ideas.dat.bak}) y el archivo dañado se aparta para no sobrescribirlo.
      */
     @SuppressWarnings("unchecked")
     private void cargarIdeas() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(ARCHIVO_IDEAS))) {
-            ideas = (List<Idea>) ois.readObject();
+        long secuencia = 0;
+        boolean formatoAntiguo = false;
+        Long secuenciaMapeada = ALMACEN_MAPEADO ? cargarIdeasMapeadas() : null;
+        if (secuenciaMapeada != null) {
+            secuencia = secuenciaMapeada;
+        } else try {
+            EscrituraAtomica.Lectura lectura = almacen.leerVerificado(ARCHIVO_IDEAS);
+            if (lectura.desdeRespaldo) {
+                apartarDanado();
+                guardarErrorEnTxt("ideas.dat está dañado; se cargó la generación anterior");
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(lectura.datos));
+            if (CodecBinario.comienzaCon(in, CodecIdeas.MARCA)) {
+                ideas = new ArrayList<>();
+                formatoAntiguo = !CodecIdeas.guardaIdentificadores(lectura.datos[CodecIdeas.MARCA.length]);
+                secuencia = CodecIdeas.leer(in, ideas);
+            } else {
+                ObjectInputStream ois = new ObjectInputStream(in);
+                ideas = (List<Idea>) ois.readObject();
+                try {
+                    secuencia = ois.readLong();
+                } catch (EOFException e) {
+                    secuencia = 0; // Formato anterior al diario
+                }
+                formatoAntiguo = true;
+            }
+        } catch (NoSuchFileException e) {
+            ideas = new ArrayList<>(); // Primera ejecución
         } catch (Exception e) {
             ideas = new ArrayList<>();
             guardarErrorEnTxt("Error cargando ideas: " + e.getMessage());
+            apartarDanado(); // La próxima instantánea no debe reemplazar lo que quizá se pueda recuperar
+        }
+        try {
+            diario.reproducir(ideas, secuencia);
+        } catch (Exception e) {
+            guardarErrorEnTxt("Error reproduciendo diario de ideas: " + e.getMessage());
+            guardarIdeas(); // Fija el estado reproducido hasta el fallo y descarta el resto del diario
+        }
+        // Migración al formato binario actual: las ideas sin identificador guardado recibieron uno
+        // nuevo al cargar, y el diario las referencia por él
+        if (formatoAntiguo || diario.tieneAltasSinId()) guardarIdeas();
+    }
+
+    /**
+     * Carga el índice de texto guardado al cerrar, si refleja exactamente las ideas cargadas
+     * (misma secuencia del diario). Si no, se reconstruye en la primera búsqueda.
+     * <p>
+     * El archivo se borra al leerlo: solo existe si la ejecución anterior terminó con
+     * {@link #cerrar()}, así un corte nunca deja un índice desactualizado para la siguiente.
+     */
+    private void cargarIndiceTexto() {
+        try {
+            EscrituraAtomica.Lectura lectura = almacen.leerVerificado(ARCHIVO_INDICE);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(lectura.datos));
+            indiceTexto = lectura.desdeRespaldo ? null : IndiceTexto.leer(in, diario.getUltimaSecuencia(), ideas);
+        } catch (NoSuchFileException e) {
+            indiceTexto = null;
+        } catch (IOException | RuntimeException e) {
+            indiceTexto = null;
+            guardarErrorEnTxt("Índice de texto descartado: " + e.getMessage());
+        }
+        try {
+            almacen.borrar(ARCHIVO_INDICE);
+        } catch (IOException e) {
+            guardarErrorEnTxt("Error borrando índice de texto: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Guarda el índice de texto junto con la secuencia del diario que refleja.
+     */
+    private synchronized void guardarIndiceTexto() {
+        if (indiceTexto == null) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            indiceTexto.escribir(out, diario.getUltimaSecuencia());
+            almacen.escribirVerificado(ARCHIVO_INDICE, bytes.toByteArray());
+        } catch (IOException e) {
+            guardarErrorEnTxt("Error guardando índice de texto: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reemplaza todas las ideas en memoria, por ejemplo con las que envía el servidor del foro.
+     * El diario ya no corresponde a la lista, así que la siguiente escritura es una instantánea completa.
+     */
+    synchronized void reemplazarIdeas(List<Idea> nuevas) {
+        ideas = new ArrayList<>(nuevas);
+        cuerposDiferidos = false;
+        reconstruirIndices();
+        ranking.limpiar();
+        rankingConstruido = false;
+        indiceTexto = null;
+        if (diario == null) return;
+        diario.descartarPendientes();
+        puntoDeControlPendiente = true;
+        escritura.marcarSucio();
+    }
+
+    /**
+     * Asigna el orden de creación según la posición en la lista y llena los índices por estado.
+     */
+    private void reconstruirIndices() {
+        for (NavigableSet<Idea> indice : indicePorEstado.values()) indice.clear();
+        siguienteOrden = 0;
+        ideasPorId.clear();
+        for (Idea idea : ideas) {
+            ideasPorId.put(idea.getId(), idea);
+            idea.setOrden(siguienteOrden++);
+            indicePorEstado.get(idea.getEstado()).add(idea);
+        }
+    }
+
+    /**
+     * Aparta un {@code ideas.dat} ilegible como {@code ideas.dat.danado-<fecha>}.
+     */
+    private void apartarDanado() {
+        try {
+            String apartado = almacen.apartar(ARCHIVO_IDEAS);
+            if (apartado != null) guardarErrorEnTxt("ideas.dat dañado se conservó como " + apartado);
+        } catch (IOException e) {
+            guardarErrorEnTxt("Error apartando ideas.dat dañado: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Mapea {@code ideas.dat} en memoria y carga solo las cabeceras de las ideas.
+     * La suma de verificación se comprueba sobre el archivo mapeado, sin copiarlo.
+     * @return Secuencia de la instantánea, o null si el archivo no existe, está dañado, no está
+     *         en el formato binario con identificadores, no se pudo mapear o el almacén no
+     *         permite mapear (en ese caso se usa la carga completa).
+     */
+    private Long cargarIdeasMapeadas() {
+        try {
+            ByteBuffer mapeado = almacen.mapear(ARCHIVO_IDEAS);
+            if (mapeado == null) return null;
+            boolean hayRespaldo = almacen.tieneAnterior(ARCHIVO_IDEAS);
+            ByteBuffer buffer = EscrituraAtomica.contenidoVerificado(mapeado, hayRespaldo);
+            if (buffer == null) return null;
+            byte[] marca = new byte[CodecIdeas.MARCA.length];
+            if (buffer.remaining() < marca.length) return null;
+            buffer.get(marca);
+            if (!java.util.Arrays.equals(marca, CodecIdeas.MARCA)) return null;
+            // Sin identificadores guardados, la carga completa migra la instantánea
+            if (!CodecIdeas.guardaIdentificadores(buffer.get(buffer.position()))) return null;
+            List<Idea> cargadas = new ArrayList<>();
+            long secuencia = CodecIdeas.leerDiferido(buffer, cargadas);
+            ideas = cargadas;
+            cuerposDiferidos = true;
+            return secuencia;
+        } catch (IOException e) {
+            guardarErrorEnTxt("Error mapeando ideas: " + e.getMessage());
+            return null;
         }
     }
 
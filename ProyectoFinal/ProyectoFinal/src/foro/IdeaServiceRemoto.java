@@ -0,0 +1,633 @@
+package foro;
+
+import main.persistencia.Json;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Cliente de {@code main.servidor.ServidorForo}: un {@link IdeaService} cuya copia local en
+ * memoria se carga desde el servidor, y cuyos cambios se envían primero al servidor y solo se
+ * aplican en la copia local si el servidor los acepta. Las consultas, rankings y búsquedas se
+ * resuelven sobre la copia local, sin ir a la red.
+ * <p>
+ * Los cambios se envían de a uno y en orden en un hilo propio, así que la interfaz no espera
+ * a la red; cuando el servidor acepta uno, se aplica a la copia local en el hilo de eventos de
+ * Swing y se avisa a los oyentes como a un cambio llegado del servidor. Si el servidor lo
+ * rechaza o no responde, el cambio no se aplica y se avisa a los oyentes de rechazos
+ * ({@link #agregarOyenteRechazos}); si la idea ya no existe o cambió, la copia local se recarga.
+ * <p>
+ * Los cambios de otros clientes llegan solos: un hilo mantiene abierto el flujo
+ * {@code /api/eventos} del servidor y cada evento se aplica a la copia local en el hilo de
+ * eventos de Swing, donde después se avisa a los oyentes ({@link #agregarOyente}) con la idea
+ * afectada, para que la interfaz actualice solo esa idea. Sin cambios no hay consultas
+ * periódicas; si la conexión se corta, se reabre desde el último evento recibido.
+ * <p>
+ * Los usuarios son los del servidor: {@link #iniciarSesion} obtiene un token de sesión que
+ * acompaña a cada cambio, y el servidor toma de él quién vota o comenta y si puede moderar.
+ * <p>
+ * Se usa configurando {@code foro.servidor=http://<equipo>:<puerto>} (ver
+ * {@link main.persistencia.ConfiguracionAlmacen}).
+ */
+public class IdeaServiceRemoto extends IdeaService {
+    private static final Logger logger = Logger.getLogger(IdeaServiceRemoto.class.getName());
+    private static final Duration TIEMPO_CONEXION = Duration.ofSeconds(3);
+    private static final Duration TIEMPO_RESPUESTA = Duration.ofSeconds(10);
+    private static final long ESPERA_RECONEXION_MIN_MS = 500;
+    private static final long ESPERA_RECONEXION_MAX_MS = 15_000;
+
+    private final URI base;
+    private final HttpClient http;
+    private final List<BiConsumer<TipoCambio, Idea>> oyentes = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> oyentesRechazos = new CopyOnWriteArrayList<>();
+    /** Envía los cambios al servidor de a uno, en el orden en que se hicieron */
+    private final ExecutorService envios = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "cambios-foro-cliente");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private final Thread escucha;
+    /** Ejecución del servidor de la que viene la copia local */
+    private volatile String epoca;
+    /** Último evento recibido del flujo; desde ahí se reabre al reconectar */
+    private volatile long recibida;
+    /** Último cambio del servidor reflejado en la copia local (protegido por this) */
+    private long aplicada;
+    private volatile boolean cerrado = false;
+    private volatile Stream<String> flujo;
+    /** Token de la sesión abierta, o null; solo lo cambian tareas del hilo de envíos */
+    private volatile String sesion;
+
+    /**
+     * Conecta con el servidor y carga todas las ideas.
+     * @param urlServidor Dirección del servidor, por ejemplo {@code http://localhost:8085}.
+     * @throws UncheckedIOException Si el servidor no responde.
+     */
+    public IdeaServiceRemoto(String urlServidor) {
+        super(new ArrayList<>());
+        this.base = URI.create(urlServidor.endsWith("/") ? urlServidor : urlServidor + "/");
+        this.http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(TIEMPO_CONEXION).build();
+        try {
+            recargar();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo conectar con el servidor del foro en " + urlServidor, e);
+        }
+        escucha = new Thread(this::escucharEventos, "eventos-foro-cliente");
+        escucha.setDaemon(true);
+        escucha.start();
+    }
+
+    /**
+     * Registra un oyente que recibe, en el hilo de eventos de Swing, cada cambio llegado del
+     * servidor ya aplicado a la copia local, con la idea afectada (la eliminada, en
+     * {@link TipoCambio#IDEA_ELIMINADA}). Con {@link TipoCambio#RECARGA} la idea es null: se
+     * reemplazó toda la copia local y las ideas que se tenían ya no son las del servicio.
+     */
+    public void agregarOyente(BiConsumer<TipoCambio, Idea> oyente) {
+        oyentes.add(oyente);
+    }
+
+    public void quitarOyente(BiConsumer<TipoCambio, Idea> oyente) {
+        oyentes.remove(oyente);
+    }
+
+    /**
+     * Registra un oyente que recibe, en el hilo de eventos de Swing, un mensaje para el usuario
+     * cada vez que un cambio suyo no se guardó porque el servidor lo rechazó o no respondió.
+     */
+    public void agregarOyenteRechazos(Consumer<String> oyente) {
+        oyentesRechazos.add(oyente);
+    }
+
+    /**
+     * Registra un usuario en el servidor.
+     * @return false si el usuario ya existe.
+     * @throws IOException Si el servidor no responde o rechaza el registro por otro motivo.
+     */
+    public boolean registrarUsuario(String usuario, String contrasena) throws IOException {
+        Respuesta respuesta = enOrden(() -> enviar("POST", "api/usuarios", credenciales(usuario, contrasena)));
+        if (respuesta.codigo == 409) return false;
+        if (respuesta.codigo / 100 != 2) throw new IOException("El servidor respondió " + respuesta.codigo + ": " + respuesta.error());
+        return true;
+    }
+
+    /**
+     * Inicia sesión en el servidor; los cambios hechos después se envían a nombre de este usuario.
+     * Espera a que se envíen los cambios hechos antes, que siguen con la sesión anterior.
+     * @return false si el usuario o la contraseña son incorrectos.
+     * @throws IOException Si el servidor no responde.
+     */
+    public boolean iniciarSesion(String usuario, String contrasena) throws IOException {
+        Respuesta respuesta = enOrden(() -> {
+            Respuesta abierta = enviar("POST", "api/sesiones", credenciales(usuario, contrasena));
+            if (abierta.codigo / 100 == 2) {
+                Object token = abierta.cuerpo.get("token");
+                if (!(token instanceof String)) throw new IOException("Respuesta sin el token de sesión");
+                sesion = (String) token;
+            }
+            return abierta;
+        });
+        if (respuesta.codigo == 401) return false;
+        if (respuesta.codigo / 100 != 2) throw new IOException("El servidor respondió " + respuesta.codigo + ": " + respuesta.error());
+        return true;
+    }
+
+    /**
+     * Cierra la sesión después de enviar los cambios pendientes.
+     */
+    public void cerrarSesion() {
+        envios.execute(() -> {
+            try {
+                enviar("DELETE", "api/sesiones", null);
+            } catch (IOException e) {
+                logger.fine("No se pudo cerrar la sesión en el servidor: " + e.getMessage());
+            }
+            sesion = null;
+        });
+    }
+
+    private static Map<String, Object> credenciales(String usuario, String contrasena) {
+        Map<String, Object> cuerpo = new LinkedHashMap<>();
+        cuerpo.put("usuario", usuario);
+        cuerpo.put("contrasena", contrasena);
+        return cuerpo;
+    }
+
+    /**
+     * Ejecuta una solicitud en el hilo de envíos, detrás de los cambios pendientes, y espera su resultado.
+     */
+    private <T> T enOrden(Callable<T> tarea) throws IOException {
+        try {
+            return envios.submit(tarea).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Solicitud interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Error al comunicarse con el servidor", e.getCause());
+        }
+    }
+
+    /**
+     * Reemplaza la copia local con todas las ideas del servidor y avisa a los oyentes con
+     * {@link TipoCambio#RECARGA}.
+     */
+    public void recargar() throws IOException {
+        aplicarRecarga(descargar());
+    }
+
+    /**
+     * Todas las ideas del servidor, con la secuencia del último cambio que incluyen.
+     */
+    private Instantanea descargar() throws IOException {
+        Respuesta respuesta = enviar("GET", "api/ideas", null);
+        if (respuesta.codigo != 200) throw new IOException("El servidor respondió " + respuesta.codigo + ": " + respuesta.error());
+        Object lista = respuesta.cuerpo.get("ideas");
+        if (!(lista instanceof List)) throw new IOException("Respuesta sin la lista de ideas");
+        List<Idea> ideas = new ArrayList<>();
+        for (Object idea : (List<?>) lista) ideas.add(CodecJsonIdeas.leerIdea(CodecJsonIdeas.comoMapa(idea)));
+        Object epocaServidor = respuesta.cuerpo.get("epoca");
+        Object secuencia = respuesta.cuerpo.get("secuencia");
+        return new Instantanea(ideas, epocaServidor instanceof String ? (String) epocaServidor : null,
+                secuencia instanceof Long ? (Long) secuencia : 0);
+    }
+
+    /**
+     * Toda recarga pasa por aquí: las ideas anteriores dejan de ser las del servicio, así que
+     * los oyentes deben volver a consultarlas. El aviso se da en el hilo de Swing.
+     */
+    private void aplicarRecarga(Instantanea instantanea) {
+        aplicarInstantanea(instantanea);
+        if (SwingUtilities.isEventDispatchThread()) notificar(TipoCambio.RECARGA, null);
+        else SwingUtilities.invokeLater(() -> notificar(TipoCambio.RECARGA, null));
+    }
+
+    private void aplicarInstantanea(Instantanea instantanea) {
+        synchronized (this) {
+            reemplazarIdeas(instantanea.ideas);
+            aplicada = instantanea.secuencia;
+        }
+        boolean mismaEpoca = instantanea.epoca != null && instantanea.epoca.equals(epoca);
+        recibida = mismaEpoca ? Math.max(recibida, instantanea.secuencia) : instantanea.secuencia;
+        epoca = instantanea.epoca;
+    }
+
+    @Override
+    public void agregarIdea(Idea idea) {
+        confirmar("POST", "api/ideas", CodecJsonIdeas.aMapa(idea), "la idea", respuesta -> {
+            agregarSiFalta(idea);
+            Idea agregada = getIdea(idea.getId());
+            if (agregada != null) notificar(TipoCambio.IDEA_AGREGADA, agregada);
+        });
+    }
+
+    @Override
+    public void aprobarIdea(Idea idea) {
+        confirmar("PUT", ruta(idea, "/estado"), Collections.singletonMap("estado", Idea.Estado.APROBADA.name()),
+                "la aprobación de la idea", respuesta -> cambiarEstado(idea, Idea.Estado.APROBADA, respuesta));
+    }
+
+    @Override
+    public void desaprobarIdea(Idea idea) {
+        confirmar("PUT", ruta(idea, "/estado"), Collections.singletonMap("estado", Idea.Estado.DESAPROBADA.name()),
+                "la desaprobación de la idea", respuesta -> cambiarEstado(idea, Idea.Estado.DESAPROBADA, respuesta));
+    }
+
+    @Override
+    public void eliminarIdea(Idea idea) {
+        confirmar("DELETE", ruta(idea, ""), null, "la eliminación de la idea", respuesta -> {
+            Idea eliminada = getIdea(idea.getId());
+            if (eliminada == null) return;
+            eliminarSiExiste(eliminada);
+            notificar(TipoCambio.IDEA_ELIMINADA, eliminada);
+        });
+    }
+
+    @Override
+    public void votarIdea(Idea idea, String username, int rating) {
+        // El servidor registra el voto a nombre del usuario de la sesión
+        Map<String, Object> voto = Collections.singletonMap("calificacion", rating);
+        confirmar("POST", ruta(idea, "/votos"), voto, "el voto", respuesta -> {
+            Idea votada = getIdea(idea.getId());
+            if (votada == null) return;
+            super.votarIdea(votada, username, rating);
+            notificar(TipoCambio.VOTO, votada);
+        });
+    }
+
+    @Override
+    public void agregarComentario(Idea idea, Comentario comentario) {
+        confirmar("POST", ruta(idea, "/comentarios"), CodecJsonIdeas.aMapa(comentario), "el comentario", respuesta -> {
+            Idea comentada = getIdea(idea.getId());
+            if (comentada == null) return;
+            // El autor lo pone el servidor, con el usuario de la sesión
+            comentarSiFalta(comentada, CodecJsonIdeas.leerComentario(respuesta));
+            notificar(TipoCambio.COMENTARIO, comentada);
+        });
+    }
+
+    @Override
+    public void eliminarComentario(Idea idea, Comentario comentario) {
+        confirmar("POST", ruta(idea, "/comentarios/eliminar"), CodecJsonIdeas.aMapa(comentario),
+                "la eliminación del comentario", respuesta -> {
+            Idea comentada = getIdea(idea.getId());
+            if (comentada == null) return;
+            quitarComentario(comentada, comentario);
+            notificar(TipoCambio.COMENTARIO_ELIMINADO, comentada);
+        });
+    }
+
+    private void cambiarEstado(Idea idea, Idea.Estado estado, Map<String, Object> respuesta) {
+        Idea cambiada = getIdea(idea.getId());
+        if (cambiada == null) return;
+        synchronized (this) {
+            if (estado == Idea.Estado.APROBADA) super.aprobarIdea(cambiada);
+            else super.desaprobarIdea(cambiada);
+            actualizarVersion(cambiada, respuesta);
+        }
+        notificar(TipoCambio.ESTADO, cambiada);
+    }
+
+    /**
+     * Espera a que se envíen los cambios pendientes, cierra el flujo de eventos y deja de
+     * reconectarse.
+     */
+    @Override
+    public void cerrar() {
+        envios.shutdown();
+        try {
+            if (!envios.awaitTermination(TIEMPO_CONEXION.plus(TIEMPO_RESPUESTA).toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.warning("Quedaron cambios sin enviar al servidor del foro");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cerrado = true;
+        escucha.interrupt();
+        Stream<String> abierto = flujo;
+        if (abierto != null) abierto.close();
+        super.cerrar();
+    }
+
+    // El evento de un cambio propio puede aplicarse antes o después de la respuesta del
+    // servidor, así que los cambios que no son idempotentes de por sí se aplican solo si faltan
+
+    private synchronized void agregarSiFalta(Idea idea) {
+        if (getIdea(idea.getId()) == null) super.agregarIdea(idea);
+    }
+
+    private synchronized void eliminarSiExiste(Idea idea) {
+        if (getIdea(idea.getId()) != null) super.eliminarIdea(idea);
+    }
+
+    private synchronized void comentarSiFalta(Idea idea, Comentario comentario) {
+        for (Comentario existente : idea.getComentarios()) {
+            if (CodecJsonIdeas.mismoComentario(existente, comentario)) return;
+        }
+        super.agregarComentario(idea, comentario);
+    }
+
+    private synchronized void quitarComentario(Idea idea, Comentario comentario) {
+        for (Comentario existente : idea.getComentarios()) {
+            if (CodecJsonIdeas.mismoComentario(existente, comentario)) {
+                super.eliminarComentario(idea, existente);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hilo de escucha: mantiene abierto {@code /api/eventos} y, si se corta, lo reabre desde el
+     * último evento recibido, esperando cada vez más entre intentos fallidos.
+     */
+    private void escucharEventos() {
+        long espera = ESPERA_RECONEXION_MIN_MS;
+        while (!cerrado) {
+            String ruta = "api/eventos?desde=" + recibida + (epoca == null ? "" : "&epoca=" + epoca);
+            HttpRequest solicitud = HttpRequest.newBuilder(base.resolve(ruta)).header("Accept", "text/event-stream").GET().build();
+            try {
+                HttpResponse<Stream<String>> respuesta = http.send(solicitud, HttpResponse.BodyHandlers.ofLines());
+                try (Stream<String> lineas = respuesta.body()) {
+                    if (respuesta.statusCode() != 200) throw new IOException("El servidor respondió " + respuesta.statusCode());
+                    flujo = lineas;
+                    espera = ESPERA_RECONEXION_MIN_MS;
+                    leerEventos(lineas.iterator());
+                }
+            } catch (IOException | UncheckedIOException e) {
+                if (!cerrado) logger.fine("Flujo de eventos interrumpido: " + e.getMessage());
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                flujo = null;
+            }
+            if (cerrado) break;
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException e) {
+                break;
+            }
+            espera = Math.min(espera * 2, ESPERA_RECONEXION_MAX_MS);
+        }
+    }
+
+    /**
+     * Lee eventos en formato Server-Sent Events hasta que se cierra el flujo.
+     */
+    private void leerEventos(Iterator<String> lineas) throws IOException {
+        String id = null;
+        String tipo = null;
+        StringBuilder datos = new StringBuilder();
+        while (!cerrado && lineas.hasNext()) {
+            String linea = lineas.next();
+            if (linea.isEmpty()) {
+                if (tipo != null) despacharEvento(tipo, id, datos.toString());
+                id = null;
+                tipo = null;
+                datos.setLength(0);
+                continue;
+            }
+            if (linea.startsWith(":")) continue; // latido
+            int dosPuntos = linea.indexOf(':');
+            String campo = dosPuntos < 0 ? linea : linea.substring(0, dosPuntos);
+            String valor = dosPuntos < 0 ? "" : linea.substring(dosPuntos + 1);
+            if (valor.startsWith(" ")) valor = valor.substring(1);
+            switch (campo) {
+                case "id": id = valor; break;
+                case "event": tipo = valor; break;
+                case "data":
+                    if (datos.length() > 0) datos.append('\n');
+                    datos.append(valor);
+                    break;
+                default: break;
+            }
+        }
+    }
+
+    private void despacharEvento(String tipo, String id, String datos) throws IOException {
+        TipoCambio cambio;
+        try {
+            cambio = TipoCambio.valueOf(tipo);
+        } catch (IllegalArgumentException e) {
+            logger.fine("Evento desconocido ignorado: " + tipo);
+            return;
+        }
+        if (cambio == TipoCambio.RECARGA) {
+            // Se perdieron eventos: se descarga todo aquí, fuera del hilo de Swing
+            Instantanea instantanea = descargar();
+            recibida = instantanea.secuencia;
+            epoca = instantanea.epoca;
+            SwingUtilities.invokeLater(() -> aplicarRecarga(instantanea));
+            return;
+        }
+        long secuencia;
+        Map<String, Object> mapa;
+        try {
+            secuencia = Long.parseLong(id);
+            mapa = Json.leerObjeto(datos);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Evento inválido del servidor: " + tipo + " " + id);
+        }
+        recibida = secuencia;
+        SwingUtilities.invokeLater(() -> aplicarEvento(cambio, secuencia, mapa));
+    }
+
+    /**
+     * Aplica un evento a la copia local, salvo que ya esté reflejado en ella (por una recarga
+     * posterior al evento), y avisa a los oyentes.
+     */
+    private void aplicarEvento(TipoCambio cambio, long secuencia, Map<String, Object> datos) {
+        Idea idea;
+        synchronized (this) {
+            if (secuencia <= aplicada) return;
+            aplicada = secuencia;
+            try {
+                idea = aplicar(cambio, datos);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "No se pudo aplicar el evento " + cambio + " " + secuencia, e);
+                return;
+            }
+        }
+        if (idea != null) notificar(cambio, idea);
+    }
+
+    private Idea aplicar(TipoCambio cambio, Map<String, Object> datos) {
+        if (cambio == TipoCambio.IDEA_AGREGADA) {
+            Idea nueva = CodecJsonIdeas.leerIdea(CodecJsonIdeas.comoMapa(datos.get("idea")));
+            agregarSiFalta(nueva);
+            return getIdea(nueva.getId());
+        }
+        Object id = datos.get("id");
+        Idea idea = id instanceof Long ? getIdea((Long) id) : null;
+        if (idea == null) return null;
+        switch (cambio) {
+            case ESTADO: {
+                Idea.Estado estado = CodecJsonIdeas.leerEstado((String) datos.get("estado"));
+                if (estado == Idea.Estado.APROBADA) super.aprobarIdea(idea);
+                else if (estado == Idea.Estado.DESAPROBADA) super.desaprobarIdea(idea);
+                actualizarVersion(idea, datos);
+                break;
+            }
+            case VOTO:
+                super.votarIdea(idea, (String) datos.get("usuario"), ((Long) datos.get("calificacion")).intValue());
+                break;
+            case COMENTARIO:
+                comentarSiFalta(idea, CodecJsonIdeas.leerComentario(CodecJsonIdeas.comoMapa(datos.get("comentario"))));
+                break;
+            case COMENTARIO_ELIMINADO:
+                quitarComentario(idea, CodecJsonIdeas.leerComentario(CodecJsonIdeas.comoMapa(datos.get("comentario"))));
+                break;
+            case IDEA_ELIMINADA:
+                super.eliminarIdea(idea);
+                break;
+            default:
+                break;
+        }
+        return idea;
+    }
+
+    private void notificar(TipoCambio cambio, Idea idea) {
+        for (BiConsumer<TipoCambio, Idea> oyente : oyentes) {
+            try {
+                oyente.accept(cambio, idea);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Error en un oyente de cambios", e);
+            }
+        }
+    }
+
+    private static String ruta(Idea idea, String accion) {
+        return "api/ideas/" + idea.getId() + accion;
+    }
+
+    private static void actualizarVersion(Idea idea, Map<String, Object> respuesta) {
+        Object version = respuesta.get("version");
+        if (version instanceof Long) idea.setVersion(((Long) version).intValue());
+    }
+
+    /**
+     * Envía un cambio en el hilo de envíos. Si el servidor lo acepta, {@code alAceptar} recibe
+     * el cuerpo de la respuesta (vacío si no tiene) en el hilo de Swing; si no, se avisa a los
+     * oyentes de rechazos.
+     * @param descripcion Qué se cambia, para el mensaje al usuario (p. ej. "el voto").
+     */
+    private void confirmar(String metodo, String ruta, Map<String, Object> cuerpo, String descripcion,
+                           Consumer<Map<String, Object>> alAceptar) {
+        envios.execute(() -> {
+            Respuesta respuesta;
+            try {
+                respuesta = enviar(metodo, ruta, cuerpo);
+            } catch (IOException e) {
+                logger.warning("El servidor del foro no respondió a " + metodo + " " + ruta + ": " + e.getMessage());
+                rechazar("No se guardó " + descripcion + ": el servidor del foro no respondió.");
+                return;
+            }
+            if (respuesta.codigo / 100 == 2) {
+                SwingUtilities.invokeLater(() -> alAceptar.accept(respuesta.cuerpo));
+                return;
+            }
+            logger.warning("El servidor rechazó " + metodo + " " + ruta + " (" + respuesta.codigo + "): " + respuesta.error());
+            rechazar("El servidor no aceptó " + descripcion + ": " + respuesta.error());
+            if (respuesta.codigo == 404 || respuesta.codigo == 409) {
+                // La copia local está desactualizada respecto del servidor
+                try {
+                    Instantanea instantanea = descargar();
+                    SwingUtilities.invokeLater(() -> aplicarRecarga(instantanea));
+                } catch (IOException e) {
+                    logger.warning("No se pudo recargar del servidor: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void rechazar(String mensaje) {
+        SwingUtilities.invokeLater(() -> {
+            for (Consumer<String> oyente : oyentesRechazos) {
+                try {
+                    oyente.accept(mensaje);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Error en un oyente de rechazos", e);
+                }
+            }
+        });
+    }
+
+    private Respuesta enviar(String metodo, String ruta, Map<String, Object> cuerpo) throws IOException {
+        HttpRequest.BodyPublisher publicador = cuerpo == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(Json.escribir(cuerpo), StandardCharsets.UTF_8);
+        HttpRequest.Builder constructor = HttpRequest.newBuilder(base.resolve(ruta))
+                .timeout(TIEMPO_RESPUESTA)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .method(metodo, publicador);
+        String token = sesion;
+        if (token != null) constructor.header("Authorization", "Bearer " + token);
+        HttpRequest solicitud = constructor.build();
+        HttpResponse<String> respuesta;
+        try {
+            respuesta = http.send(solicitud, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Solicitud interrumpida", e);
+        }
+        Map<String, Object> mapa = Collections.emptyMap();
+        if (!respuesta.body().isEmpty()) {
+            try {
+                mapa = Json.leerObjeto(respuesta.body());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Respuesta inválida del servidor: " + e.getMessage());
+            }
+        }
+        return new Respuesta(respuesta.statusCode(), mapa);
+    }
+
+    private static final class Instantanea {
+        final List<Idea> ideas;
+        final String epoca;
+        final long secuencia;
+
+        Instantanea(List<Idea> ideas, String epoca, long secuencia) {
+            this.ideas = ideas;
+            this.epoca = epoca;
+            this.secuencia = secuencia;
+        }
+    }
+
+    private static final class Respuesta {
+        final int codigo;
+        final Map<String, Object> cuerpo;
+
+        Respuesta(int codigo, Map<String, Object> cuerpo) {
+            this.codigo = codigo;
+            this.cuerpo = cuerpo;
+        }
+
+        String error() {
+            Object error = cuerpo.get("error");
+            return error == null ? "sin detalle" : error.toString();
+        }
+    }
+}
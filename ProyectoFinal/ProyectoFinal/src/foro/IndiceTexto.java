@@ -0,0 +1,287 @@
+package foro;
+
+import main.persistencia.CodecBinario;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Índice invertido de texto completo sobre el título, el contenido y los comentarios de las ideas.
+ * <p>
+ * Cada idea indexada recibe un número de documento creciente; cada término (ya reducido por
+ * {@link AnalizadorTexto}) guarda la lista ordenada de documentos que lo contienen, codificada
+ * como diferencias en enteros de longitud variable. Como las ideas nuevas reciben el número
+ * más alto, agregarlas solo anexa bytes al final de cada lista. Los términos se buscan en un
+ * {@link HashMap}; un {@link TreeMap} con las mismas listas resuelve los prefijos (búsqueda
+ * mientras se escribe) recorriendo un rango.
+ * <p>
+ * No es seguro para hilos; {@link IdeaService} lo usa con su bloqueo tomado.
+ */
+class IndiceTexto {
+    static final byte[] MARCA = {'U', 'D', 'F', 'T'};
+    private static final int VERSION = 1;
+
+    /**
+     * Lista de documentos de un término: diferencias entre números de documento consecutivos,
+     * cada una como entero de longitud variable (7 bits por byte).
+     */
+    private static final class Publicaciones {
+        byte[] datos = new byte[4];
+        int longitud;
+        int cantidad;
+        int ultimo = -1;
+
+        void agregar(int documento) {
+            if (documento == ultimo) return;
+            if (documento > ultimo) {
+                escribirVarInt(documento - ultimo);
+                ultimo = documento;
+                cantidad++;
+                return;
+            }
+            int[] documentos = decodificar();
+            int posicion = Arrays.binarySearch(documentos, documento);
+            if (posicion >= 0) return;
+            posicion = -posicion - 1;
+            int[] nuevos = new int[documentos.length + 1];
+            System.arraycopy(documentos, 0, nuevos, 0, posicion);
+            nuevos[posicion] = documento;
+            System.arraycopy(documentos, posicion, nuevos, posicion + 1, documentos.length - posicion);
+            codificar(nuevos, nuevos.length);
+        }
+
+        void quitar(int documento) {
+            int[] documentos = decodificar();
+            int posicion = Arrays.binarySearch(documentos, documento);
+            if (posicion < 0) return;
+            System.arraycopy(documentos, posicion + 1, documentos, posicion, documentos.length - posicion - 1);
+            codificar(documentos, documentos.length - 1);
+        }
+
+        /** Marca en el conjunto todos los documentos de la lista. */
+        void marcarEn(BitSet conjunto) {
+            int documento = -1;
+            int i = 0;
+            while (i < longitud) {
+                int delta = 0;
+                int desplazamiento = 0;
+                byte b;
+                do {
+                    b = datos[i++];
+                    delta |= (b & 0x7F) << desplazamiento;
+                    desplazamiento += 7;
+                } while (b < 0);
+                documento += delta;
+                conjunto.set(documento);
+            }
+        }
+
+        int[] decodificar() {
+            BitSet conjunto = new BitSet();
+            marcarEn(conjunto);
+            return conjunto.stream().toArray();
+        }
+
+        private void codificar(int[] documentos, int cantidad) {
+            longitud = 0;
+            ultimo = -1;
+            this.cantidad = 0;
+            for (int i = 0; i < cantidad; i++) agregar(documentos[i]);
+        }
+
+        private void escribirVarInt(int valor) {
+            if (longitud + 5 > datos.length) datos = Arrays.copyOf(datos, Math.max(datos.length * 2, longitud + 5));
+            while ((valor & ~0x7F) != 0) {
+                datos[longitud++] = (byte) ((valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            datos[longitud++] = (byte) valor;
+        }
+    }
+
+    private final Map<String, Publicaciones> terminos = new HashMap<>(1 << 16);
+    private final TreeMap<String, Publicaciones> terminosOrdenados = new TreeMap<>();
+    /** Idea de cada número de documento; null si se eliminó */
+    private final List<Idea> documentos = new ArrayList<>();
+    private final Map<Idea, Integer> numeroPorIdea = new IdentityHashMap<>();
+
+    /**
+     * Indexa una idea nueva con su título, contenido y comentarios.
+     */
+    void agregar(Idea idea) {
+        if (numeroPorIdea.containsKey(idea)) return;
+        int documento = documentos.size();
+        documentos.add(idea);
+        numeroPorIdea.put(idea, documento);
+        for (String termino : terminosDe(idea)) publicaciones(termino).agregar(documento);
+    }
+
+    /**
+     * Agrega al documento de una idea los términos de un texto nuevo (por ejemplo, un comentario).
+     */
+    void agregarTexto(Idea idea, String texto) {
+        Integer documento = numeroPorIdea.get(idea);
+        if (documento == null) return;
+        for (String termino : AnalizadorTexto.terminos(texto)) publicaciones(termino).agregar(documento);
+    }
+
+    /**
+     * Quita del documento de una idea los términos de un texto eliminado que ya no aparecen
+     * en el resto de la idea.
+     */
+    void quitarTexto(Idea idea, String texto) {
+        Integer documento = numeroPorIdea.get(idea);
+        if (documento == null) return;
+        Set<String> quitados = AnalizadorTexto.terminos(texto);
+        quitados.removeAll(terminosDe(idea));
+        for (String termino : quitados) quitarDeTermino(termino, documento);
+    }
+
+    /**
+     * Quita una idea del índice.
+     */
+    void quitar(Idea idea) {
+        Integer documento = numeroPorIdea.remove(idea);
+        if (documento == null) return;
+        documentos.set(documento, null);
+        for (String termino : terminosDe(idea)) quitarDeTermino(termino, documento);
+    }
+
+    /**
+     * Busca las ideas que contienen todas las palabras de la consulta. La última palabra se
+     * toma también como prefijo, para buscar mientras se escribe.
+     * @param consulta Texto escrito por el usuario.
+     * @param estado Estado de las ideas buscadas, o null para cualquiera.
+     * @param limite Cantidad máxima de resultados.
+     * @return Ideas encontradas, en orden de indexación (de la más antigua a la más nueva).
+     */
+    List<Idea> buscar(String consulta, Idea.Estado estado, int limite) {
+        List<String> palabras = AnalizadorTexto.palabras(consulta);
+        BitSet resultado = null;
+        for (int i = 0; i < palabras.size(); i++) {
+            String palabra = palabras.get(i);
+            boolean ultima = i == palabras.size() - 1;
+            if (!ultima && AnalizadorTexto.terminos(palabra).isEmpty()) continue; // Palabra vacía
+            BitSet coincidencias = new BitSet(documentos.size());
+            marcarTermino(AnalizadorTexto.reducir(palabra), coincidencias);
+            if (ultima) {
+                for (Publicaciones p : terminosOrdenados.subMap(palabra, true, palabra + Character.MAX_VALUE, false).values()) {
+                    p.marcarEn(coincidencias);
+                }
+            }
+            if (resultado == null) {
+                resultado = coincidencias;
+            } else {
+                resultado.and(coincidencias);
+            }
+            if (resultado.isEmpty()) break;
+        }
+
+        List<Idea> ideas = new ArrayList<>();
+        if (resultado == null) return ideas;
+        for (int d = resultado.nextSetBit(0); d >= 0 && ideas.size() < limite; d = resultado.nextSetBit(d + 1)) {
+            Idea idea = documentos.get(d);
+            if (idea != null && (estado == null || idea.getEstado() == estado)) ideas.add(idea);
+        }
+        return ideas;
+    }
+
+    /** Cantidad de ideas indexadas. */
+    int getCantidadIdeas() { return numeroPorIdea.size(); }
+
+    /** Cantidad de términos distintos. */
+    int getCantidadTerminos() { return terminos.size(); }
+
+    /**
+     * Escribe el índice completo.
+     * @param secuencia Última secuencia del diario reflejada en el índice; al cargarlo debe coincidir.
+     */
+    void escribir(DataOutputStream out, long secuencia) throws IOException {
+        out.write(MARCA);
+        out.writeByte(VERSION);
+        CodecBinario.escribirVarLong(out, secuencia);
+        CodecBinario.escribirVarInt(out, documentos.size());
+        for (Idea idea : documentos) CodecBinario.escribirVarLong(out, idea == null ? 0 : idea.getId());
+        CodecBinario.escribirVarInt(out, terminos.size());
+        for (Map.Entry<String, Publicaciones> entrada : terminosOrdenados.entrySet()) {
+            Publicaciones p = entrada.getValue();
+            CodecBinario.escribirTexto(out, entrada.getKey());
+            CodecBinario.escribirVarInt(out, p.cantidad);
+            CodecBinario.escribirVarInt(out, p.ultimo);
+            CodecBinario.escribirVarInt(out, p.longitud);
+            out.write(p.datos, 0, p.longitud);
+        }
+    }
+
+    /**
+     * Lee un índice escrito con {@link #escribir}.
+     * @param in Flujo posicionado al inicio del archivo.
+     * @param secuencia Secuencia del diario que el índice debe reflejar.
+     * @param ideas Ideas cargadas, para resolver los documentos por identificador.
+     * @return El índice, o null si no corresponde a las ideas cargadas y hay que reconstruirlo.
+     */
+    static IndiceTexto leer(DataInputStream in, long secuencia, List<Idea> ideas) throws IOException {
+        if (!CodecBinario.comienzaCon(in, MARCA)) return null;
+        if (in.readUnsignedByte() != VERSION) return null;
+        if (CodecBinario.leerVarLong(in) != secuencia) return null;
+
+        Map<Long, Idea> porId = new HashMap<>(ideas.size() * 2);
+        for (Idea idea : ideas) porId.put(idea.getId(), idea);
+        IndiceTexto indice = new IndiceTexto();
+        int cantidadDocumentos = CodecBinario.leerVarInt(in);
+        for (int d = 0; d < cantidadDocumentos; d++) {
+            long id = CodecBinario.leerVarLong(in);
+            Idea idea = id == 0 ? null : porId.get(id);
+            if (id != 0 && idea == null) return null;
+            indice.documentos.add(idea);
+            if (idea != null) indice.numeroPorIdea.put(idea, d);
+        }
+        if (indice.numeroPorIdea.size() != ideas.size()) return null;
+
+        int cantidadTerminos = CodecBinario.leerVarInt(in);
+        for (int t = 0; t < cantidadTerminos; t++) {
+            String termino = CodecBinario.leerTexto(in);
+            Publicaciones p = new Publicaciones();
+            p.cantidad = CodecBinario.leerVarInt(in);
+            p.ultimo = CodecBinario.leerVarInt(in);
+            p.longitud = CodecBinario.leerVarInt(in);
+            byte[] datos = CodecBinario.leerBytes(in, p.longitud);
+            p.datos = datos.length >= 4 ? datos : Arrays.copyOf(datos, 4);
+            indice.terminos.put(termino, p);
+            indice.terminosOrdenados.put(termino, p);
+        }
+        return indice;
+    }
+
+    private Publicaciones publicaciones(String termino) {
+        Publicaciones p = terminos.get(termino);
+        if (p == null) {
+            p = new Publicaciones();
+            terminos.put(termino, p);
+            terminosOrdenados.put(termino, p);
+        }
+        return p;
+    }
+
+    private void marcarTermino(String termino, BitSet conjunto) {
+        Publicaciones p = terminos.get(termino);
+        if (p != null) p.marcarEn(conjunto);
+    }
+
+    private void quitarDeTermino(String termino, int documento) {
+        Publicaciones p = terminos.get(termino);
+        if (p == null) return;
+        p.quitar(documento);
+        if (p.cantidad == 0) {
+            terminos.remove(termino);
+            terminosOrdenados.remove(termino);
+        }
+    }
+
+    private static Set<String> terminosDe(Idea idea) {
+        Set<String> resultado = AnalizadorTexto.terminos(idea.getTitulo());
+        resultado.addAll(AnalizadorTexto.terminos(idea.getContenido()));
+        for (Comentario c : idea.getComentarios()) resultado.addAll(AnalizadorTexto.terminos(c.getTexto()));
+        return resultado;
+    }
+}
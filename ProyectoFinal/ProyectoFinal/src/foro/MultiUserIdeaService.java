@@ -2,159 +2,263 @@ package foro;
 
 import main.multiuser.LockManager;
 import main.multiuser.SyncService;
+import main.persistencia.EscrituraAtomica;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
 /**
  * Servicio multiusuario para gestionar la persistencia y operaciones sobre las ideas del foro.
  * Utiliza bloqueos y archivos .properties para sincronización entre múltiples usuarios.
+ * <p>
+ * Cada cambio se anexa al feed compartido ({@link FeedCambios}); los demás clientes aplican
+ * solo los registros que no han visto. {@code ideas.properties} se reescribe únicamente al
+ * compactar el feed o al llamar a {@link #guardarIdeas()}.
+ * <p>
+ * El feed se divide en {@link #FRAGMENTOS} archivos según el identificador de la idea, cada uno
+ * con su propio bloqueo compartido: los cambios sobre ideas de distintos fragmentos no se
+ * esperan entre sí. Cada idea lleva una versión; un cambio de estado se confirma solo si la
+ * versión no cambió desde que se leyó (comparar e intercambiar) y, si otro cliente se adelantó,
+ * se reintenta sobre la versión nueva. Solo la compactación toma todos los bloqueos.
+ * <p>
+ * Las lecturas no toman bloqueos: devuelven la última {@link Instantanea} publicada, que es
+ * inmutable. Los escritores (operaciones locales y la sincronización) se excluyen entre sí,
+ * cambian su mapa de trabajo (reemplazando por copias las ideas que modifican) y al terminar
+ * publican una instantánea nueva con una sola escritura volátil.
  */
 public class MultiUserIdeaService {
     private static final Logger logger = Logger.getLogger(MultiUserIdeaService.class.getName());
-    private final List<Idea> ideas = new ArrayList<>();
+    // Mapa de trabajo de los escritores, indexado por identificador y en orden de inserción.
+    // Solo se usa con el bloqueo de escritura tomado; los lectores usan la instantánea publicada
+    private final Map<Long, Idea> ideasPorId = new LinkedHashMap<>();
+    private volatile Instantanea actual = Instantanea.VACIA;
     private static final String ARCHIVO_IDEAS = "ideas.properties";
+    private static final String ARCHIVO_FEED = "ideas.feed";
+    /** Cantidad de fragmentos del feed; cada uno tiene su archivo y su bloqueo compartido */
+    static final int FRAGMENTOS = 8;
+    private static final int MAX_REGISTROS_FEED = 200;
+    /** Intentos de un cambio de estado cuando otro cliente modifica la misma idea a la vez */
+    private static final int MAX_REINTENTOS = 5;
+    private final FeedCambios[] feeds = new FeedCambios[FRAGMENTOS];
     private final SyncService syncService;
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock escritura = new ReentrantLock();
     private volatile boolean isShuttingDown = false;
 
     public MultiUserIdeaService() {
         syncService = SyncService.getInstance();
+        for (int f = 0; f < FRAGMENTOS; f++) {
+            // El fragmento 0 conserva el nombre del feed único anterior
+            String nombre = f == 0 ? ARCHIVO_FEED : "ideas-" + f + ".feed";
+            feeds[f] = new FeedCambios(Paths.get(LockManager.getSharedPath(), nombre));
+        }
 
         // Configurar listener para cambios en ideas
         syncService.setOnIdeasChanged(() -> {
             if (!isShuttingDown) {
-                lock.writeLock().lock();
+                escritura.lock();
                 try {
-                    cargarIdeasDesdeArchivo();
+                    sincronizar();
+                    publicar();
                 } finally {
-                    lock.writeLock().unlock();
+                    escritura.unlock();
                 }
             }
         });
 
         // Cargar ideas iniciales y iniciar sincronización
-        cargarIdeasDesdeArchivo();
+        escritura.lock();
+        try {
+            cargarIdeasDesdeArchivo();
+            sincronizar();
+            publicar();
+        } finally {
+            escritura.unlock();
+        }
         syncService.start();
     }
 
-    public List<Idea> getIdeas() {
-        syncService.forceUpdate();
-        lock.readLock().lock();
-        try {
-            return new ArrayList<>(ideas);
-        } finally {
-            lock.readLock().unlock();
+    /**
+     * Versión inmutable del conjunto de ideas, con las listas por estado ya calculadas.
+     * Las ideas que contiene no se modifican después de publicarla.
+     */
+    private static final class Instantanea {
+        static final Instantanea VACIA = new Instantanea(Collections.emptyMap());
+
+        final Map<Long, Idea> porId;
+        final List<Idea> todas;
+        final List<Idea> pendientes;
+        final List<Idea> aprobadas;
+
+        Instantanea(Map<Long, Idea> ideas) {
+            List<Idea> pendientes = new ArrayList<>();
+            List<Idea> aprobadas = new ArrayList<>();
+            for (Idea idea : ideas.values()) {
+                if (idea.getEstado() == Idea.Estado.PENDIENTE) pendientes.add(idea);
+                else if (idea.getEstado() == Idea.Estado.APROBADA) aprobadas.add(idea);
+            }
+            this.porId = Collections.unmodifiableMap(new HashMap<>(ideas));
+            this.todas = Collections.unmodifiableList(new ArrayList<>(ideas.values()));
+            this.pendientes = Collections.unmodifiableList(pendientes);
+            this.aprobadas = Collections.unmodifiableList(aprobadas);
         }
     }
 
+    /**
+     * Publica el mapa de trabajo como nueva instantánea para los lectores.
+     * Debe llamarse con el bloqueo de escritura tomado.
+     */
+    private void publicar() {
+        actual = new Instantanea(ideasPorId);
+    }
+
+    /**
+     * Devuelve todas las ideas, en orden de publicación. La lista no se puede modificar y no
+     * cambia con operaciones posteriores; no bloquea aunque haya una sincronización en curso.
+     */
+    public List<Idea> getIdeas() {
+        return actual.todas;
+    }
+
+    /**
+     * Ejecuta una consulta paginada sobre la instantánea actual, sin bloqueos ni copias.
+     * @throws IllegalArgumentException Si el cursor no es válido para la consulta.
+     */
+    public PaginaIdeas consultar(ConsultaIdeas consulta) {
+        return consulta.ejecutar(actual.todas);
+    }
+
     public List<Idea> getIdeasPendientes() {
-        syncService.forceUpdate();
-        lock.readLock().lock();
-        try {
-            return ideas.stream()
-                    .filter(idea -> idea.getEstado() == Idea.Estado.PENDIENTE)
-                    .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return actual.pendientes;
     }
 
     public List<Idea> getIdeasAprobadas() {
-        syncService.forceUpdate();
-        lock.readLock().lock();
-        try {
-            return ideas.stream()
-                    .filter(idea -> idea.getEstado() == Idea.Estado.APROBADA)
-                    .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return actual.aprobadas;
     }
 
     public void agregarIdea(Idea idea) {
         if (idea == null) {
             throw new IllegalArgumentException("La idea no puede ser null");
         }
-        
-        boolean success = LockManager.executeWithLock("ideas", () -> {
-            lock.writeLock().lock();
+
+        // Se publica una copia para que cambios posteriores del llamador no alteren la instantánea
+        Idea nueva = idea.copiar();
+        nueva.setVersion(0);
+        int fragmento = fragmento(nueva.getId());
+        Compactacion[] compactacion = {Compactacion.NO};
+        boolean success = LockManager.executeWithLock(bloqueo(fragmento), () -> {
+            escritura.lock();
             try {
-                cargarIdeasDesdeArchivo();
-                ideas.add(idea);
-                guardarIdeasAArchivo();
+                sincronizar(fragmento);
+                ideasPorId.put(nueva.getId(), nueva);
+                compactacion[0] = registrarCambio(fragmento, () -> feeds[fragmento].anexarAlta(nueva));
+                publicar();
             } finally {
-                lock.writeLock().unlock();
+                escritura.unlock();
             }
         });
 
         if (!success) {
             throw new RuntimeException("No se pudo obtener el bloqueo para agregar la idea");
         }
+        compactarTrasCambio(compactacion[0], "agregar");
     }
 
-    public void aprobarIdea(Idea idea) {
-        if (idea == null) {
-            throw new IllegalArgumentException("La idea no puede ser null");
-        }
-        
-        boolean success = LockManager.executeWithLock("ideas", () -> {
-            lock.writeLock().lock();
-            try {
-                cargarIdeasDesdeArchivo();
-                boolean encontrada = false;
-                for (Idea i : ideas) {
-                    if (sonIguales(i, idea)) {
-                        i.aprobar();
-                        encontrada = true;
-                        break;
-                    }
-                }
-                if (!encontrada) {
-                    logger.warning("No se encontró la idea para aprobar: " + idea.getTitulo());
-                }
-                guardarIdeasAArchivo();
-            } finally {
-                lock.writeLock().unlock();
-            }
-        });
+    /**
+     * Aprueba una idea.
+     * @return true si esta llamada confirmó una nueva versión; false si la idea ya no existe
+     *         u otro cliente la aprobó primero.
+     */
+    public boolean aprobarIdea(Idea idea) {
+        return cambiarEstado(idea, Idea.Estado.APROBADA, "aprobar");
+    }
 
-        if (!success) {
-            throw new RuntimeException("No se pudo obtener el bloqueo para aprobar la idea");
-        }
+    /**
+     * Desaprueba una idea.
+     * @return true si esta llamada confirmó una nueva versión; false si la idea ya no existe
+     *         u otro cliente la desaprobó primero.
+     */
+    public boolean desaprobarIdea(Idea idea) {
+        return cambiarEstado(idea, Idea.Estado.DESAPROBADA, "desaprobar");
     }
 
-    public void desaprobarIdea(Idea idea) {
+    /**
+     * Cambia el estado de una idea con control optimista: el cambio se prepara fuera del
+     * bloqueo a partir de la versión que vio el llamador y se confirma solo si esa versión
+     * sigue siendo la actual. Si otro cliente cambió la idea entretanto, se vuelve a intentar
+     * sobre la versión nueva.
+     */
+    private boolean cambiarEstado(Idea idea, Idea.Estado estado, String accion) {
         if (idea == null) {
             throw new IllegalArgumentException("La idea no puede ser null");
         }
-        
-        boolean success = LockManager.executeWithLock("ideas", () -> {
-            lock.writeLock().lock();
-            try {
-                cargarIdeasDesdeArchivo();
-                boolean encontrada = false;
-                for (Idea i : ideas) {
-                    if (sonIguales(i, idea)) {
-                        i.desaprobar();
-                        encontrada = true;
-                        break;
-                    }
-                }
-                if (!encontrada) {
-                    logger.warning("No se encontró la idea para desaprobar: " + idea.getTitulo());
+
+        int fragmento = fragmento(idea.getId());
+        Idea vista = idea;
+        for (int intento = 1; intento <= MAX_REINTENTOS; intento++) {
+            Idea cambiada = vista.copiar();
+            if (estado == Idea.Estado.APROBADA) cambiada.aprobar(); else cambiada.desaprobar();
+            cambiada.setVersion(vista.getVersion() + 1);
+            int versionEsperada = vista.getVersion();
+
+            Confirmacion[] resultado = new Confirmacion[1];
+            boolean success = LockManager.executeWithLock(bloqueo(fragmento), () -> {
+                escritura.lock();
+                try {
+                    sincronizar(fragmento);
+                    resultado[0] = confirmar(fragmento, cambiada, versionEsperada);
+                    publicar();
+                } finally {
+                    escritura.unlock();
                 }
-                guardarIdeasAArchivo();
-            } finally {
-                lock.writeLock().unlock();
+            });
+
+            if (!success) {
+                throw new RuntimeException("No se pudo obtener el bloqueo para " + accion + " la idea");
             }
-        });
+            switch (resultado[0]) {
+                case CONFIRMADA:
+                    return true;
+                case CONFIRMADA_COMPACTAR:
+                    compactarTrasCambio(Compactacion.CONVIENE, accion);
+                    return true;
+                case CONFIRMADA_SIN_FEED:
+                    compactarTrasCambio(Compactacion.NECESARIA, accion);
+                    return true;
+                case NO_EXISTE:
+                    logger.warning("No se encontró la idea para " + accion + ": " + idea.getTitulo());
+                    return false;
+                default:
+                    // Otro cliente cambió la idea: se reintenta sobre la versión publicada
+                    vista = actual.porId.get(idea.getId());
+                    if (vista == null) {
+                        logger.warning("No se encontró la idea para " + accion + ": " + idea.getTitulo());
+                        return false;
+                    }
+                    if (vista.getEstado() == estado) return false; // El otro cliente ya hizo el mismo cambio
+            }
+        }
+        throw new RuntimeException("No se pudo " + accion + " la idea: otros usuarios la modificaron a la vez");
+    }
 
-        if (!success) {
-            throw new RuntimeException("No se pudo obtener el bloqueo para desaprobar la idea");
+    /** Resultado de confirmar un cambio de estado. */
+    private enum Confirmacion { CONFIRMADA, CONFIRMADA_COMPACTAR, CONFIRMADA_SIN_FEED, CONFLICTO, NO_EXISTE }
+
+    /**
+     * Confirma la nueva versión de una idea si la actual es la esperada.
+     * Debe llamarse con el bloqueo del fragmento y el de escritura tomados, tras sincronizar.
+     */
+    private Confirmacion confirmar(int fragmento, Idea cambiada, int versionEsperada) {
+        Idea actualEnFeed = ideasPorId.get(cambiada.getId());
+        if (actualEnFeed == null) return Confirmacion.NO_EXISTE;
+        if (actualEnFeed.getVersion() != versionEsperada) return Confirmacion.CONFLICTO;
+        ideasPorId.put(cambiada.getId(), cambiada);
+        switch (registrarCambio(fragmento, () -> feeds[fragmento].anexarEstado(cambiada))) {
+            case CONVIENE: return Confirmacion.CONFIRMADA_COMPACTAR;
+            case NECESARIA: return Confirmacion.CONFIRMADA_SIN_FEED;
+            default: return Confirmacion.CONFIRMADA;
         }
     }
 
@@ -162,82 +266,242 @@ public class MultiUserIdeaService {
         if (idea == null) {
             throw new IllegalArgumentException("La idea no puede ser null");
         }
-        
-        boolean success = LockManager.executeWithLock("ideas", () -> {
-            lock.writeLock().lock();
+
+        int fragmento = fragmento(idea.getId());
+        Compactacion[] compactacion = {Compactacion.NO};
+        boolean success = LockManager.executeWithLock(bloqueo(fragmento), () -> {
+            escritura.lock();
             try {
-                cargarIdeasDesdeArchivo();
-                boolean eliminada = ideas.removeIf(i -> sonIguales(i, idea));
-                if (!eliminada) {
+                sincronizar(fragmento);
+                if (ideasPorId.remove(idea.getId()) != null) {
+                    compactacion[0] = registrarCambio(fragmento, () -> feeds[fragmento].anexarEliminacion(idea.getId()));
+                } else {
                     logger.warning("No se encontró la idea para eliminar: " + idea.getTitulo());
                 }
-                guardarIdeasAArchivo();
+                publicar();
             } finally {
-                lock.writeLock().unlock();
+                escritura.unlock();
             }
         });
 
         if (!success) {
             throw new RuntimeException("No se pudo obtener el bloqueo para eliminar la idea");
         }
+        compactarTrasCambio(compactacion[0], "eliminar");
     }
 
     public void guardarIdeas() {
-        boolean success = LockManager.executeWithLock("ideas", () -> {
-            lock.readLock().lock();
+        if (!compactar()) {
+            throw new RuntimeException("No se pudieron guardar las ideas en la carpeta compartida");
+        }
+    }
+
+    /**
+     * Fragmento del feed al que pertenece una idea. Los bits bajos de los identificadores
+     * casi siempre son cero (secuencia dentro del mismo milisegundo), así que se mezclan
+     * antes de tomar el fragmento.
+     */
+    static int fragmento(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - Integer.numberOfTrailingZeros(FRAGMENTOS)));
+    }
+
+    private static String bloqueo(int fragmento) {
+        return "ideas-" + fragmento;
+    }
+
+    /**
+     * Aplica los cambios de todos los fragmentos que este cliente aún no ha visto. Si se
+     * perdieron registros por una compactación, recarga la instantánea completa. Solo cambia
+     * el mapa de trabajo; los lectores no ven el resultado hasta {@link #publicar()}.
+     * Debe llamarse con el bloqueo de escritura local tomado.
+     */
+    private void sincronizar() {
+        try {
+            for (FeedCambios feed : feeds) {
+                if (!feed.leerNuevos(ideasPorId)) {
+                    recargar();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error leyendo feed de cambios", e);
+            guardarErrorEnTxt("Error leyendo feed de cambios: " + e.getMessage());
+            cargarIdeasDesdeArchivo();
+        }
+    }
+
+    /**
+     * Aplica los cambios pendientes de un solo fragmento: basta para escribir en él, porque
+     * los cambios de otros fragmentos tocan otras ideas.
+     * Debe llamarse con el bloqueo de escritura local tomado.
+     */
+    private void sincronizar(int fragmento) {
+        try {
+            if (!feeds[fragmento].leerNuevos(ideasPorId)) recargar();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error leyendo feed de cambios", e);
+            guardarErrorEnTxt("Error leyendo feed de cambios: " + e.getMessage());
+            cargarIdeasDesdeArchivo();
+        }
+    }
+
+    /**
+     * Recarga la instantánea y aplica todos los fragmentos desde ella.
+     */
+    private void recargar() throws IOException {
+        cargarIdeasDesdeArchivo();
+        for (FeedCambios feed : feeds) {
+            if (!feed.leerNuevos(ideasPorId)) {
+                logger.warning("El feed de cambios no es continuo con la instantánea");
+            }
+        }
+    }
+
+    /** Si hay que compactar después de un cambio. */
+    private enum Compactacion {
+        NO,
+        /** El fragmento creció demasiado */
+        CONVIENE,
+        /** El cambio no se pudo escribir en el feed: solo la instantánea completa lo guarda */
+        NECESARIA
+    }
+
+    /**
+     * Anexa un cambio al feed de un fragmento.
+     */
+    private Compactacion registrarCambio(int fragmento, CambioFeed cambio) {
+        try {
+            cambio.anexar();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error escribiendo feed de cambios", e);
+            guardarErrorEnTxt("Error escribiendo feed de cambios: " + e.getMessage());
+            return Compactacion.NECESARIA;
+        }
+        return feeds[fragmento].getRegistros() >= MAX_REGISTROS_FEED ? Compactacion.CONVIENE : Compactacion.NO;
+    }
+
+    /**
+     * Compacta si el cambio lo pide. Si el cambio no quedó en el feed, se reintenta hasta
+     * {@link #MAX_REINTENTOS} veces y, si no se logra, se informa: el cambio solo existe en la
+     * memoria de este cliente.
+     */
+    private void compactarTrasCambio(Compactacion compactacion, String accion) {
+        if (compactacion == Compactacion.NO) return;
+        if (compactacion == Compactacion.CONVIENE) {
+            compactar();
+            return;
+        }
+        for (int intento = 1; intento <= MAX_REINTENTOS; intento++) {
+            if (compactar()) return;
+        }
+        throw new RuntimeException("No se pudo guardar en la carpeta compartida el cambio al " + accion + " la idea");
+    }
+
+    /**
+     * Escribe la instantánea completa y reinicia todos los fragmentos a partir de ella.
+     * Toma los bloqueos de todos los fragmentos, siempre en el mismo orden.
+     * @return false si no se pudieron obtener los bloqueos o escribir la instantánea.
+     */
+    private boolean compactar() {
+        int tomados = 0;
+        boolean guardado;
+        try {
             try {
-                guardarIdeasAArchivo();
-            } finally {
-                lock.readLock().unlock();
+                while (tomados < FRAGMENTOS && LockManager.acquireLock(bloqueo(tomados))) tomados++;
+            } catch (UncheckedIOException e) {
+                // LockManager ya registró el error; se trata como no obtener los bloqueos
             }
-        });
+            if (tomados < FRAGMENTOS) return false;
 
-        if (!success) {
-            throw new RuntimeException("No se pudo obtener el bloqueo para guardar las ideas");
+            escritura.lock();
+            try {
+                sincronizar();
+                long[] secuencias = new long[FRAGMENTOS];
+                for (int f = 0; f < FRAGMENTOS; f++) secuencias[f] = feeds[f].getUltimaSecuencia();
+                guardado = guardarIdeasAArchivo(secuencias);
+                if (guardado) {
+                    for (int f = 0; f < FRAGMENTOS; f++) {
+                        try {
+                            feeds[f].compactar(secuencias[f]);
+                        } catch (IOException e) {
+                            logger.log(Level.SEVERE, "Error compactando feed de cambios", e);
+                            guardarErrorEnTxt("Error compactando feed de cambios: " + e.getMessage());
+                        }
+                    }
+                }
+                publicar();
+            } finally {
+                escritura.unlock();
+            }
+            return guardado;
+        } finally {
+            while (tomados > 0) LockManager.releaseLock(bloqueo(--tomados));
         }
     }
 
-    private boolean sonIguales(Idea i1, Idea i2) {
-        return Objects.equals(i1.getCodigoEstudiante(), i2.getCodigoEstudiante()) &&
-               Objects.equals(i1.getTitulo(), i2.getTitulo());
+    /**
+     * Clave de la secuencia de un fragmento en ideas.properties; el fragmento 0 usa la del feed único anterior.
+     */
+    private static String claveSecuencia(int fragmento) {
+        return fragmento == 0 ? "feed.secuencia" : "feed." + fragmento + ".secuencia";
     }
 
-    private void guardarIdeasAArchivo() {
+    private boolean guardarIdeasAArchivo(long[] secuencias) {
         Path filePath = Paths.get(LockManager.getSharedPath(), ARCHIVO_IDEAS);
         Properties props = new Properties();
 
-        for (int i = 0; i < ideas.size(); i++) {
-            Idea idea = ideas.get(i);
+        int i = 0;
+        for (Idea idea : ideasPorId.values()) {
             String prefix = "idea." + i + ".";
             
+            props.setProperty(prefix + "id", Long.toString(idea.getId()));
             props.setProperty(prefix + "titulo", idea.getTitulo());
-            props.setProperty(prefix + "descripcion", idea.getDescripcion());
+            props.setProperty(prefix + "descripcion", Objects.toString(idea.getContenido(), ""));
+            props.setProperty(prefix + "imagen", Objects.toString(idea.getImageUrl(), ""));
+            props.setProperty(prefix + "nombre", idea.getNombreEstudiante());
             props.setProperty(prefix + "autor", idea.getCodigoEstudiante());
             props.setProperty(prefix + "estado", idea.getEstado().name());
+            props.setProperty(prefix + "version", Integer.toString(idea.getVersion()));
+            i++;
+        }
+
+        for (int f = 0; f < FRAGMENTOS; f++) {
+            props.setProperty(claveSecuencia(f), Long.toString(secuencias[f]));
         }
 
-        try (OutputStream out = Files.newOutputStream(filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        try {
+            // Las demás instancias leen este archivo sin bloqueo: se reemplaza de forma atómica
+            // para que nunca vean una escritura a medias
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
             props.store(out, "Ideas del sistema - Guardado: " + java.time.LocalDateTime.now());
+            EscrituraAtomica.escribir(filePath, out.toByteArray());
+            return true;
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Error guardando ideas", e);
             guardarErrorEnTxt("Error guardando ideas: " + e.getMessage());
+            return false;
         }
     }
 
     private void cargarIdeasDesdeArchivo() {
         Path filePath = Paths.get(LockManager.getSharedPath(), ARCHIVO_IDEAS);
         
-        if (!Files.exists(filePath)) {
+        if (!Files.exists(filePath) && !Files.exists(EscrituraAtomica.respaldo(filePath))) {
             logger.info("Archivo de ideas no existe, se creará uno nuevo");
-            ideas.clear();
+            ideasPorId.clear();
+            for (FeedCambios feed : feeds) feed.reiniciarDesde(0);
             return;
         }
 
         Properties props = new Properties();
-        List<Idea> nuevasIdeas = new ArrayList<>();
+        Map<Long, Idea> nuevasIdeas = new LinkedHashMap<>();
 
-        try (InputStream in = Files.newInputStream(filePath)) {
-            props.load(in);
+        try {
+            EscrituraAtomica.Lectura lectura = EscrituraAtomica.leer(filePath);
+            if (lectura.desdeRespaldo) {
+                logger.warning("ideas.properties no está disponible o está dañado; se usa la generación anterior");
+            }
+            props.load(new ByteArrayInputStream(lectura.datos));
 
             int i = 0;
             while (true) {
@@ -245,17 +509,25 @@ public class MultiUserIdeaService {
                 if (titulo == null || titulo.trim().isEmpty()) break;
 
                 String descripcion = props.getProperty("idea." + i + ".descripcion", "");
+                String nombre = props.getProperty("idea." + i + ".nombre", "");
                 String autor = props.getProperty("idea." + i + ".autor", "desconocido");
                 String estadoStr = props.getProperty("idea." + i + ".estado", "PENDIENTE");
+                String imagen = props.getProperty("idea." + i + ".imagen", "");
+                String idStr = props.getProperty("idea." + i + ".id");
+                String versionStr = props.getProperty("idea." + i + ".version", "0");
 
                 try {
-                    Idea idea = new Idea(titulo, descripcion, autor, estadoStr, estadoStr);
+                    Idea idea = new Idea(nombre, autor, titulo, descripcion, imagen);
+                    // Las ideas guardadas antes de los identificadores reciben uno nuevo
+                    if (idStr != null) idea.restaurarId(Long.parseLong(idStr));
+                    idea.setVersion(Integer.parseInt(versionStr));
                     
                     // Configurar estado con manejo de errores
                     switch (estadoStr.toUpperCase()) {
                         case "APROBADA":
                             idea.aprobar();
                             break;
+                        case "DESAPROBADA":
                         case "RECHAZADA":
                             idea.desaprobar();
                             break;
@@ -267,7 +539,7 @@ public class MultiUserIdeaService {
                             break;
                     }
 
-                    nuevasIdeas.add(idea);
+                    nuevasIdeas.put(idea.getId(), idea);
                 } catch (Exception e) {
                     logger.log(Level.WARNING, "Error cargando idea " + i + ": " + titulo, e);
                 }
@@ -275,9 +547,12 @@ public class MultiUserIdeaService {
                 i++;
             }
 
-            ideas.clear();
-            ideas.addAll(nuevasIdeas);
-            logger.info("Cargadas " + ideas.size() + " ideas desde archivo");
+            ideasPorId.clear();
+            ideasPorId.putAll(nuevasIdeas);
+            for (int f = 0; f < FRAGMENTOS; f++) {
+                feeds[f].reiniciarDesde(Long.parseLong(props.getProperty(claveSecuencia(f), "0")));
+            }
+            logger.info("Cargadas " + ideasPorId.size() + " ideas desde archivo");
 
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Error cargando ideas desde archivo", e);
@@ -295,13 +570,21 @@ public class MultiUserIdeaService {
         }
     }
 
+    /**
+     * Operación que anexa un registro al feed de cambios.
+     */
+    @FunctionalInterface
+    private interface CambioFeed {
+        void anexar() throws IOException;
+    }
+
     public void shutdown() {
         isShuttingDown = true;
-        lock.writeLock().lock();
+        escritura.lock();
         try {
             syncService.stop();
         } finally {
-            lock.writeLock().unlock();
+            escritura.unlock();
         }
     }
 }
\ No newline at end of file
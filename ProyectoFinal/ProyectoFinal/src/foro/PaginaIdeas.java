@@ -0,0 +1,33 @@
+package foro;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Una página de resultados de {@link ConsultaIdeas}.
+ */
+public final class PaginaIdeas {
+    private final List<ResumenIdea> elementos;
+    private final String siguienteCursor;
+
+    PaginaIdeas(List<ResumenIdea> elementos, String siguienteCursor) {
+        this.elementos = Collections.unmodifiableList(elementos);
+        this.siguienteCursor = siguienteCursor;
+    }
+
+    /**
+     * Devuelve las ideas de la página, en el orden pedido.
+     */
+    public List<ResumenIdea> getElementos() { return elementos; }
+
+    /**
+     * Devuelve el cursor para pedir la página siguiente con {@link ConsultaIdeas#despuesDe(String)},
+     * o null si esta es la última.
+     */
+    public String getSiguienteCursor() { return siguienteCursor; }
+
+    /**
+     * Indica si hay más resultados después de esta página.
+     */
+    public boolean hayMas() { return siguienteCursor != null; }
+}
@@ -0,0 +1,118 @@
+package foro;
+
+import java.util.*;
+
+/**
+ * Índices ordenados de las ideas aprobadas para los muros por ranking de {@link IdeaService}.
+ * <p>
+ * Cada idea se guarda con una copia de sus puntajes tomada al indexarla, así el orden de los
+ * {@link TreeSet} no cambia aunque la idea reciba votos: {@link IdeaService} vuelve a indexarla
+ * después de cada voto, comentario o cambio de estado. Las primeras {@code k} ideas de un ranking
+ * se obtienen en O(k + log n), sin ordenar la lista completa.
+ * <p>
+ * La mejor calificación usa el límite inferior de Wilson (95 %) sobre la calificación llevada a
+ * [0, 1]: una idea con un solo voto de 5 estrellas no supera a otra con cien votos de 4,8. El
+ * puntaje depende solo de los votos de la propia idea, así que un voto no obliga a reordenar
+ * las demás (a diferencia de un promedio bayesiano con la media global como referencia).
+ * No es seguro para hilos; {@link IdeaService} lo usa con su bloqueo tomado.
+ */
+class RankingIdeas {
+    /** Cuantil de la normal para un intervalo de confianza del 95 % */
+    private static final double Z = 1.96;
+
+    /**
+     * Puntajes de una idea en el momento en que se indexó.
+     */
+    private static final class Entrada {
+        final Idea idea;
+        final double calificacion;
+        final int votos;
+        final int comentarios;
+
+        Entrada(Idea idea) {
+            this.idea = idea;
+            this.votos = idea.getVoteCount();
+            this.calificacion = limiteInferiorWilson(idea.getSumaVotos(), votos);
+            this.comentarios = idea.getComentarios().size();
+        }
+    }
+
+    // Empates: la idea más antigua primero (el orden de creación es único)
+    private static final Comparator<Entrada> POR_ANTIGUEDAD = Comparator.comparingLong(e -> e.idea.getOrden());
+
+    private final Map<IdeaService.Ranking, NavigableSet<Entrada>> indices = new EnumMap<>(IdeaService.Ranking.class);
+    private final Map<Idea, Entrada> entradas = new HashMap<>();
+
+    RankingIdeas() {
+        indices.put(IdeaService.Ranking.MEJOR_CALIFICADAS, new TreeSet<>(
+                Comparator.<Entrada>comparingDouble(e -> -e.calificacion)
+                        .thenComparingInt(e -> -e.votos)
+                        .thenComparing(POR_ANTIGUEDAD)));
+        indices.put(IdeaService.Ranking.MAS_VOTADAS, new TreeSet<>(
+                Comparator.<Entrada>comparingInt(e -> -e.votos)
+                        .thenComparingDouble(e -> -e.calificacion)
+                        .thenComparing(POR_ANTIGUEDAD)));
+        indices.put(IdeaService.Ranking.MAS_COMENTADAS, new TreeSet<>(
+                Comparator.<Entrada>comparingInt(e -> -e.comentarios)
+                        .thenComparing(POR_ANTIGUEDAD)));
+    }
+
+    /**
+     * Vuelve a indexar una idea tras un cambio; si ya no está aprobada, la quita.
+     */
+    void actualizar(Idea idea) {
+        quitar(idea);
+        if (idea.getEstado() != Idea.Estado.APROBADA) return;
+        Entrada entrada = new Entrada(idea);
+        entradas.put(idea, entrada);
+        for (NavigableSet<Entrada> indice : indices.values()) indice.add(entrada);
+    }
+
+    /**
+     * Quita una idea de todos los rankings.
+     */
+    void quitar(Idea idea) {
+        Entrada anterior = entradas.remove(idea);
+        if (anterior == null) return;
+        for (NavigableSet<Entrada> indice : indices.values()) indice.remove(anterior);
+    }
+
+    /**
+     * Vacía los rankings.
+     */
+    void limpiar() {
+        entradas.clear();
+        for (NavigableSet<Entrada> indice : indices.values()) indice.clear();
+    }
+
+    /**
+     * Devuelve las primeras ideas de un ranking.
+     * @param ranking Criterio de orden.
+     * @param k Cantidad máxima de ideas.
+     */
+    List<Idea> primeras(IdeaService.Ranking ranking, int k) {
+        List<Idea> resultado = new ArrayList<>(Math.min(k, entradas.size()));
+        for (Entrada entrada : indices.get(ranking)) {
+            if (resultado.size() >= k) break;
+            resultado.add(entrada.idea);
+        }
+        return resultado;
+    }
+
+    /**
+     * Límite inferior del intervalo de Wilson para la calificación promedio.
+     * @param suma Suma de las calificaciones (de 1 a {@link Idea#MAX_ESTRELLAS}).
+     * @param votos Cantidad de votos.
+     * @return Calificación que la idea supera con un 95 % de confianza, en la misma escala
+     *         de estrellas; 0 si no tiene votos.
+     */
+    static double limiteInferiorWilson(long suma, int votos) {
+        if (votos == 0) return 0;
+        int rango = Idea.MAX_ESTRELLAS - 1;
+        double p = Math.max(0, Math.min(1, (suma - votos) / (double) (rango * votos)));
+        double z2 = Z * Z;
+        double centro = p + z2 / (2 * votos);
+        double margen = Z * Math.sqrt(p * (1 - p) / votos + z2 / (4.0 * votos * votos));
+        return 1 + rango * (centro - margen) / (1 + z2 / votos);
+    }
+}
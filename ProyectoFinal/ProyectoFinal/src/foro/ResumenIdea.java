@@ -0,0 +1,46 @@
+package foro;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vista de solo lectura de una idea con los datos que muestra un listado: sin el contenido ni
+ * los comentarios, y con los votos ya agregados. Es una copia; no refleja cambios posteriores.
+ */
+public final class ResumenIdea {
+    private final long id;
+    private final String titulo;
+    private final String nombreEstudiante;
+    private final String codigoEstudiante;
+    private final String imageUrl;
+    private final Idea.Estado estado;
+    private final LocalDateTime fechaCreacion;
+    private final double calificacionPromedio;
+    private final int votos;
+
+    ResumenIdea(Idea idea) {
+        this.id = idea.getId();
+        this.titulo = idea.getTitulo();
+        this.nombreEstudiante = idea.getNombreEstudiante();
+        this.codigoEstudiante = idea.getCodigoEstudiante();
+        this.imageUrl = idea.getImageUrl();
+        this.estado = idea.getEstado();
+        this.fechaCreacion = idea.getFechaCreacion();
+        this.calificacionPromedio = idea.getAverageRating();
+        this.votos = idea.getVoteCount();
+    }
+
+    public long getId() { return id; }
+    public String getTitulo() { return titulo; }
+    public String getNombreEstudiante() { return nombreEstudiante; }
+    public String getCodigoEstudiante() { return codigoEstudiante; }
+    public String getImageUrl() { return imageUrl; }
+    public Idea.Estado getEstado() { return estado; }
+    public LocalDateTime getFechaCreacion() { return fechaCreacion; }
+    public double getCalificacionPromedio() { return calificacionPromedio; }
+    public int getVotos() { return votos; }
+
+    @Override
+    public String toString() {
+        return titulo + " (" + codigoEstudiante + ", " + estado + ")";
+    }
+}
@@ -20,8 +20,8 @@ public class StarRatingPanel extends JPanel {
     /** Arreglo de etiquetas que representan las estrellas (visualmente) */
     private final JLabel[] stars = new JLabel[5];
 
-    /** Idea asociada al panel de calificación */
-    private final Idea idea;
+    /** Idea asociada al panel de calificación; cambia al reutilizar el panel en una lista */
+    private Idea idea;
 
     /** Usuario autenticado que realiza la calificación */
     private final Usuario usuario;
@@ -40,7 +40,17 @@ public class StarRatingPanel extends JPanel {
      * @param ideaService Servicio que maneja la persistencia de las ideas y votos.
      */
     public StarRatingPanel(Idea idea, Usuario usuario, IdeaService ideaService) {
-        this.idea = idea;
+        this(usuario, ideaService);
+        setIdea(idea);
+    }
+
+    /**
+     * Crea un panel sin idea asignada, para reutilizarlo con {@link #setIdea(Idea)}.
+     *
+     * @param usuario El usuario que califica las ideas.
+     * @param ideaService Servicio que maneja la persistencia de las ideas y votos.
+     */
+    StarRatingPanel(Usuario usuario, IdeaService ideaService) {
         this.usuario = usuario;
         this.ideaService = ideaService;
 
@@ -66,8 +76,7 @@ public class StarRatingPanel extends JPanel {
                 @Override
                 public void mouseClicked(MouseEvent e) {
                     // Al hacer clic, se guarda el voto y se actualiza visualmente
-                    idea.addVote(usuario.getUsername(), rating);
-                    ideaService.guardarIdeas();
+                    ideaService.votarIdea(StarRatingPanel.this.idea, usuario.getUsername(), rating);
                     updateStars(rating);
                 }
 
@@ -80,12 +89,19 @@ public class StarRatingPanel extends JPanel {
                 @Override
                 public void mouseExited(MouseEvent e) {
                     // Restaurar la calificación real al quitar el mouse
-                    updateStars(idea.getUserVote(usuario.getUsername()));
+                    updateStars(StarRatingPanel.this.idea.getUserVote(usuario.getUsername()));
                 }
             });
         }
+    }
 
-        // Muestra las estrellas según el voto guardado (si lo hay)
+    /**
+     * Cambia la idea calificada y muestra el voto guardado del usuario (si lo hay).
+     *
+     * @param idea La idea que será calificada.
+     */
+    void setIdea(Idea idea) {
+        this.idea = idea;
         updateStars(idea.getUserVote(usuario.getUsername()));
     }
 
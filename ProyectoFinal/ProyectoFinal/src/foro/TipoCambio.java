@@ -0,0 +1,22 @@
+package foro;
+
+/**
+ * Tipos de cambio que el servidor del foro notifica a los clientes conectados
+ * ({@code GET /api/eventos}), y que {@link IdeaServiceRemoto} aplica en su copia local.
+ */
+public enum TipoCambio {
+    /** Se agregó una idea; el evento trae la idea completa. */
+    IDEA_AGREGADA,
+    /** Una idea se aprobó o desaprobó; trae el estado y la versión. */
+    ESTADO,
+    /** Un usuario votó o cambió su voto; trae el usuario y la calificación. */
+    VOTO,
+    /** Se agregó un comentario; trae el comentario con su fecha. */
+    COMENTARIO,
+    /** Se eliminó un comentario; trae el comentario eliminado. */
+    COMENTARIO_ELIMINADO,
+    /** Se eliminó una idea. */
+    IDEA_ELIMINADA,
+    /** El cliente perdió eventos (el servidor se reinició o se desconectó demasiado tiempo) y debe recargar todo. */
+    RECARGA
+}
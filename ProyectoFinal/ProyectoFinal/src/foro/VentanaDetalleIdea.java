@@ -4,6 +4,9 @@ import auth.Usuario;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.function.BiConsumer;
 
 /**
  * {@code VentanaDetalleIdea} es un cuadro de diálogo modal que muestra los detalles completos de una idea,
@@ -14,7 +17,7 @@ import java.awt.*;
  */
 public class VentanaDetalleIdea extends JDialog {
 
-    private final Idea idea;
+    private Idea idea;
     private final Usuario usuarioActual;
     private final IdeaService ideaService;
     private final JPanel listaComentariosPanel;
@@ -88,8 +91,7 @@ public class VentanaDetalleIdea extends JDialog {
             String texto = campoComentario.getText().trim();
             if (!texto.isEmpty()) {
                 String autor = (usuarioActual != null) ? usuarioActual.getUsername() : "Anónimo";
-                idea.agregarComentario(new Comentario(autor, texto));
-                ideaService.guardarIdeas();
+                ideaService.agregarComentario(idea, new Comentario(autor, texto));
                 campoComentario.setText("");
                 reconstruirListaComentarios();
             }
@@ -103,6 +105,24 @@ public class VentanaDetalleIdea extends JDialog {
 
         add(new JScrollPane(contentPanel));
         reconstruirListaComentarios();
+
+        // Con un servidor, los comentarios aparecen cuando el servidor los acepta
+        if (ideaService instanceof IdeaServiceRemoto) {
+            IdeaServiceRemoto remoto = (IdeaServiceRemoto) ideaService;
+            BiConsumer<TipoCambio, Idea> oyente = (cambio, cambiada) -> {
+                Idea actual = cambio == TipoCambio.RECARGA ? ideaService.getIdea(this.idea.getId()) : cambiada;
+                if (actual == null || actual.getId() != this.idea.getId()) return;
+                this.idea = actual;
+                reconstruirListaComentarios();
+            };
+            remoto.agregarOyente(oyente);
+            addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosed(WindowEvent e) {
+                    remoto.quitarOyente(oyente);
+                }
+            });
+        }
     }
 
     /**
@@ -137,8 +157,7 @@ public class VentanaDetalleIdea extends JDialog {
                             "¿Eliminar este comentario?", "Confirmar",
                             JOptionPane.YES_NO_OPTION);
                     if (confirm == JOptionPane.YES_OPTION) {
-                        idea.eliminarComentario(comentario);
-                        ideaService.guardarIdeas();
+                        ideaService.eliminarComentario(idea, comentario);
                         reconstruirListaComentarios();
                     }
                 });
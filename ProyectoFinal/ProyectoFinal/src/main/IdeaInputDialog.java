@@ -5,9 +5,8 @@ import javax.swing.border.EmptyBorder;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import java.awt.*;
-import java.net.URL;
 import java.util.ArrayList;
-import javax.imageio.ImageIO;
+import main.imagenes.CargadorImagenes;
 
 /**
  * {@code IdeaInputDialog} es una clase utilitaria que muestra un cuadro de diálogo interactivo
@@ -22,6 +21,9 @@ public class IdeaInputDialog {
     /** Temporizador para activar la vista previa de la imagen después de que el usuario deja de escribir */
     private static Timer urlTypingTimer;
 
+    /** Carga de la vista previa en curso; se cancela cuando el usuario cambia la URL */
+    private static CargadorImagenes.Solicitud previewActual;
+
     /**
      * Muestra el cuadro de diálogo para ingresar una nueva idea.
      *
@@ -103,6 +105,7 @@ public class IdeaInputDialog {
                     JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
 
             urlTypingTimer.stop(); // Detener vista previa si se cierra
+            cancelarPreview();
 
             if (result != JOptionPane.OK_OPTION) return null;
 
@@ -139,6 +142,7 @@ public class IdeaInputDialog {
      * @param previewLabel Etiqueta donde se mostrará la imagen cargada o el mensaje de error.
      */
     private static void updateImagePreview(JTextField imageUrlField, JLabel previewLabel) {
+        cancelarPreview(); // La URL anterior ya no interesa
         String urlText = imageUrlField.getText().trim();
         if (urlText.isEmpty()) {
             previewLabel.setIcon(null);
@@ -149,26 +153,24 @@ public class IdeaInputDialog {
         previewLabel.setIcon(null);
         previewLabel.setText("Cargando...");
 
-        new SwingWorker<ImageIcon, Void>() {
-            @Override
-            protected ImageIcon doInBackground() throws Exception {
-                URL url = new URL(urlText);
-                Image image = ImageIO.read(url);
-                if (image == null) throw new Exception("No es una imagen válida");
-                return new ImageIcon(image.getScaledInstance(200, 150, Image.SCALE_SMOOTH));
-            }
-
-            @Override
-            protected void done() {
-                try {
-                    ImageIcon imageIcon = get();
+        previewActual = CargadorImagenes.getInstance().solicitar(urlText, 200, 150, CargadorImagenes.Prioridad.ALTA,
+                imageIcon -> {
                     previewLabel.setText(null);
                     previewLabel.setIcon(imageIcon);
-                } catch (Exception ex) {
+                },
+                ex -> {
                     previewLabel.setIcon(null);
                     previewLabel.setText("<html><center>URL no válida o<br>imagen no encontrada</center></html>");
-                }
-            }
-        }.execute();
+                }).cancelarAlQuitar(previewLabel);
+    }
+
+    /**
+     * Cancela la carga de la vista previa pendiente, si la hay.
+     */
+    private static void cancelarPreview() {
+        if (previewActual != null) {
+            previewActual.cancelar();
+            previewActual = null;
+        }
     }
 }
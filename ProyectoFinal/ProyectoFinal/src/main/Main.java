@@ -4,9 +4,12 @@ import auth.AuthService;
 import auth.Usuario;
 import foro.Foro;
 import foro.IdeaService;
+import foro.IdeaServiceRemoto;
+import main.persistencia.ConfiguracionAlmacen;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
 
 /**
  * Clase principal que inicia y ejecuta la aplicación "UD FORO".
@@ -73,8 +76,33 @@ public class Main {
         // --- FIN configuración estética ---
 
         // Instancias principales del sistema
-        AuthService authService = new AuthService();
-        IdeaService ideaService = new IdeaService();
+        // Con un servidor, los usuarios y las ideas son los del servidor
+        AuthService authService = null;
+        IdeaService ideaService = null;
+        IdeaServiceRemoto remoto = null;
+        String servidor = ConfiguracionAlmacen.servidor();
+        try {
+            if (servidor == null) {
+                authService = new AuthService();
+                ideaService = new IdeaService();
+            }
+        } catch (java.io.UncheckedIOException e) {
+            // Almacén en uso por otro proceso o base embebida que no se puede abrir
+            JOptionPane.showMessageDialog(null, e.getMessage(), "Almacén no disponible", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (servidor != null) {
+            try {
+                remoto = new IdeaServiceRemoto(servidor);
+            } catch (java.io.UncheckedIOException e) {
+                JOptionPane.showMessageDialog(null, e.getMessage(), "Servidor no disponible", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            // Los cambios se confirman en segundo plano; si el servidor no los acepta se avisa aquí
+            remoto.agregarOyenteRechazos(mensaje -> JOptionPane.showMessageDialog(null, mensaje,
+                    "Cambio no guardado", JOptionPane.WARNING_MESSAGE));
+            ideaService = remoto;
+        }
         Foro foro = new Foro(ideaService);
 
         Usuario usuarioActual = null;
@@ -117,7 +145,16 @@ public class Main {
                         if (registro != null) {
                             String username = registro[0];
                             String password = registro[1];
-                            if (authService.registrarUsuario(username, password)) {
+                            boolean registrado;
+                            try {
+                                registrado = remoto != null
+                                        ? remoto.registrarUsuario(username, password)
+                                        : authService.registrarUsuario(username, password);
+                            } catch (IOException e) {
+                                JOptionPane.showMessageDialog(null, e.getMessage(), "Servidor no disponible", JOptionPane.ERROR_MESSAGE);
+                                break;
+                            }
+                            if (registrado) {
                                 JOptionPane.showMessageDialog(null,
                                         "<html><div style='font-size:16px;'>Registro exitoso. Ahora puede iniciar sesión.</div></html>");
                             } else {
@@ -131,7 +168,12 @@ public class Main {
                         if (login != null) {
                             String username = login[0];
                             String password = login[1];
-                            usuarioActual = authService.iniciarSesion(username, password);
+                            try {
+                                usuarioActual = iniciarSesion(authService, remoto, username, password);
+                            } catch (IOException e) {
+                                JOptionPane.showMessageDialog(null, e.getMessage(), "Servidor no disponible", JOptionPane.ERROR_MESSAGE);
+                                break;
+                            }
                             if (usuarioActual != null) {
                                 JOptionPane.showMessageDialog(null,
                                         "<html><div style='font-size:16px;'>Inicio de sesión exitoso. ¡Bienvenido, " + username + "!</div></html>");
@@ -159,6 +201,7 @@ public class Main {
                         break;
                     case 2: // Cerrar sesión
                         usuarioActual = null;
+                        if (remoto != null) remoto.cerrarSesion();
                         JOptionPane.showMessageDialog(null,
                                 "<html><div style='font-size:16px;'>Sesión cerrada.</div></html>");
                         break;
@@ -180,6 +223,7 @@ public class Main {
                         break;
                     case 2: // Cerrar sesión
                         usuarioActual = null;
+                        if (remoto != null) remoto.cerrarSesion();
                         JOptionPane.showMessageDialog(null,
                                 "<html><div style='font-size:16px;'>Sesión cerrada.</div></html>");
                         break;
@@ -190,5 +234,18 @@ public class Main {
                 }
             }
         }
+
+        // Escribe los cambios de ideas que aún estén pendientes
+        ideaService.cerrar();
+    }
+
+    /**
+     * Inicia sesión con los usuarios del servidor, si hay uno, o con los locales.
+     * @return El usuario, o null si las credenciales son incorrectas.
+     * @throws IOException Si el servidor no responde.
+     */
+    private static Usuario iniciarSesion(AuthService authService, IdeaServiceRemoto remoto, String username, String password) throws IOException {
+        if (remoto == null) return authService.iniciarSesion(username, password);
+        return remoto.iniciarSesion(username, password) ? new Usuario(username, password) : null;
     }
 }
@@ -0,0 +1,356 @@
+package main.imagenes;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Caché compartida de imágenes escaladas, indexada por URL y tamaño máximo.
+ * <p>
+ * Tiene dos niveles:
+ * <ul>
+ *   <li>Memoria: LRU limitada por bytes (ancho × alto × 4 de cada imagen), configurable con
+ *       {@code -Dforo.cacheImagenes.memoriaMB} (32 MB por defecto).</li>
+ *   <li>Disco: miniaturas ya escaladas en {@code cache_imagenes/}, con la ETag y la fecha
+ *       Last-Modified del servidor. Pasado {@link #VIGENCIA_DISCO_MS} la miniatura se revalida
+ *       con una petición condicional; si el servidor responde 304 o no está disponible, se usa
+ *       la copia en disco. El directorio se limita con {@code -Dforo.cacheImagenes.discoMB}
+ *       (64 MB por defecto) borrando primero las miniaturas usadas hace más tiempo.</li>
+ * </ul>
+ * {@link #obtenerEnMemoria} es barato y se puede llamar desde el hilo de eventos;
+ * {@link #cargar} puede hacer E/S y debe llamarse en segundo plano.
+ */
+public final class CacheImagenes {
+    private static final String DIRECTORIO = "cache_imagenes";
+    private static final long VIGENCIA_DISCO_MS = TimeUnit.HOURS.toMillis(24);
+    private static final long BYTES_POR_MB = 1024L * 1024L;
+    private static final int TIEMPO_CONEXION_MS = Integer.getInteger("foro.imagenes.timeoutConexionMs", 5000);
+    private static final int TIEMPO_LECTURA_MS = Integer.getInteger("foro.imagenes.timeoutLecturaMs", 10000);
+
+    private static final CacheImagenes INSTANCIA = new CacheImagenes(
+            Path.of(DIRECTORIO),
+            Long.getLong("foro.cacheImagenes.memoriaMB", 32) * BYTES_POR_MB,
+            Long.getLong("foro.cacheImagenes.discoMB", 64) * BYTES_POR_MB);
+
+    private final Path directorio;
+    private final long limiteMemoria;
+    private final long limiteDisco;
+
+    // Orden de acceso: el primero es el usado hace más tiempo
+    private final LinkedHashMap<String, ImageIcon> memoria = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesEnMemoria = 0;
+
+    private CacheImagenes(Path directorio, long limiteMemoria, long limiteDisco) {
+        this.directorio = directorio;
+        this.limiteMemoria = limiteMemoria;
+        this.limiteDisco = limiteDisco;
+    }
+
+    public static CacheImagenes getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Devuelve la imagen si ya está en memoria, sin hacer E/S.
+     * @param url URL de la imagen original.
+     * @param anchoMaximo Ancho máximo de la imagen escalada.
+     * @param altoMaximo Alto máximo de la imagen escalada.
+     * @return El icono escalado, o null si no está en memoria.
+     */
+    public synchronized ImageIcon obtenerEnMemoria(String url, int anchoMaximo, int altoMaximo) {
+        return memoria.get(clave(url, anchoMaximo, altoMaximo));
+    }
+
+    /**
+     * Obtiene la imagen escalada de memoria, del disco o de la red, en ese orden.
+     * La imagen conserva su proporción y no se amplía.
+     * @param url URL de la imagen original.
+     * @param anchoMaximo Ancho máximo de la imagen escalada.
+     * @param altoMaximo Alto máximo de la imagen escalada.
+     * @return El icono escalado.
+     * @throws IOException Si no se puede descargar ni hay copia en disco.
+     */
+    public ImageIcon cargar(String url, int anchoMaximo, int altoMaximo) throws IOException {
+        String clave = clave(url, anchoMaximo, altoMaximo);
+        ImageIcon icono = obtenerEnMemoria(url, anchoMaximo, altoMaximo);
+        if (icono != null) return icono;
+
+        BufferedImage imagen = cargarDeDiscoORed(clave, url, anchoMaximo, altoMaximo);
+        icono = new ImageIcon(imagen);
+        guardarEnMemoria(clave, icono);
+        return icono;
+    }
+
+    /**
+     * Vacía el nivel en memoria (el disco se conserva).
+     */
+    public synchronized void limpiarMemoria() {
+        memoria.clear();
+        bytesEnMemoria = 0;
+    }
+
+    private BufferedImage cargarDeDiscoORed(String clave, String url, int anchoMaximo, int altoMaximo) throws IOException {
+        String nombre = hash(clave);
+        Path miniatura = directorio.resolve(nombre + ".png");
+        Path metadatos = directorio.resolve(nombre + ".meta");
+
+        Properties meta = leerMetadatos(metadatos);
+        BufferedImage enDisco = meta != null ? leerMiniatura(miniatura) : null;
+        if (enDisco != null) {
+            long validada = Long.parseLong(meta.getProperty("validada", "0"));
+            if (System.currentTimeMillis() - validada < VIGENCIA_DISCO_MS) {
+                tocar(miniatura);
+                return enDisco;
+            }
+        }
+
+        Descarga descarga;
+        try {
+            descarga = descargar(url, enDisco != null ? meta : null);
+        } catch (IOException e) {
+            if (enDisco != null) return enDisco; // Sin red: la copia anterior sigue sirviendo
+            throw e;
+        }
+
+        Properties nuevaMeta = new Properties();
+        nuevaMeta.setProperty("url", url);
+        nuevaMeta.setProperty("validada", Long.toString(System.currentTimeMillis()));
+        if (descarga == null) {
+            // 304: la miniatura en disco sigue vigente
+            copiarValidadores(meta, nuevaMeta);
+            escribirMetadatos(metadatos, nuevaMeta);
+            tocar(miniatura);
+            return enDisco;
+        }
+
+        BufferedImage escalada = escalar(descarga.imagen, anchoMaximo, altoMaximo);
+        if (descarga.etag != null) nuevaMeta.setProperty("etag", descarga.etag);
+        if (descarga.ultimaModificacion != null) nuevaMeta.setProperty("lastModified", descarga.ultimaModificacion);
+        try {
+            Files.createDirectories(directorio);
+            escribirMiniatura(miniatura, escalada);
+            escribirMetadatos(metadatos, nuevaMeta);
+            recortarDisco();
+        } catch (IOException e) {
+            System.err.println("No se pudo guardar la miniatura en disco: " + e.getMessage());
+        }
+        return escalada;
+    }
+
+    /**
+     * Descarga la imagen original. Si se pasan metadatos, hace una petición condicional.
+     * Los tiempos máximos de conexión y lectura evitan que un servidor lento ocupe un hilo de carga.
+     * @return La descarga, o null si el servidor respondió 304 (sin cambios).
+     */
+    private static Descarga descargar(String url, Properties meta) throws IOException {
+        URLConnection conexion = new URL(url).openConnection();
+        conexion.setConnectTimeout(TIEMPO_CONEXION_MS);
+        conexion.setReadTimeout(TIEMPO_LECTURA_MS);
+        if (conexion instanceof HttpURLConnection) {
+            HttpURLConnection http = (HttpURLConnection) conexion;
+            if (meta != null) {
+                String etag = meta.getProperty("etag");
+                String ultimaModificacion = meta.getProperty("lastModified");
+                if (etag != null) http.setRequestProperty("If-None-Match", etag);
+                if (ultimaModificacion != null) http.setRequestProperty("If-Modified-Since", ultimaModificacion);
+            }
+            int codigo = http.getResponseCode();
+            if (codigo == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                http.disconnect();
+                return null;
+            }
+            if (codigo >= 400) {
+                http.disconnect();
+                throw new IOException("El servidor respondió " + codigo + " para " + url);
+            }
+        }
+        BufferedImage imagen;
+        try (InputStream in = new BufferedInputStream(conexion.getInputStream())) {
+            imagen = ImageIO.read(in);
+        }
+        if (imagen == null) throw new IOException("No se pudo leer la imagen desde la URL.");
+        return new Descarga(imagen, conexion.getHeaderField("ETag"), conexion.getHeaderField("Last-Modified"));
+    }
+
+    /**
+     * Escala la imagen para que quepa en el tamaño máximo, conservando la proporción.
+     * Reduce a la mitad en pasos sucesivos, que da un resultado parecido a
+     * {@code SCALE_SMOOTH} con mucho menos trabajo.
+     */
+    static BufferedImage escalar(BufferedImage original, int anchoMaximo, int altoMaximo) {
+        int ancho = original.getWidth();
+        int alto = original.getHeight();
+        double factor = Math.min(1.0, Math.min((double) anchoMaximo / ancho, (double) altoMaximo / alto));
+        int anchoFinal = Math.max(1, (int) (ancho * factor));
+        int altoFinal = Math.max(1, (int) (alto * factor));
+
+        BufferedImage actual = original;
+        if (actual.getType() != BufferedImage.TYPE_INT_ARGB) actual = redimensionar(actual, ancho, alto);
+        while (ancho / 2 >= anchoFinal && alto / 2 >= altoFinal) {
+            ancho /= 2;
+            alto /= 2;
+            actual = redimensionar(actual, ancho, alto);
+        }
+        if (ancho != anchoFinal || alto != altoFinal) actual = redimensionar(actual, anchoFinal, altoFinal);
+        return actual;
+    }
+
+    private static BufferedImage redimensionar(BufferedImage origen, int ancho, int alto) {
+        BufferedImage destino = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(origen, 0, 0, ancho, alto, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+    private synchronized void guardarEnMemoria(String clave, ImageIcon icono) {
+        long tamano = tamano(icono);
+        if (tamano > limiteMemoria) return;
+        ImageIcon anterior = memoria.put(clave, icono);
+        if (anterior != null) bytesEnMemoria -= tamano(anterior);
+        bytesEnMemoria += tamano;
+
+        Iterator<ImageIcon> it = memoria.values().iterator();
+        while (bytesEnMemoria > limiteMemoria && it.hasNext()) {
+            bytesEnMemoria -= tamano(it.next());
+            it.remove();
+        }
+    }
+
+    /**
+     * Borra las miniaturas usadas hace más tiempo hasta que el directorio quepa en el límite.
+     */
+    private void recortarDisco() throws IOException {
+        List<Path> miniaturas;
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            miniaturas = new ArrayList<>(archivos.filter(p -> p.toString().endsWith(".png")).toList());
+        }
+        long total = 0;
+        Map<Path, Long> tamanos = new HashMap<>();
+        Map<Path, Long> usos = new HashMap<>();
+        for (Path p : miniaturas) {
+            long t = Files.size(p);
+            tamanos.put(p, t);
+            usos.put(p, Files.getLastModifiedTime(p).toMillis());
+            total += t;
+        }
+        if (total <= limiteDisco) return;
+
+        miniaturas.sort(Comparator.comparingLong(usos::get));
+        for (Path p : miniaturas) {
+            if (total <= limiteDisco) break;
+            String nombre = p.getFileName().toString();
+            Files.deleteIfExists(p);
+            Files.deleteIfExists(p.resolveSibling(nombre.substring(0, nombre.length() - 4) + ".meta"));
+            total -= tamanos.get(p);
+        }
+    }
+
+    private static BufferedImage leerMiniatura(Path miniatura) {
+        try {
+            return Files.exists(miniatura) ? ImageIO.read(miniatura.toFile()) : null;
+        } catch (IOException e) {
+            return null; // Miniatura dañada: se vuelve a descargar
+        }
+    }
+
+    /**
+     * Escribe la miniatura en un temporal y la mueve, para que otra carga nunca lea un archivo a medias.
+     */
+    private static void escribirMiniatura(Path miniatura, BufferedImage imagen) throws IOException {
+        Path temporal = Files.createTempFile(miniatura.getParent(), "mini", ".tmp");
+        try {
+            ImageIO.write(imagen, "png", temporal.toFile());
+            Files.move(temporal, miniatura, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private static Properties leerMetadatos(Path metadatos) {
+        if (!Files.exists(metadatos)) return null;
+        Properties meta = new Properties();
+        try (Reader in = Files.newBufferedReader(metadatos, StandardCharsets.UTF_8)) {
+            meta.load(in);
+            return meta;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void escribirMetadatos(Path metadatos, Properties meta) throws IOException {
+        try (Writer out = Files.newBufferedWriter(metadatos, StandardCharsets.UTF_8)) {
+            meta.store(out, null);
+        }
+    }
+
+    private static void copiarValidadores(Properties origen, Properties destino) {
+        for (String nombre : new String[]{"etag", "lastModified"}) {
+            String valor = origen.getProperty(nombre);
+            if (valor != null) destino.setProperty(nombre, valor);
+        }
+    }
+
+    /**
+     * Actualiza la fecha del archivo, que sirve como último uso para el recorte del disco.
+     */
+    private static void tocar(Path archivo) {
+        try {
+            Files.setLastModifiedTime(archivo, java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // Solo afecta el orden de recorte
+        }
+    }
+
+    private static long tamano(ImageIcon icono) {
+        return 4L * Math.max(1, icono.getIconWidth()) * Math.max(1, icono.getIconHeight());
+    }
+
+    private static String clave(String url, int anchoMaximo, int altoMaximo) {
+        return url + "@" + anchoMaximo + "x" + altoMaximo;
+    }
+
+    private static String hash(String texto) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Imagen original descargada y los validadores HTTP para revalidarla después.
+     */
+    private static final class Descarga {
+        final BufferedImage imagen;
+        final String etag;
+        final String ultimaModificacion;
+
+        Descarga(BufferedImage imagen, String etag, String ultimaModificacion) {
+            this.imagen = imagen;
+            this.etag = etag;
+            this.ultimaModificacion = ultimaModificacion;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package main.imagenes;
+
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Cargador de imágenes en segundo plano con un grupo de hilos propio y limitado
+ * ({@code -Dforo.imagenes.hilos}, 4 por defecto), separado del grupo de {@code SwingWorker}.
+ * <p>
+ * Las solicitudes de la misma imagen y tamaño se agrupan en una sola descarga. La cola se
+ * ordena por {@link Prioridad}: lo que está en pantalla pasa antes que las precargas, y una
+ * precarga pendiente sube de prioridad si luego se pide en primer plano. Cada solicitud se
+ * puede cancelar; la descarga solo se descarta si nadie más la espera y aún no empezó.
+ * Los resultados se entregan en el hilo de eventos de Swing.
+ */
+public final class CargadorImagenes {
+
+    /** Prioridad de una solicitud; las de menor ordinal se atienden primero. */
+    public enum Prioridad { ALTA, BAJA }
+
+    private static final int HILOS = Integer.getInteger("foro.imagenes.hilos", 4);
+    private static final CargadorImagenes INSTANCIA = new CargadorImagenes();
+
+    private final ThreadPoolExecutor ejecutor;
+    private final CacheImagenes cache = CacheImagenes.getInstance();
+
+    // Descargas pendientes o en curso por clave de caché; protegido por this
+    private final Map<String, Tarea> enCurso = new HashMap<>();
+    private long siguienteTurno = 0;
+
+    private CargadorImagenes() {
+        ejecutor = new ThreadPoolExecutor(HILOS, HILOS, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), r -> {
+            Thread hilo = new Thread(r, "carga-imagenes");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        ejecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public static CargadorImagenes getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Solicita una imagen escalada. Si ya está en memoria, el resultado se entrega sin usar el grupo de hilos.
+     * @param url URL de la imagen original.
+     * @param anchoMaximo Ancho máximo de la imagen escalada.
+     * @param altoMaximo Alto máximo de la imagen escalada.
+     * @param prioridad Prioridad de la solicitud.
+     * @param alCargar Se ejecuta en el hilo de eventos con la imagen cargada.
+     * @param alFallar Se ejecuta en el hilo de eventos si la carga falla.
+     * @return La solicitud, que se puede cancelar.
+     */
+    public synchronized Solicitud solicitar(String url, int anchoMaximo, int altoMaximo, Prioridad prioridad,
+                                            Consumer<ImageIcon> alCargar, Consumer<Exception> alFallar) {
+        Solicitud solicitud = new Solicitud(prioridad, alCargar, alFallar);
+        ImageIcon enMemoria = cache.obtenerEnMemoria(url, anchoMaximo, altoMaximo);
+        if (enMemoria != null) {
+            SwingUtilities.invokeLater(() -> solicitud.entregar(enMemoria, null));
+            return solicitud;
+        }
+
+        String clave = url + "@" + anchoMaximo + "x" + altoMaximo;
+        Tarea tarea = enCurso.get(clave);
+        if (tarea == null) {
+            tarea = new Tarea(clave, url, anchoMaximo, altoMaximo, prioridad, siguienteTurno++);
+            enCurso.put(clave, tarea);
+            ejecutor.execute(tarea);
+        } else if (prioridad.compareTo(tarea.prioridad) < 0 && ejecutor.getQueue().remove(tarea)) {
+            // Se reinserta para que la cola vea la nueva prioridad
+            tarea.prioridad = prioridad;
+            ejecutor.execute(tarea);
+        }
+        solicitud.tarea = tarea;
+        tarea.interesados.add(solicitud);
+        return solicitud;
+    }
+
+    /**
+     * Descarga agrupada de una imagen; ordenada por prioridad y, a igual prioridad, por llegada.
+     */
+    private final class Tarea implements Runnable, Comparable<Tarea> {
+        final String clave;
+        final String url;
+        final int anchoMaximo;
+        final int altoMaximo;
+        final long turno;
+        Prioridad prioridad;
+        boolean iniciada = false;
+        final List<Solicitud> interesados = new ArrayList<>();
+
+        Tarea(String clave, String url, int anchoMaximo, int altoMaximo, Prioridad prioridad, long turno) {
+            this.clave = clave;
+            this.url = url;
+            this.anchoMaximo = anchoMaximo;
+            this.altoMaximo = altoMaximo;
+            this.prioridad = prioridad;
+            this.turno = turno;
+        }
+
+        @Override
+        public int compareTo(Tarea otra) {
+            int porPrioridad = prioridad.compareTo(otra.prioridad);
+            return porPrioridad != 0 ? porPrioridad : Long.compare(turno, otra.turno);
+        }
+
+        @Override
+        public void run() {
+            synchronized (CargadorImagenes.this) {
+                if (interesados.isEmpty()) {
+                    enCurso.remove(clave);
+                    return;
+                }
+                iniciada = true;
+            }
+
+            ImageIcon icono = null;
+            Exception error = null;
+            try {
+                icono = cache.cargar(url, anchoMaximo, altoMaximo);
+            } catch (Exception e) {
+                error = e;
+            }
+
+            List<Solicitud> destinatarios;
+            synchronized (CargadorImagenes.this) {
+                enCurso.remove(clave);
+                destinatarios = new ArrayList<>(interesados);
+                interesados.clear();
+            }
+            ImageIcon resultado = icono;
+            Exception fallo = error;
+            SwingUtilities.invokeLater(() -> {
+                for (Solicitud solicitud : destinatarios) solicitud.entregar(resultado, fallo);
+            });
+        }
+    }
+
+    /**
+     * Solicitud de un componente sobre una descarga posiblemente compartida.
+     */
+    public final class Solicitud {
+        private final Prioridad prioridad;
+        private final Consumer<ImageIcon> alCargar;
+        private final Consumer<Exception> alFallar;
+        private Tarea tarea;
+        private volatile boolean terminada = false;
+        private Component vinculado;
+        private HierarchyListener escuchaVinculo;
+
+        private Solicitud(Prioridad prioridad, Consumer<ImageIcon> alCargar, Consumer<Exception> alFallar) {
+            this.prioridad = prioridad;
+            this.alCargar = alCargar;
+            this.alFallar = alFallar;
+        }
+
+        /** Prioridad con la que se hizo la solicitud. */
+        public Prioridad getPrioridad() { return prioridad; }
+
+        /** Indica si la solicitud ya recibió su resultado o se canceló. */
+        public boolean isTerminada() { return terminada; }
+
+        /**
+         * Cancela la solicitud: su resultado ya no se entregará. Si ninguna otra solicitud
+         * espera la misma imagen y la descarga no ha empezado, se quita de la cola.
+         */
+        public void cancelar() {
+            if (terminada) return;
+            terminada = true;
+            desvincular();
+            synchronized (CargadorImagenes.this) {
+                if (tarea == null) return;
+                tarea.interesados.remove(this);
+                if (tarea.interesados.isEmpty() && !tarea.iniciada && ejecutor.getQueue().remove(tarea)) {
+                    enCurso.remove(tarea.clave);
+                }
+            }
+        }
+
+        /**
+         * Cancela la solicitud automáticamente cuando el componente deja de estar en una ventana
+         * (por ejemplo, al cerrar el diálogo que lo contiene).
+         * @param componente Componente que mostrará la imagen.
+         * @return Esta misma solicitud.
+         */
+        public Solicitud cancelarAlQuitar(Component componente) {
+            if (terminada || componente == null) return this;
+            vinculado = componente;
+            escuchaVinculo = e -> {
+                if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !componente.isDisplayable()) {
+                    cancelar();
+                }
+            };
+            componente.addHierarchyListener(escuchaVinculo);
+            return this;
+        }
+
+        private void entregar(ImageIcon icono, Exception error) {
+            if (terminada) return;
+            terminada = true;
+            desvincular();
+            if (icono != null) {
+                if (alCargar != null) alCargar.accept(icono);
+            } else if (alFallar != null) {
+                alFallar.accept(error);
+            }
+        }
+
+        private void desvincular() {
+            Component componente = vinculado;
+            HierarchyListener escucha = escuchaVinculo;
+            if (componente != null && escucha != null) {
+                SwingUtilities.invokeLater(() -> componente.removeHierarchyListener(escucha));
+            }
+            vinculado = null;
+            escuchaVinculo = null;
+        }
+    }
+}
@@ -1,95 +1,180 @@
 package main.multiuser;
 
+import main.persistencia.ConfiguracionAlmacen;
+
 import java.io.*;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Sistema de bloqueos para sincronización multiusuario.
  * Gestiona bloqueos de archivos para evitar conflictos de escritura concurrente.
+ * <p>
+ * El bloqueo entre equipos se obtiene con {@link FileChannel#tryLock} sobre el archivo
+ * {@code <nombre>.lock}, de modo que el sistema operativo lo libera si el cliente se cae.
+ * Dentro del proceso, los hilos esperan en una cola justa por nombre. Entre intentos se
+ * espera con retroceso exponencial y variación aleatoria. Si el sistema de archivos no
+ * soporta bloqueos de rango, se usa la creación exclusiva del archivo de bloqueo y se
+ * consideran abandonados los bloqueos cuyo arrendamiento venció; mientras el bloqueo está
+ * tomado, un hilo en segundo plano renueva la marca de tiempo del archivo.
  */
 
 public class LockManager {
-    private static final String SHARED_PATH = "\\\\LABING501-06\\Users\\estudiantes\\Documents\\Compartida";
+    /** Carpeta compartida, configurable con {@code foro.compartida} (ver {@link ConfiguracionAlmacen}). */
+    private static final String SHARED_PATH = ConfiguracionAlmacen.carpetaCompartida();
     private static final int MAX_LOCK_WAIT_SECONDS = 10;
-    private static final int LOCK_RETRY_DELAY_MS = 100;
+    private static final long BACKOFF_INICIAL_MS = 5;
+    private static final long BACKOFF_MAXIMO_MS = 250;
+    /** Tiempo tras el cual un bloqueo por archivo se considera abandonado. */
+    private static final long LEASE_MS = TimeUnit.SECONDS.toMillis(30);
+    /** Cada cuánto el dueño de un bloqueo por archivo renueva su arrendamiento. */
+    private static final long RENOVACION_MS = LEASE_MS / 3;
+    /** Región bloqueada, más allá del contenido para que la información del dueño siga legible. */
+    private static final long POSICION_REGION = Long.MAX_VALUE - 1;
+    /** Rangos del histograma de esperas; el último acumula las de más de 2^30 µs */
+    private static final int RANGOS_ESPERA = 32;
+    private static final Logger logger = Logger.getLogger(LockManager.class.getName());
+
+    // Cola justa por nombre para los hilos de este proceso
+    private static final Map<String, Semaphore> colas = new ConcurrentHashMap<>();
+    // Bloqueos que este proceso tiene actualmente
+    private static final Map<String, BloqueoActivo> activos = new ConcurrentHashMap<>();
+    // Renueva los arrendamientos de los bloqueos por archivo
+    private static final ScheduledExecutorService renovaciones = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread hilo = new Thread(r, "renovacion-bloqueos");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    // Métricas de espera
+    private static final AtomicLong adquisiciones = new AtomicLong();
+    private static final AtomicLong timeouts = new AtomicLong();
+    private static final AtomicLong esperaTotalNanos = new AtomicLong();
+    private static final AtomicLong esperaMaximaNanos = new AtomicLong();
+    private static final AtomicLong bloqueosAbandonados = new AtomicLong();
+    /** Esperas por rango: la posición i cuenta las esperas menores a 2^i microsegundos */
+    private static final AtomicLongArray esperasPorRango = new AtomicLongArray(RANGOS_ESPERA);
 
     /**
      * Intenta obtener un bloqueo para un archivo específico.
-     * 
+     *
      * @param fileName Nombre del archivo a bloquear (sin extensión)
-     * @return true si se obtuvo el bloqueo, false si no se pudo
+     * @return true si se obtuvo el bloqueo, false si no se pudo en el tiempo de espera
+     * @throws UncheckedIOException Si no se pudo crear o leer el archivo de bloqueo (por ejemplo,
+     *         porque la carpeta compartida no está disponible).
      */
     public static boolean acquireLock(String fileName) {
-        String lockFileName = fileName + ".lock";
-        Path lockPath = Paths.get(SHARED_PATH, lockFileName);
-        
-        long startTime = System.currentTimeMillis();
-        long timeout = TimeUnit.SECONDS.toMillis(MAX_LOCK_WAIT_SECONDS);
-        
-        while (System.currentTimeMillis() - startTime < timeout) {
-            try {
-                // Intenta crear el archivo de bloqueo
-                Files.createFile(lockPath);
-                
-                // Escribe información del proceso que obtuvo el bloqueo
-                String lockInfo = System.getProperty("user.name") + "@" + 
-                                System.getProperty("computer.name", "unknown") + 
-                                " - " + System.currentTimeMillis();
-                Files.write(lockPath, lockInfo.getBytes());
-                
-                return true;
-            } catch (FileAlreadyExistsException e) {
-                // El archivo ya existe, alguien más tiene el bloqueo
-                try {
-                    Thread.sleep(LOCK_RETRY_DELAY_MS);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    return false;
-                }
-            } catch (IOException e) {
-                System.err.println("Error al crear bloqueo: " + e.getMessage());
+        long inicio = System.nanoTime();
+        long limite = inicio + TimeUnit.SECONDS.toNanos(MAX_LOCK_WAIT_SECONDS);
+        Semaphore cola = colas.computeIfAbsent(fileName, k -> new Semaphore(1, true));
+
+        try {
+            if (!cola.tryAcquire(limite - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                timeouts.incrementAndGet();
                 return false;
             }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
         }
-        
-        return false; // Timeout
+
+        Path lockPath = Paths.get(SHARED_PATH, fileName + ".lock");
+        long espera = BACKOFF_INICIAL_MS;
+        try {
+            while (true) {
+                BloqueoActivo bloqueo = intentarBloqueo(lockPath);
+                if (bloqueo != null) {
+                    activos.put(fileName, bloqueo);
+                    registrarEspera(System.nanoTime() - inicio);
+                    return true;
+                }
+                if (System.nanoTime() >= limite) break;
+
+                // Retroceso exponencial con variación aleatoria para no sincronizar a los clientes
+                long pausa = ThreadLocalRandom.current().nextLong(espera / 2, espera + 1);
+                pausa = Math.min(pausa, TimeUnit.NANOSECONDS.toMillis(limite - System.nanoTime()) + 1);
+                Thread.sleep(pausa);
+                espera = Math.min(espera * 2, BACKOFF_MAXIMO_MS);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            cola.release();
+            logger.log(Level.SEVERE, "Error al crear bloqueo " + lockPath, e);
+            throw new UncheckedIOException("No se pudo crear el bloqueo " + lockPath, e);
+        }
+
+        cola.release();
+        timeouts.incrementAndGet();
+        return false; // Timeout o interrupción
     }
 
     /**
      * Libera el bloqueo de un archivo específico.
-     * 
+     *
      * @param fileName Nombre del archivo a desbloquear (sin extensión)
      */
     public static void releaseLock(String fileName) {
-        String lockFileName = fileName + ".lock";
-        Path lockPath = Paths.get(SHARED_PATH, lockFileName);
-        
+        BloqueoActivo bloqueo = activos.remove(fileName);
+        if (bloqueo == null) return;
+
         try {
-            Files.deleteIfExists(lockPath);
+            bloqueo.liberar();
         } catch (IOException e) {
-            System.err.println("Error al liberar bloqueo: " + e.getMessage());
+            logger.log(Level.WARNING, "Error al liberar bloqueo " + fileName, e);
+        } finally {
+            Semaphore cola = colas.get(fileName);
+            if (cola != null) cola.release();
         }
     }
 
     /**
      * Verifica si un archivo está bloqueado.
-     * 
+     *
      * @param fileName Nombre del archivo a verificar
      * @return true si está bloqueado, false si no
      */
     public static boolean isLocked(String fileName) {
-        String lockFileName = fileName + ".lock";
-        Path lockPath = Paths.get(SHARED_PATH, lockFileName);
-        return Files.exists(lockPath);
+        if (activos.containsKey(fileName)) return true;
+        Path lockPath = Paths.get(SHARED_PATH, fileName + ".lock");
+        if (!Files.exists(lockPath)) return false;
+        try (FileChannel canal = FileChannel.open(lockPath, StandardOpenOption.WRITE)) {
+            FileLock lock = canal.tryLock(POSICION_REGION, 1, false);
+            if (lock == null) return true;
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;
+        } catch (IOException e) {
+            // Sin bloqueos de rango: solo cuenta un archivo con arrendamiento vigente
+            return !arrendamientoVencido(lockPath);
+        }
     }
 
     /**
      * Ejecuta una operación con bloqueo automático.
-     * 
+     *
      * @param fileName Nombre del archivo a bloquear
      * @param operation Operación a ejecutar
      * @return true si la operación se ejecutó correctamente
+     * @throws UncheckedIOException Si no se pudo crear o leer el archivo de bloqueo.
      */
     public static boolean executeWithLock(String fileName, Runnable operation) {
         if (acquireLock(fileName)) {
@@ -116,4 +201,207 @@ public class LockManager {
     public static boolean isSharedPathAvailable() {
         return Files.exists(Paths.get(SHARED_PATH));
     }
+
+    /**
+     * Devuelve un resumen de las métricas de espera de bloqueos de este proceso.
+     */
+    public static String getEstadisticas() {
+        long total = adquisiciones.get();
+        double promedioMs = total == 0 ? 0 : esperaTotalNanos.get() / 1e6 / total;
+        return String.format("Bloqueos: %d adquiridos, %d timeouts, %d abandonados liberados, "
+                + "espera promedio %.2f ms, espera máxima %.2f ms",
+                total, timeouts.get(), bloqueosAbandonados.get(), promedioMs, esperaMaximaNanos.get() / 1e6);
+    }
+
+    /** Cantidad de bloqueos adquiridos por este proceso. */
+    public static long getAdquisiciones() { return adquisiciones.get(); }
+
+    /** Cantidad de intentos que agotaron el tiempo de espera. */
+    public static long getTimeouts() { return timeouts.get(); }
+
+    /** Tiempo total esperado por bloqueos adquiridos, en nanosegundos. */
+    public static long getEsperaTotalNanos() { return esperaTotalNanos.get(); }
+
+    /** Mayor tiempo esperado por un bloqueo, en nanosegundos. */
+    public static long getEsperaMaximaNanos() { return esperaMaximaNanos.get(); }
+
+    /**
+     * Histograma de las esperas de los bloqueos adquiridos, para calcular percentiles.
+     * @return Copia de los contadores: la posición i cuenta las esperas menores a 2^i microsegundos
+     *         (y no contadas en posiciones anteriores).
+     */
+    public static long[] getHistogramaEspera() {
+        long[] copia = new long[RANGOS_ESPERA];
+        for (int i = 0; i < RANGOS_ESPERA; i++) copia[i] = esperasPorRango.get(i);
+        return copia;
+    }
+
+    /**
+     * Hace un intento no bloqueante de obtener el bloqueo entre procesos.
+     * @return El bloqueo obtenido, o null si otro cliente lo tiene.
+     */
+    private static BloqueoActivo intentarBloqueo(Path lockPath) throws IOException {
+        FileChannel canal = FileChannel.open(lockPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = canal.tryLock(POSICION_REGION, 1, false);
+        } catch (OverlappingFileLockException e) {
+            lock = null; // Otro hilo de este proceso lo tiene (no debería pasar por la cola)
+        } catch (IOException e) {
+            canal.close();
+            return intentarBloqueoPorArchivo(lockPath);
+        }
+        if (lock == null) {
+            canal.close();
+            return null;
+        }
+
+        // Escribe información del proceso que obtuvo el bloqueo
+        canal.truncate(0);
+        canal.write(ByteBuffer.wrap(informacionDueno().getBytes(StandardCharsets.UTF_8)), 0);
+        return new BloqueoActivo(canal, lock, null);
+    }
+
+    /**
+     * Alternativa para sistemas de archivos sin bloqueos de rango: creación exclusiva del
+     * archivo de bloqueo, eliminando antes los bloqueos abandonados con arrendamiento vencido.
+     */
+    private static BloqueoActivo intentarBloqueoPorArchivo(Path lockPath) throws IOException {
+        if (arrendamientoVencido(lockPath)) {
+            logger.warning("Liberando bloqueo abandonado: " + leerDueno(lockPath));
+            Files.deleteIfExists(lockPath);
+            bloqueosAbandonados.incrementAndGet();
+        }
+        try {
+            Files.createFile(lockPath);
+        } catch (FileAlreadyExistsException e) {
+            return null;
+        }
+        String dueno = informacionDueno();
+        Files.write(lockPath, dueno.getBytes(StandardCharsets.UTF_8));
+        BloqueoActivo bloqueo = new BloqueoActivo(null, null, lockPath);
+        bloqueo.contenido = dueno;
+        bloqueo.renovacion = renovaciones.scheduleWithFixedDelay(bloqueo::renovar, RENOVACION_MS, RENOVACION_MS, TimeUnit.MILLISECONDS);
+        return bloqueo;
+    }
+
+    /**
+     * Indica si la marca de tiempo escrita por el dueño del bloqueo es más antigua que el arrendamiento.
+     */
+    private static boolean arrendamientoVencido(Path lockPath) {
+        String dueno = leerDueno(lockPath);
+        int separador = dueno.lastIndexOf(" - ");
+        if (separador < 0) return false;
+        try {
+            long marca = Long.parseLong(dueno.substring(separador + 3).trim());
+            return System.currentTimeMillis() - marca > LEASE_MS;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String leerDueno(Path lockPath) {
+        try {
+            return new String(Files.readAllBytes(lockPath), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static String informacionDueno() {
+        return System.getProperty("user.name") + "@" + nombreEquipo() + " - " + System.currentTimeMillis();
+    }
+
+    private static String nombreEquipo() {
+        String nombre = System.getProperty("computer.name", System.getenv("COMPUTERNAME"));
+        if (nombre != null) return nombre;
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    private static void registrarEspera(long nanos) {
+        adquisiciones.incrementAndGet();
+        esperaTotalNanos.addAndGet(nanos);
+        esperaMaximaNanos.accumulateAndGet(nanos, Math::max);
+        int rango = Long.SIZE - Long.numberOfLeadingZeros(nanos / 1000);
+        esperasPorRango.incrementAndGet(Math.min(rango, RANGOS_ESPERA - 1));
+    }
+
+    /**
+     * Bloqueo en poder de este proceso: un canal con bloqueo de rango o, en el modo
+     * alternativo, el archivo de bloqueo creado de forma exclusiva.
+     */
+    private static final class BloqueoActivo {
+        private final FileChannel canal;
+        private final FileLock lock;
+        private final Path archivoCreado;
+        // Solo en el modo alternativo; protegidos por this
+        private String contenido;
+        private ScheduledFuture<?> renovacion;
+        private boolean perdido = false;
+        private boolean liberado = false;
+
+        BloqueoActivo(FileChannel canal, FileLock lock, Path archivoCreado) {
+            this.canal = canal;
+            this.lock = lock;
+            this.archivoCreado = archivoCreado;
+        }
+
+        /**
+         * Reescribe la marca de tiempo del archivo de bloqueo si sigue siendo el que escribió
+         * este proceso. Si otro cliente lo reemplazó (porque el arrendamiento venció, por ejemplo
+         * tras una pausa larga de este proceso), el bloqueo se da por perdido.
+         */
+        synchronized void renovar() {
+            if (liberado || perdido) return;
+            try {
+                String actual = new String(Files.readAllBytes(archivoCreado), StandardCharsets.UTF_8);
+                if (!actual.equals(contenido)) {
+                    perdido = true;
+                    renovacion.cancel(false);
+                    logger.severe("Se perdió el bloqueo " + archivoCreado + "; ahora lo tiene " + actual);
+                    return;
+                }
+                String nuevo = informacionDueno();
+                // Sin CREATE: nunca se vuelve a crear un archivo que otro cliente borró
+                Files.write(archivoCreado, nuevo.getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                contenido = nuevo;
+            } catch (NoSuchFileException e) {
+                perdido = true;
+                renovacion.cancel(false);
+                logger.severe("Se perdió el bloqueo " + archivoCreado + ": otro cliente borró el archivo");
+            } catch (IOException e) {
+                // Se reintenta en la próxima renovación, antes de que venza el arrendamiento
+                logger.log(Level.WARNING, "No se pudo renovar el bloqueo " + archivoCreado, e);
+            }
+        }
+
+        void liberar() throws IOException {
+            if (archivoCreado != null) {
+                synchronized (this) {
+                    liberado = true;
+                    renovacion.cancel(false);
+                    if (!perdido && !contenido.equals(leerDueno(archivoCreado))) {
+                        perdido = true;
+                        logger.severe("Se perdió el bloqueo " + archivoCreado + " antes de liberarlo");
+                    }
+                    // Un bloqueo perdido ya es de otro cliente: su archivo no se borra
+                    if (!perdido) Files.deleteIfExists(archivoCreado);
+                }
+                return;
+            }
+            // El archivo se conserva: borrarlo mientras otro cliente lo tiene abierto rompería la exclusión
+            try {
+                canal.truncate(0);
+                lock.release();
+            } finally {
+                canal.close();
+            }
+        }
+    }
 }
@@ -8,43 +8,65 @@ import java.util.concurrent.TimeUnit;
 /**
  * Servicio de sincronización que monitorea cambios en archivos compartidos
  * y notifica a los componentes cuando hay actualizaciones.
+ * <p>
+ * Los cambios se detectan con un {@link WatchService} sobre el directorio compartido.
+ * Si el sistema de archivos no ofrece notificaciones, se revisan las fechas de
+ * modificación cada 2 segundos. Con notificaciones activas se mantiene además una
+ * revisión de seguridad poco frecuente, porque algunos recursos de red no notifican
+ * los cambios hechos desde otros equipos. Ninguna revisión se hace en el hilo de quien lee.
  */
 
 public class SyncService {
+    private static final String ARCHIVO_IDEAS = "ideas.properties";
+    /** Fragmentos del feed de cambios de ideas: ideas.feed, ideas-1.feed, ... */
+    private static final String PATRON_FEED_IDEAS = "ideas*.feed";
+    private static final String ARCHIVO_USUARIOS = "usuarios.dat";
+    private static final long INTERVALO_SONDEO_SEGUNDOS = 2;
+    private static final long INTERVALO_SEGURIDAD_SEGUNDOS = 30;
+
     private static SyncService instance;
     private ScheduledExecutorService scheduler;
-    private boolean isRunning = false;
-    
+    private volatile boolean isRunning = false;
+    private WatchService watchService;
+
     // Listeners para notificar cambios
     private Runnable onIdeasChanged;
     private Runnable onUsersChanged;
-    
+
     // Timestamps para detectar cambios
     private long lastIdeasModified = 0;
     private long lastUsersModified = 0;
-    
+
     private SyncService() {
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "sync-sondeo");
+            hilo.setDaemon(true);
+            return hilo;
+        });
     }
-    
+
     public static synchronized SyncService getInstance() {
         if (instance == null) {
             instance = new SyncService();
         }
         return instance;
     }
-    
+
     /**
      * Inicia el servicio de sincronización.
      */
     public void start() {
         if (!isRunning) {
             isRunning = true;
-            // Revisa cambios cada 2 segundos
-            scheduler.scheduleAtFixedRate(this::checkForChanges, 0, 2, TimeUnit.SECONDS);
+            if (iniciarVigilancia()) {
+                scheduler.scheduleWithFixedDelay(this::checkForChanges, 0, INTERVALO_SEGURIDAD_SEGUNDOS, TimeUnit.SECONDS);
+            } else {
+                // Sin notificaciones nativas: revisa cambios cada 2 segundos
+                scheduler.scheduleAtFixedRate(this::checkForChanges, 0, INTERVALO_SONDEO_SEGUNDOS, TimeUnit.SECONDS);
+            }
         }
     }
-    
+
     /**
      * Detiene el servicio de sincronización.
      */
@@ -52,32 +74,104 @@ public class SyncService {
         if (isRunning) {
             isRunning = false;
             scheduler.shutdown();
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    System.err.println("Error cerrando vigilancia: " + e.getMessage());
+                }
+            }
         }
     }
-    
+
     /**
      * Establece el listener para cambios en ideas.
      */
     public void setOnIdeasChanged(Runnable listener) {
         this.onIdeasChanged = listener;
     }
-    
+
     /**
      * Establece el listener para cambios en usuarios.
      */
     public void setOnUsersChanged(Runnable listener) {
         this.onUsersChanged = listener;
     }
-    
+
+    /**
+     * Indica si los cambios se detectan con notificaciones del sistema de archivos.
+     */
+    public boolean isUsandoNotificaciones() {
+        return watchService != null;
+    }
+
+    /**
+     * Registra el directorio compartido en un {@link WatchService} e inicia el hilo que atiende los eventos.
+     * @return false si el sistema de archivos no soporta notificaciones.
+     */
+    private boolean iniciarVigilancia() {
+        try {
+            Path directorio = Paths.get(LockManager.getSharedPath());
+            WatchService servicio = directorio.getFileSystem().newWatchService();
+            directorio.register(servicio, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = servicio;
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Vigilancia no disponible, se usará sondeo: " + e.getMessage());
+            return false;
+        }
+
+        Thread hilo = new Thread(this::atenderEventos, "sync-vigilancia");
+        hilo.setDaemon(true);
+        hilo.start();
+        return true;
+    }
+
+    /**
+     * Bucle del hilo de vigilancia: despacha los eventos de los archivos compartidos.
+     */
+    private void atenderEventos() {
+        while (isRunning) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            boolean ideas = false;
+            boolean usuarios = false;
+            for (WatchEvent<?> evento : key.pollEvents()) {
+                if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    ideas = true;
+                    usuarios = true;
+                    continue;
+                }
+                String nombre = evento.context().toString();
+                if (nombre.equals(ARCHIVO_IDEAS) || esFeedIdeas(nombre)) ideas = true;
+                else if (nombre.equals(ARCHIVO_USUARIOS)) usuarios = true;
+            }
+            // Aplicar el feed es barato e idempotente: cada evento de ideas se notifica sin
+            // comparar fechas, que con resolución de milisegundos podrían ocultar un cambio
+            if (ideas) notificarIdeas();
+            if (usuarios) checkForChanges();
+            if (!key.reset()) return; // El directorio ya no es accesible
+        }
+    }
+
     /**
      * Verifica si hay cambios en los archivos compartidos.
+     * Las fechas de modificación evitan notificar dos veces el mismo cambio.
      */
-    private void checkForChanges() {
+    private synchronized void checkForChanges() {
         try {
-            // Verificar cambios en ideas
-            Path ideasPath = Paths.get(LockManager.getSharedPath(), "ideas.dat");
-            if (Files.exists(ideasPath)) {
-                long currentIdeasModified = Files.getLastModifiedTime(ideasPath).toMillis();
+            // Verificar cambios en ideas (instantánea o feed de cambios)
+            Path directorio = Paths.get(LockManager.getSharedPath());
+            long currentIdeasModified = ultimaModificacion(directorio.resolve(ARCHIVO_IDEAS));
+            if (Files.isDirectory(directorio)) {
+                try (DirectoryStream<Path> feeds = Files.newDirectoryStream(directorio, PATRON_FEED_IDEAS)) {
+                    for (Path feed : feeds) currentIdeasModified = Math.max(currentIdeasModified, ultimaModificacion(feed));
+                }
+            }
+            if (currentIdeasModified > 0) {
                 if (currentIdeasModified > lastIdeasModified) {
                     lastIdeasModified = currentIdeasModified;
                     if (onIdeasChanged != null) {
@@ -85,9 +179,9 @@ public class SyncService {
                     }
                 }
             }
-            
+
             // Verificar cambios en usuarios
-            Path usersPath = Paths.get(LockManager.getSharedPath(), "usuarios.dat");
+            Path usersPath = Paths.get(LockManager.getSharedPath(), ARCHIVO_USUARIOS);
             if (Files.exists(usersPath)) {
                 long currentUsersModified = Files.getLastModifiedTime(usersPath).toMillis();
                 if (currentUsersModified > lastUsersModified) {
@@ -101,11 +195,25 @@ public class SyncService {
             System.err.println("Error verificando cambios: " + e.getMessage());
         }
     }
-    
+
+    private synchronized void notificarIdeas() {
+        if (onIdeasChanged != null) {
+            onIdeasChanged.run();
+        }
+    }
+
+    private static boolean esFeedIdeas(String nombre) {
+        return nombre.startsWith("ideas") && nombre.endsWith(".feed");
+    }
+
+    private static long ultimaModificacion(Path path) throws IOException {
+        return Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : 0;
+    }
+
     /**
-     * Fuerza una actualización inmediata.
+     * Solicita una revisión inmediata en segundo plano; no bloquea a quien la llama.
      */
     public void forceUpdate() {
-        checkForChanges();
+        if (isRunning) scheduler.execute(this::checkForChanges);
     }
 }
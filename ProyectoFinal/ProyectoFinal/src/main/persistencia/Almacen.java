@@ -0,0 +1,100 @@
+package main.persistencia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * Almacén de entradas con nombre ({@code ideas.dat}, {@code ideas.log}, {@code usuarios.dat}...)
+ * donde los servicios guardan sus datos. Ofrece las mismas operaciones que los servicios usaban
+ * sobre archivos: reemplazo atómico conservando la generación anterior, con o sin suma de
+ * verificación, anexado al final y recorte.
+ * <p>
+ * {@link ConfiguracionAlmacen} elige la implementación: {@link AlmacenArchivos} (un archivo por
+ * entrada en un directorio local o en la carpeta compartida) o {@link AlmacenEmbebido} (todas las
+ * entradas en un único archivo). Las implementaciones son seguras para hilos, pero cada entrada
+ * debe tener un solo proceso escritor.
+ */
+public interface Almacen {
+
+    /**
+     * Describe la ubicación del almacén, para mensajes de error.
+     */
+    String descripcion();
+
+    /**
+     * Indica si la entrada existe (la generación actual, no la anterior).
+     */
+    boolean existe(String nombre);
+
+    /**
+     * Longitud de la generación actual, o 0 si la entrada no existe.
+     */
+    long longitud(String nombre) throws IOException;
+
+    /**
+     * Lee la generación actual tal como está guardada.
+     * @throws NoSuchFileException Si la entrada no existe.
+     */
+    byte[] leer(String nombre) throws IOException;
+
+    /**
+     * Lee la generación anterior, conservada por el último reemplazo.
+     * @return El contenido, o null si no hay generación anterior.
+     */
+    byte[] leerAnterior(String nombre) throws IOException;
+
+    /**
+     * Indica si existe una generación anterior de la entrada.
+     */
+    boolean tieneAnterior(String nombre);
+
+    /**
+     * Lee y verifica una entrada escrita con {@link #escribirVerificado}; si la generación actual
+     * está dañada, recurre a la anterior.
+     * @throws NoSuchFileException Si no existe ninguna generación.
+     * @throws IOException Si ninguna generación es válida.
+     */
+    EscrituraAtomica.Lectura leerVerificado(String nombre) throws IOException;
+
+    /**
+     * Mapea en memoria la generación actual, tal como la guardó {@link #escribirVerificado}
+     * (con su pie de verificación), para leerla sin copiarla.
+     * @return El contenido de solo lectura, o null si la entrada no existe o el almacén no permite mapear.
+     */
+    ByteBuffer mapear(String nombre) throws IOException;
+
+    /**
+     * Reemplaza la entrada de forma atómica con suma de verificación, conservando la generación anterior.
+     */
+    void escribirVerificado(String nombre, byte[] contenido) throws IOException;
+
+    /**
+     * Reemplaza la entrada de forma atómica sin suma de verificación (para formatos con su propia
+     * verificación), conservando la generación anterior.
+     */
+    void reemplazar(String nombre, byte[] contenido) throws IOException;
+
+    /**
+     * Anexa datos al final de la generación actual, creándola si no existe. No se fuerza a disco:
+     * tras un corte puede quedar un registro incompleto al final, que el formato debe tolerar.
+     */
+    void anexar(String nombre, byte[] datos) throws IOException;
+
+    /**
+     * Recorta la generación actual a la longitud indicada (0 la vacía).
+     */
+    void recortar(String nombre, long longitud) throws IOException;
+
+    /**
+     * Aparta una entrada dañada como {@code <nombre>.danado-<fecha>} para que la siguiente
+     * escritura no la convierta en la generación anterior.
+     * @return El nombre con que se conservó, o null si la entrada no existía.
+     */
+    String apartar(String nombre) throws IOException;
+
+    /**
+     * Borra la entrada y su generación anterior, si existen.
+     */
+    void borrar(String nombre) throws IOException;
+}
@@ -0,0 +1,160 @@
+package main.persistencia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Almacén con un archivo por entrada dentro de un directorio: el directorio local de datos o la
+ * carpeta compartida. Los reemplazos usan {@link EscrituraAtomica}, así que la generación
+ * anterior queda como {@code <nombre>.bak} junto al archivo.
+ * <p>
+ * Las entradas no se coordinan entre procesos. En un directorio que otros equipos pueden usar
+ * (la carpeta compartida) se abre con {@link #exclusivo(Path)}, que impide que dos procesos lo
+ * usen a la vez.
+ */
+public final class AlmacenArchivos implements Almacen {
+    private static final String ARCHIVO_BLOQUEO = "foro.bloqueo";
+
+    private final Path directorio;
+    // Se conserva mientras viva el almacén; el bloqueo se libera al terminar el proceso
+    private FileLock bloqueo;
+
+    /**
+     * @param directorio Directorio de los archivos; se crea al escribir si no existe.
+     */
+    public AlmacenArchivos(Path directorio) {
+        this.directorio = directorio;
+    }
+
+    /**
+     * Abre un almacén del que este proceso es el único escritor: bloquea {@code foro.bloqueo}
+     * en el directorio hasta que termine el proceso.
+     * @throws IOException Si otro proceso (de este u otro equipo) ya usa el directorio.
+     */
+    public static AlmacenArchivos exclusivo(Path directorio) throws IOException {
+        Files.createDirectories(directorio);
+        Path archivo = directorio.resolve(ARCHIVO_BLOQUEO);
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock bloqueo;
+        try {
+            bloqueo = canal.tryLock();
+        } catch (OverlappingFileLockException e) {
+            bloqueo = null;
+        }
+        if (bloqueo == null) {
+            canal.close();
+            throw new IOException(directorio + " ya lo usa otro proceso como almacén (" + archivo + " está bloqueado)");
+        }
+        AlmacenArchivos almacen = new AlmacenArchivos(directorio);
+        almacen.bloqueo = bloqueo;
+        return almacen;
+    }
+
+    /**
+     * Ruta del archivo de una entrada.
+     */
+    public Path ruta(String nombre) {
+        return directorio.resolve(nombre);
+    }
+
+    @Override
+    public String descripcion() {
+        return bloqueo == null ? directorio.toString() : directorio + " (exclusivo)";
+    }
+
+    @Override
+    public boolean existe(String nombre) {
+        return Files.exists(ruta(nombre));
+    }
+
+    @Override
+    public long longitud(String nombre) throws IOException {
+        Path ruta = ruta(nombre);
+        return Files.exists(ruta) ? Files.size(ruta) : 0;
+    }
+
+    @Override
+    public byte[] leer(String nombre) throws IOException {
+        return Files.readAllBytes(ruta(nombre));
+    }
+
+    @Override
+    public byte[] leerAnterior(String nombre) throws IOException {
+        Path respaldo = EscrituraAtomica.respaldo(ruta(nombre));
+        try {
+            return Files.readAllBytes(respaldo);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean tieneAnterior(String nombre) {
+        return Files.exists(EscrituraAtomica.respaldo(ruta(nombre)));
+    }
+
+    @Override
+    public EscrituraAtomica.Lectura leerVerificado(String nombre) throws IOException {
+        return EscrituraAtomica.leer(ruta(nombre));
+    }
+
+    @Override
+    public ByteBuffer mapear(String nombre) throws IOException {
+        Path ruta = ruta(nombre);
+        if (!Files.exists(ruta)) return null;
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            return canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+    }
+
+    @Override
+    public void escribirVerificado(String nombre, byte[] contenido) throws IOException {
+        Files.createDirectories(directorio);
+        EscrituraAtomica.escribir(ruta(nombre), contenido);
+    }
+
+    @Override
+    public void reemplazar(String nombre, byte[] contenido) throws IOException {
+        Files.createDirectories(directorio);
+        EscrituraAtomica.reemplazar(ruta(nombre), contenido);
+    }
+
+    @Override
+    public void anexar(String nombre, byte[] datos) throws IOException {
+        if (datos.length == 0) return;
+        Files.createDirectories(directorio);
+        try (FileChannel canal = FileChannel.open(ruta(nombre),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(datos);
+            while (buffer.hasRemaining()) canal.write(buffer);
+        }
+    }
+
+    @Override
+    public void recortar(String nombre, long longitud) throws IOException {
+        Path ruta = ruta(nombre);
+        if (!Files.exists(ruta)) return;
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.WRITE)) {
+            canal.truncate(longitud);
+        }
+    }
+
+    @Override
+    public String apartar(String nombre) throws IOException {
+        Path apartado = EscrituraAtomica.apartar(ruta(nombre));
+        return apartado == null ? null : apartado.getFileName().toString();
+    }
+
+    @Override
+    public void borrar(String nombre) throws IOException {
+        Files.deleteIfExists(ruta(nombre));
+        Files.deleteIfExists(EscrituraAtomica.respaldo(ruta(nombre)));
+    }
+}
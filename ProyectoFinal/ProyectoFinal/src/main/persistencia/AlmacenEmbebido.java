@@ -0,0 +1,450 @@
+package main.persistencia;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Base de datos embebida de un solo archivo ({@code foro.db}) con todas las entradas del almacén.
+ * <p>
+ * El archivo es un registro de solo anexado: cada operación (reemplazar, anexar, recortar,
+ * borrar) se agrega al final como {@code [int longitud][byte operación][short nombre][nombre][datos][int CRC32C]}
+ * y un índice en memoria guarda, para cada entrada, los tramos del archivo que forman su
+ * generación actual y la anterior. Al abrir se recorren los registros para reconstruir el índice:
+ * un registro incompleto al final (corte durante la escritura) se descarta, y uno con la suma de
+ * verificación incorrecta se considera daño: se conserva una copia del archivo como
+ * {@code foro.db.danado-<fecha>} y se descarta desde ahí. Los reemplazos se fuerzan a disco, así
+ * que son atómicos igual que con {@link EscrituraAtomica}; los anexados no.
+ * <p>
+ * Cuando los bytes sin uso superan a los vivos (y a {@link #MIN_BYTES_MUERTOS}), el archivo se
+ * reescribe con solo las generaciones vigentes, en un temporal que luego lo reemplaza.
+ * <p>
+ * El archivo se bloquea con {@link FileChannel#tryLock}: solo un proceso puede abrirlo, por eso
+ * este almacén es para datos locales y no para la carpeta compartida. No permite mapear entradas,
+ * porque su contenido puede quedar repartido en varios tramos.
+ */
+public final class AlmacenEmbebido implements Almacen {
+    private static final byte[] CABECERA = "FORODB1\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte OP_REEMPLAZAR = 1;
+    private static final byte OP_ANEXAR = 2;
+    private static final byte OP_RECORTAR = 3;
+    private static final byte OP_BORRAR = 4;
+    /** Quita la generación actual y conserva la anterior, como un archivo apartado junto a su .bak */
+    private static final byte OP_RETIRAR = 5;
+    private static final int MAX_LONGITUD_REGISTRO = Integer.MAX_VALUE - 64;
+    static final long MIN_BYTES_MUERTOS = 8L * 1024 * 1024;
+
+    private final Path archivo;
+    private FileChannel canal;
+    private FileLock bloqueo;
+    private long tamano;
+    private long bytesVivos;
+    private final Map<String, Entrada> entradas = new HashMap<>();
+
+    /**
+     * Abre la base, creándola si no existe.
+     * @throws IOException Si el archivo no es una base del foro o ya está abierto.
+     */
+    public AlmacenEmbebido(Path archivo) throws IOException {
+        this.archivo = archivo;
+        Path directorio = archivo.toAbsolutePath().getParent();
+        if (directorio != null) Files.createDirectories(directorio);
+        abrir();
+    }
+
+    /**
+     * Tramos del archivo que forman una generación de una entrada.
+     */
+    private static final class Generacion {
+        final List<long[]> tramos = new ArrayList<>();
+        long longitud;
+
+        void agregar(long posicion, long longitud) {
+            if (longitud == 0) return;
+            tramos.add(new long[]{posicion, longitud});
+            this.longitud += longitud;
+        }
+
+        void recortar(long nuevaLongitud) {
+            long restante = nuevaLongitud;
+            List<long[]> conservados = new ArrayList<>();
+            for (long[] tramo : tramos) {
+                if (restante <= 0) break;
+                long parte = Math.min(tramo[1], restante);
+                conservados.add(new long[]{tramo[0], parte});
+                restante -= parte;
+            }
+            tramos.clear();
+            tramos.addAll(conservados);
+            longitud = Math.min(longitud, nuevaLongitud);
+        }
+    }
+
+    private static final class Entrada {
+        Generacion actual;
+        Generacion anterior;
+    }
+
+    @Override
+    public String descripcion() {
+        return archivo.toString();
+    }
+
+    @Override
+    public synchronized boolean existe(String nombre) {
+        Entrada entrada = entradas.get(nombre);
+        return entrada != null && entrada.actual != null;
+    }
+
+    @Override
+    public synchronized long longitud(String nombre) {
+        Entrada entrada = entradas.get(nombre);
+        return entrada == null || entrada.actual == null ? 0 : entrada.actual.longitud;
+    }
+
+    @Override
+    public synchronized byte[] leer(String nombre) throws IOException {
+        Entrada entrada = entradas.get(nombre);
+        if (entrada == null || entrada.actual == null) throw new NoSuchFileException(nombre);
+        return leer(entrada.actual);
+    }
+
+    @Override
+    public synchronized byte[] leerAnterior(String nombre) throws IOException {
+        Entrada entrada = entradas.get(nombre);
+        return entrada == null || entrada.anterior == null ? null : leer(entrada.anterior);
+    }
+
+    @Override
+    public synchronized boolean tieneAnterior(String nombre) {
+        Entrada entrada = entradas.get(nombre);
+        return entrada != null && entrada.anterior != null;
+    }
+
+    /**
+     * Cada registro ya tiene su suma de verificación: una generación actual dañada no llega al
+     * índice, así que solo se recurre a la anterior si la actual no existe.
+     */
+    @Override
+    public synchronized EscrituraAtomica.Lectura leerVerificado(String nombre) throws IOException {
+        Entrada entrada = entradas.get(nombre);
+        if (entrada != null && entrada.actual != null) return new EscrituraAtomica.Lectura(leer(entrada.actual), false);
+        if (entrada != null && entrada.anterior != null) return new EscrituraAtomica.Lectura(leer(entrada.anterior), true);
+        throw new NoSuchFileException(nombre);
+    }
+
+    @Override
+    public ByteBuffer mapear(String nombre) {
+        return null;
+    }
+
+    @Override
+    public void escribirVerificado(String nombre, byte[] contenido) throws IOException {
+        reemplazar(nombre, contenido);
+    }
+
+    @Override
+    public synchronized void reemplazar(String nombre, byte[] contenido) throws IOException {
+        anexarRegistro(OP_REEMPLAZAR, nombre, contenido, true);
+    }
+
+    @Override
+    public synchronized void anexar(String nombre, byte[] datos) throws IOException {
+        if (datos.length == 0) return;
+        anexarRegistro(OP_ANEXAR, nombre, datos, false);
+    }
+
+    @Override
+    public synchronized void recortar(String nombre, long longitud) throws IOException {
+        if (longitud(nombre) <= longitud) return;
+        anexarRegistro(OP_RECORTAR, nombre, ByteBuffer.allocate(Long.BYTES).putLong(longitud).array(), true);
+    }
+
+    @Override
+    public synchronized String apartar(String nombre) throws IOException {
+        if (!existe(nombre)) return null;
+        String sufijo = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        String apartado = nombre + ".danado-" + sufijo;
+        anexarRegistro(OP_REEMPLAZAR, apartado, leer(nombre), true);
+        anexarRegistro(OP_RETIRAR, nombre, new byte[0], true);
+        return apartado;
+    }
+
+    @Override
+    public synchronized void borrar(String nombre) throws IOException {
+        if (!entradas.containsKey(nombre)) return;
+        anexarRegistro(OP_BORRAR, nombre, new byte[0], true);
+    }
+
+    /**
+     * Cierra el archivo y libera su bloqueo. Las operaciones posteriores fallan.
+     */
+    public synchronized void cerrar() throws IOException {
+        if (canal != null) canal.close();
+        canal = null;
+    }
+
+    private void abrir() throws IOException {
+        canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            bloqueo = canal.tryLock();
+        } catch (OverlappingFileLockException e) {
+            bloqueo = null;
+        }
+        if (bloqueo == null) {
+            canal.close();
+            throw new IOException(archivo + " ya está abierto en este u otro proceso");
+        }
+        entradas.clear();
+        bytesVivos = 0;
+        tamano = canal.size();
+        if (tamano == 0) {
+            escribirEn(ByteBuffer.wrap(CABECERA), 0);
+            canal.force(true);
+            tamano = CABECERA.length;
+            return;
+        }
+        byte[] cabecera = new byte[CABECERA.length];
+        if (tamano < cabecera.length || leerEn(cabecera, 0) < cabecera.length || !Arrays.equals(cabecera, CABECERA)) {
+            canal.close();
+            throw new IOException(archivo + " no es una base de datos del foro");
+        }
+        recorrer();
+    }
+
+    /**
+     * Reconstruye el índice recorriendo los registros y descarta lo que siga al último válido.
+     */
+    private void recorrer() throws IOException {
+        long posicion = CABECERA.length;
+        boolean danado = false;
+        byte[] longitudRegistro = new byte[Integer.BYTES];
+        while (posicion + Integer.BYTES <= tamano) {
+            leerEn(longitudRegistro, posicion);
+            int longitud = ByteBuffer.wrap(longitudRegistro).getInt();
+            if (longitud == 0) break; // Espacio reservado que el corte dejó sin escribir
+            if (longitud < 3 || longitud > MAX_LONGITUD_REGISTRO) {
+                danado = true;
+                break;
+            }
+            long fin = posicion + Integer.BYTES + longitud + Integer.BYTES;
+            if (fin > tamano) break; // Registro incompleto por un corte
+            byte[] cuerpo = new byte[longitud + Integer.BYTES];
+            leerEn(cuerpo, posicion + Integer.BYTES);
+            ByteBuffer buffer = ByteBuffer.wrap(cuerpo);
+            CRC32C crc = new CRC32C();
+            crc.update(cuerpo, 0, longitud);
+            if ((int) crc.getValue() != buffer.getInt(longitud)) {
+                danado = true;
+                break;
+            }
+            aplicar(buffer, posicion + Integer.BYTES, longitud);
+            posicion = fin;
+        }
+        if (posicion < tamano) {
+            if (danado) {
+                String sufijo = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+                Path copia = archivo.resolveSibling(archivo.getFileName() + ".danado-" + sufijo);
+                Files.copy(archivo, copia, StandardCopyOption.REPLACE_EXISTING);
+                System.err.println(archivo + " tiene un registro dañado en la posición " + posicion + "; se conservó una copia como " + copia.getFileName());
+            }
+            canal.truncate(posicion);
+            tamano = posicion;
+        }
+    }
+
+    /**
+     * Aplica al índice un registro ya verificado.
+     * @param cuerpo Cuerpo del registro, desde la operación.
+     * @param inicio Posición del cuerpo en el archivo.
+     */
+    private void aplicar(ByteBuffer cuerpo, long inicio, int longitud) {
+        byte operacion = cuerpo.get(0);
+        int longitudNombre = cuerpo.getShort(1) & 0xFFFF;
+        String nombre = new String(cuerpo.array(), 3, longitudNombre, StandardCharsets.UTF_8);
+        int inicioDatos = 3 + longitudNombre;
+        long posicionDatos = inicio + inicioDatos;
+        int longitudDatos = longitud - inicioDatos;
+
+        Entrada entrada = entradas.computeIfAbsent(nombre, n -> new Entrada());
+        bytesVivos -= longitudViva(entrada);
+        switch (operacion) {
+            case OP_REEMPLAZAR:
+                entrada.anterior = entrada.actual;
+                entrada.actual = new Generacion();
+                entrada.actual.agregar(posicionDatos, longitudDatos);
+                break;
+            case OP_ANEXAR:
+                if (entrada.actual == null) entrada.actual = new Generacion();
+                entrada.actual.agregar(posicionDatos, longitudDatos);
+                break;
+            case OP_RECORTAR:
+                if (entrada.actual != null) entrada.actual.recortar(cuerpo.getLong(inicioDatos));
+                break;
+            case OP_BORRAR:
+                entrada.actual = null;
+                entrada.anterior = null;
+                break;
+            case OP_RETIRAR:
+                entrada.actual = null;
+                break;
+            default:
+                break; // Operación de una versión posterior: se ignora
+        }
+        if (entrada.actual == null && entrada.anterior == null) {
+            entradas.remove(nombre);
+        } else {
+            bytesVivos += longitudViva(entrada);
+        }
+    }
+
+    private static long longitudViva(Entrada entrada) {
+        return (entrada.actual == null ? 0 : entrada.actual.longitud)
+                + (entrada.anterior == null ? 0 : entrada.anterior.longitud);
+    }
+
+    private void anexarRegistro(byte operacion, String nombre, byte[] datos, boolean forzar) throws IOException {
+        byte[] bytesNombre = nombre.getBytes(StandardCharsets.UTF_8);
+        if (bytesNombre.length > 0xFFFF) throw new IOException("Nombre de entrada demasiado largo: " + nombre);
+        long longitud = 3L + bytesNombre.length + datos.length;
+        if (longitud > MAX_LONGITUD_REGISTRO) throw new IOException("Contenido demasiado grande para " + nombre);
+
+        ByteBuffer encabezado = ByteBuffer.allocate(Integer.BYTES + 3 + bytesNombre.length);
+        encabezado.putInt((int) longitud).put(operacion).putShort((short) bytesNombre.length).put(bytesNombre).flip();
+        CRC32C crc = new CRC32C();
+        crc.update(encabezado.array(), Integer.BYTES, encabezado.limit() - Integer.BYTES);
+        crc.update(datos);
+        ByteBuffer pie = ByteBuffer.allocate(Integer.BYTES).putInt(0, (int) crc.getValue());
+
+        long inicio = tamano;
+        canal.position(inicio);
+        for (ByteBuffer parte : new ByteBuffer[]{encabezado, ByteBuffer.wrap(datos), pie}) {
+            while (parte.hasRemaining()) canal.write(parte);
+        }
+        if (forzar) canal.force(false);
+        tamano = canal.position();
+        aplicar(ByteBuffer.wrap(cuerpoParaIndice(operacion, bytesNombre, datos)), inicio + Integer.BYTES, (int) longitud);
+        compactarSiConviene();
+    }
+
+    /**
+     * Cuerpo del registro para el índice; de los datos solo se necesitan los de {@link #OP_RECORTAR}.
+     */
+    private static byte[] cuerpoParaIndice(byte operacion, byte[] bytesNombre, byte[] datos) {
+        byte[] cuerpo = new byte[3 + bytesNombre.length + (operacion == OP_RECORTAR ? datos.length : 0)];
+        ByteBuffer buffer = ByteBuffer.wrap(cuerpo).put(operacion).putShort((short) bytesNombre.length).put(bytesNombre);
+        if (operacion == OP_RECORTAR) buffer.put(datos);
+        return cuerpo;
+    }
+
+    /**
+     * Reescribe el archivo con solo las generaciones vigentes si la mayor parte está sin uso.
+     */
+    private void compactarSiConviene() throws IOException {
+        long muertos = tamano - CABECERA.length - bytesVivos;
+        if (muertos < MIN_BYTES_MUERTOS || muertos < bytesVivos) return;
+
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (FileChannel nuevo = FileChannel.open(temporal,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            nuevo.write(ByteBuffer.wrap(CABECERA));
+            for (Map.Entry<String, Entrada> e : entradas.entrySet()) {
+                Entrada entrada = e.getValue();
+                if (entrada.anterior != null) copiarRegistro(nuevo, OP_REEMPLAZAR, e.getKey(), leer(entrada.anterior));
+                if (entrada.actual != null) {
+                    copiarRegistro(nuevo, OP_REEMPLAZAR, e.getKey(), leer(entrada.actual));
+                } else {
+                    // Solo queda la generación anterior: se recrea una actual vacía y se retira
+                    copiarRegistro(nuevo, OP_REEMPLAZAR, e.getKey(), new byte[0]);
+                    copiarRegistro(nuevo, OP_RETIRAR, e.getKey(), new byte[0]);
+                }
+            }
+            nuevo.force(true);
+        }
+        // En Windows no se puede reemplazar un archivo abierto
+        canal.close();
+        try {
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            abrir();
+        } catch (IOException e) {
+            // Si otro programa retiene el archivo (antivirus, indexador), se vuelve a abrir el que
+            // esté en su lugar, para no dejar el almacén cerrado; la compactación se reintenta
+            // con la siguiente escritura
+            try {
+                Files.deleteIfExists(temporal);
+            } catch (IOException ex) {
+                e.addSuppressed(ex);
+            }
+            if (!canal.isOpen()) {
+                try {
+                    abrir();
+                } catch (IOException ex) {
+                    e.addSuppressed(ex);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static void copiarRegistro(FileChannel destino, byte operacion, String nombre, byte[] datos) throws IOException {
+        byte[] bytesNombre = nombre.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(datos.length + bytesNombre.length + 11);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(3 + bytesNombre.length + datos.length);
+        out.writeByte(operacion);
+        out.writeShort(bytesNombre.length);
+        out.write(bytesNombre);
+        out.write(datos);
+        CRC32C crc = new CRC32C();
+        byte[] registro = bytes.toByteArray();
+        crc.update(registro, Integer.BYTES, registro.length - Integer.BYTES);
+        out.writeInt((int) crc.getValue());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) destino.write(buffer);
+    }
+
+    private byte[] leer(Generacion generacion) throws IOException {
+        if (generacion.longitud > Integer.MAX_VALUE - 8) throw new IOException("Entrada demasiado grande para leerla completa");
+        byte[] datos = new byte[(int) generacion.longitud];
+        int desplazamiento = 0;
+        for (long[] tramo : generacion.tramos) {
+            ByteBuffer buffer = ByteBuffer.wrap(datos, desplazamiento, (int) tramo[1]);
+            long posicion = tramo[0];
+            while (buffer.hasRemaining()) {
+                int leidos = canal.read(buffer, posicion);
+                if (leidos < 0) throw new IOException(archivo + " terminó antes de lo esperado");
+                posicion += leidos;
+            }
+            desplazamiento += (int) tramo[1];
+        }
+        return datos;
+    }
+
+    private int leerEn(byte[] destino, long posicion) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(destino);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, posicion + buffer.position()) < 0) break;
+        }
+        return buffer.position();
+    }
+
+    private void escribirEn(ByteBuffer buffer, long posicion) throws IOException {
+        while (buffer.hasRemaining()) canal.write(buffer, posicion + buffer.position());
+    }
+}
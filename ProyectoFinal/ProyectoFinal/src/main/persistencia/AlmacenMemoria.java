@@ -0,0 +1,104 @@
+package main.persistencia;
+
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Almacén en memoria, sin persistencia: lo usa la copia local de las ideas de un cliente del
+ * servidor del foro, donde los datos autoritativos están en el servidor.
+ */
+public final class AlmacenMemoria implements Almacen {
+    private final Map<String, byte[]> actuales = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> anteriores = new ConcurrentHashMap<>();
+
+    @Override
+    public String descripcion() {
+        return "memoria";
+    }
+
+    @Override
+    public boolean existe(String nombre) {
+        return actuales.containsKey(nombre);
+    }
+
+    @Override
+    public long longitud(String nombre) {
+        byte[] datos = actuales.get(nombre);
+        return datos == null ? 0 : datos.length;
+    }
+
+    @Override
+    public byte[] leer(String nombre) throws NoSuchFileException {
+        byte[] datos = actuales.get(nombre);
+        if (datos == null) throw new NoSuchFileException(nombre);
+        return datos.clone();
+    }
+
+    @Override
+    public byte[] leerAnterior(String nombre) {
+        byte[] datos = anteriores.get(nombre);
+        return datos == null ? null : datos.clone();
+    }
+
+    @Override
+    public boolean tieneAnterior(String nombre) {
+        return anteriores.containsKey(nombre);
+    }
+
+    @Override
+    public EscrituraAtomica.Lectura leerVerificado(String nombre) throws NoSuchFileException {
+        byte[] datos = actuales.get(nombre);
+        if (datos != null) return new EscrituraAtomica.Lectura(datos.clone(), false);
+        datos = anteriores.get(nombre);
+        if (datos != null) return new EscrituraAtomica.Lectura(datos.clone(), true);
+        throw new NoSuchFileException(nombre);
+    }
+
+    @Override
+    public ByteBuffer mapear(String nombre) {
+        return null;
+    }
+
+    @Override
+    public void escribirVerificado(String nombre, byte[] contenido) {
+        reemplazar(nombre, contenido);
+    }
+
+    @Override
+    public synchronized void reemplazar(String nombre, byte[] contenido) {
+        byte[] anterior = actuales.put(nombre, contenido.clone());
+        if (anterior != null) anteriores.put(nombre, anterior);
+    }
+
+    @Override
+    public synchronized void anexar(String nombre, byte[] datos) {
+        byte[] actual = actuales.getOrDefault(nombre, new byte[0]);
+        byte[] nuevo = Arrays.copyOf(actual, actual.length + datos.length);
+        System.arraycopy(datos, 0, nuevo, actual.length, datos.length);
+        actuales.put(nombre, nuevo);
+    }
+
+    @Override
+    public synchronized void recortar(String nombre, long longitud) {
+        byte[] actual = actuales.get(nombre);
+        if (actual != null && actual.length > longitud) actuales.put(nombre, Arrays.copyOf(actual, (int) longitud));
+    }
+
+    @Override
+    public synchronized String apartar(String nombre) {
+        byte[] datos = actuales.remove(nombre);
+        if (datos == null) return null;
+        String apartado = nombre + ".danado";
+        actuales.put(apartado, datos);
+        return apartado;
+    }
+
+    @Override
+    public synchronized void borrar(String nombre) {
+        actuales.remove(nombre);
+        anteriores.remove(nombre);
+    }
+}
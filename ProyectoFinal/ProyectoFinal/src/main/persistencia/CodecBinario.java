@@ -0,0 +1,133 @@
+package main.persistencia;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Primitivas de codificación binaria compacta para los archivos de persistencia.
+ * <p>
+ * Los enteros se escriben como varint (7 bits por byte), las cadenas como UTF-8 con
+ * longitud varint y las fechas como milisegundos de época. Reemplaza a la serialización
+ * de Java, que escribe descriptores de clase completos para cada tipo.
+ */
+public final class CodecBinario {
+    /** Longitud máxima de un texto; una mayor solo puede venir de un archivo dañado */
+    public static final int MAX_BYTES_TEXTO = 16 * 1024 * 1024;
+    /** Bytes que se reservan de una vez al leer un bloque de longitud declarada */
+    private static final int BLOQUE_LECTURA = 64 * 1024;
+
+    private CodecBinario() { }
+
+    /**
+     * Indica si el flujo comienza con la marca dada, sin consumirla si no coincide.
+     * El flujo debe soportar {@code mark/reset}.
+     * @param in Flujo de entrada con soporte de marca.
+     * @param marca Bytes esperados al inicio del archivo.
+     * @return true si el archivo usa el formato binario.
+     */
+    public static boolean comienzaCon(InputStream in, byte[] marca) throws IOException {
+        in.mark(marca.length);
+        byte[] leidos = in.readNBytes(marca.length);
+        boolean coincide = java.util.Arrays.equals(leidos, marca);
+        if (!coincide) in.reset();
+        return coincide;
+    }
+
+    /**
+     * Escribe un entero largo sin signo como varint.
+     */
+    public static void escribirVarLong(DataOutput out, long valor) throws IOException {
+        while ((valor & ~0x7FL) != 0) {
+            out.writeByte((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        out.writeByte((int) valor);
+    }
+
+    /**
+     * Lee un varint escrito con {@link #escribirVarLong}.
+     */
+    public static long leerVarLong(DataInput in) throws IOException {
+        long valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            byte b = in.readByte();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) return valor;
+        }
+        throw new IOException("Varint mal formado");
+    }
+
+    /**
+     * Escribe un entero (conteos, longitudes) como varint.
+     */
+    public static void escribirVarInt(DataOutput out, int valor) throws IOException {
+        escribirVarLong(out, valor & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Lee un entero escrito con {@link #escribirVarInt}.
+     */
+    public static int leerVarInt(DataInput in) throws IOException {
+        return (int) leerVarLong(in);
+    }
+
+    /**
+     * Escribe una cadena UTF-8 con longitud varint; {@code null} se codifica como longitud 0.
+     */
+    public static void escribirTexto(DataOutput out, String texto) throws IOException {
+        if (texto == null) {
+            escribirVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        escribirVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    /**
+     * Lee una cadena escrita con {@link #escribirTexto}.
+     */
+    public static String leerTexto(DataInput in) throws IOException {
+        int longitud = leerVarInt(in);
+        if (longitud == 0) return null;
+        if (longitud < 0 || longitud - 1 > MAX_BYTES_TEXTO) {
+            throw new IOException("Longitud de texto inválida: " + (longitud & 0xFFFFFFFFL));
+        }
+        return new String(leerBytes(in, longitud - 1), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lee un bloque de longitud declarada en el archivo. La memoria se reserva a medida que
+     * llegan los bytes, así que una longitud dañada termina en {@link EOFException} y no en
+     * una reserva enorme.
+     * @param longitud Bytes a leer.
+     */
+    public static byte[] leerBytes(DataInput in, int longitud) throws IOException {
+        if (longitud < 0) throw new IOException("Longitud de bloque inválida: " + longitud);
+        byte[] bytes = new byte[Math.min(longitud, BLOQUE_LECTURA)];
+        in.readFully(bytes);
+        while (bytes.length < longitud) {
+            int leidos = bytes.length;
+            bytes = java.util.Arrays.copyOf(bytes, (int) Math.min(longitud, 2L * leidos));
+            in.readFully(bytes, leidos, bytes.length - leidos);
+        }
+        return bytes;
+    }
+
+    /**
+     * Escribe una fecha como milisegundos de época (tomando la hora local como UTC, sin conversión de zona).
+     */
+    public static void escribirFecha(DataOutput out, LocalDateTime fecha) throws IOException {
+        out.writeLong(fecha.toInstant(ZoneOffset.UTC).toEpochMilli());
+    }
+
+    /**
+     * Lee una fecha escrita con {@link #escribirFecha}.
+     */
+    public static LocalDateTime leerFecha(DataInput in) throws IOException {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.UTC);
+    }
+}
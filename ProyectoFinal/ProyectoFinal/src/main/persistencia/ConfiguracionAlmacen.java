@@ -0,0 +1,167 @@
+package main.persistencia;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Configuración de dónde se guardan los datos del foro.
+ * <p>
+ * Los valores se leen del archivo {@code foro.properties} del directorio de trabajo (u otro
+ * indicado con {@code -Dforo.config=<ruta>}); una propiedad de sistema con la misma clave
+ * tiene prioridad sobre el archivo. Claves:
+ * <ul>
+ * <li>{@code foro.datos}: directorio local de datos; por defecto el directorio de trabajo.</li>
+ * <li>{@code foro.compartida}: carpeta compartida entre equipos (bloqueos, feed de cambios).</li>
+ * <li>{@code foro.almacen.ideas} y {@code foro.almacen.usuarios}: almacén de cada servicio,
+ *     {@code archivo} (un archivo por entrada en {@code foro.datos}, por defecto),
+ *     {@code compartida} (un archivo por entrada en la carpeta compartida, usada por un solo
+ *     proceso a la vez: si otro equipo ya la usa como almacén, abrirla falla) o
+ *     {@code embebida} (todas las entradas en el archivo único {@code foro.db} de {@code foro.datos}).</li>
+ * <li>{@code foro.servidor}: dirección de un servidor del foro ({@code http://<equipo>:<puerto>});
+ *     si está configurada, la aplicación usa las ideas del servidor en vez de un almacén propio.</li>
+ * </ul>
+ * Así los datos más usados pueden quedar en un disco local rápido, y los almacenes se pueden
+ * comparar con {@code main.rendimiento.Benchmarks} sin cambiar código.
+ * <p>
+ * Ningún almacén coordina escrituras de varios procesos: cada servicio carga todo en memoria y
+ * escribe su propio diario e instantánea. Para que varios equipos trabajen sobre las mismas
+ * ideas se usa {@code foro.servidor} o el modo multiusuario ({@code main.multiuser}), no
+ * {@code compartida}.
+ */
+public final class ConfiguracionAlmacen {
+    /** Tipos de almacén disponibles, con el nombre que se usa en la configuración. */
+    public enum Tipo {
+        ARCHIVO("archivo"), COMPARTIDA("compartida"), EMBEBIDA("embebida");
+
+        private final String nombre;
+
+        Tipo(String nombre) { this.nombre = nombre; }
+
+        public String getNombre() { return nombre; }
+
+        static Tipo desde(String nombre) {
+            for (Tipo tipo : values()) {
+                if (tipo.nombre.equals(nombre.trim().toLowerCase(Locale.ROOT))) return tipo;
+            }
+            throw new IllegalArgumentException("Almacén desconocido: " + nombre + " (se esperaba archivo, compartida o embebida)");
+        }
+    }
+
+    public static final String CLAVE_DATOS = "foro.datos";
+    public static final String CLAVE_COMPARTIDA = "foro.compartida";
+    public static final String CLAVE_ALMACEN_IDEAS = "foro.almacen.ideas";
+    public static final String CLAVE_ALMACEN_USUARIOS = "foro.almacen.usuarios";
+    public static final String CLAVE_SERVIDOR = "foro.servidor";
+    private static final String ARCHIVO_CONFIGURACION = "foro.properties";
+    private static final String COMPARTIDA_POR_DEFECTO = "\\\\LABING501-06\\Users\\estudiantes\\Documents\\Compartida";
+    private static final String ARCHIVO_EMBEBIDO = "foro.db";
+
+    private static final Properties ARCHIVO = leerArchivo();
+    // Un almacén por ubicación: los servicios que comparten foro.db usan la misma instancia
+    private static final Map<Path, Almacen> almacenes = new HashMap<>();
+
+    private ConfiguracionAlmacen() { }
+
+    /**
+     * Devuelve el valor de una clave: propiedad de sistema, luego {@code foro.properties}.
+     */
+    public static String valor(String clave, String porDefecto) {
+        String valor = System.getProperty(clave);
+        if (valor == null) valor = ARCHIVO.getProperty(clave);
+        return valor == null || valor.trim().isEmpty() ? porDefecto : valor.trim();
+    }
+
+    /**
+     * Directorio local de datos.
+     */
+    public static Path directorioDatos() {
+        return Paths.get(valor(CLAVE_DATOS, "."));
+    }
+
+    /**
+     * Carpeta compartida entre equipos.
+     */
+    public static String carpetaCompartida() {
+        return valor(CLAVE_COMPARTIDA, COMPARTIDA_POR_DEFECTO);
+    }
+
+    /**
+     * Dirección del servidor del foro, o null si las ideas se guardan en un almacén propio.
+     */
+    public static String servidor() {
+        return valor(CLAVE_SERVIDOR, null);
+    }
+
+    /**
+     * Almacén configurado para las ideas ({@code foro.almacen.ideas}).
+     */
+    public static Almacen almacenIdeas() {
+        return almacen(tipo(CLAVE_ALMACEN_IDEAS));
+    }
+
+    /**
+     * Almacén configurado para los usuarios ({@code foro.almacen.usuarios}).
+     */
+    public static Almacen almacenUsuarios() {
+        return almacen(tipo(CLAVE_ALMACEN_USUARIOS));
+    }
+
+    /**
+     * Tipo de almacén indicado por una clave; {@link Tipo#ARCHIVO} si no está configurada.
+     * @throws IllegalArgumentException Si el valor no es un tipo conocido.
+     */
+    public static Tipo tipo(String clave) {
+        return Tipo.desde(valor(clave, Tipo.ARCHIVO.getNombre()));
+    }
+
+    /**
+     * Devuelve el almacén de un tipo, creándolo la primera vez.
+     * @throws UncheckedIOException Si no se puede abrir el archivo de la base embebida, o si la
+     *         carpeta compartida ya la usa otro proceso.
+     */
+    public static synchronized Almacen almacen(Tipo tipo) {
+        Path ubicacion;
+        switch (tipo) {
+            case COMPARTIDA: ubicacion = Paths.get(carpetaCompartida()); break;
+            case EMBEBIDA: ubicacion = directorioDatos().resolve(ARCHIVO_EMBEBIDO); break;
+            default: ubicacion = directorioDatos(); break;
+        }
+        ubicacion = ubicacion.toAbsolutePath().normalize();
+        Almacen almacen = almacenes.get(ubicacion);
+        if (almacen == null) {
+            try {
+                switch (tipo) {
+                    case EMBEBIDA: almacen = new AlmacenEmbebido(ubicacion); break;
+                    case COMPARTIDA: almacen = AlmacenArchivos.exclusivo(ubicacion); break;
+                    default: almacen = new AlmacenArchivos(ubicacion); break;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo abrir el almacén " + ubicacion, e);
+            }
+            almacenes.put(ubicacion, almacen);
+        }
+        return almacen;
+    }
+
+    private static Properties leerArchivo() {
+        Properties props = new Properties();
+        Path ruta = Paths.get(System.getProperty("foro.config", ARCHIVO_CONFIGURACION));
+        try (InputStream in = Files.newInputStream(ruta)) {
+            props.load(in);
+        } catch (NoSuchFileException e) {
+            // Sin archivo de configuración: valores por defecto y propiedades de sistema
+        } catch (IOException e) {
+            System.err.println("No se pudo leer " + ruta + ": " + e.getMessage());
+        }
+        return props;
+    }
+}
@@ -0,0 +1,39 @@
+package main.persistencia;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Adaptador de {@link ByteBuffer} a {@link InputStream}, para decodificar con
+ * {@link CodecBinario} datos que viven en un buffer mapeado en memoria.
+ * La lectura avanza la posición del buffer subyacente.
+ */
+public class EntradaBuffer extends InputStream {
+    private final ByteBuffer buffer;
+
+    /**
+     * @param buffer Buffer a leer desde su posición actual.
+     */
+    public EntradaBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] destino, int desplazamiento, int longitud) {
+        if (longitud == 0) return 0;
+        if (!buffer.hasRemaining()) return -1;
+        int leidos = Math.min(longitud, buffer.remaining());
+        buffer.get(destino, desplazamiento, leidos);
+        return leidos;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
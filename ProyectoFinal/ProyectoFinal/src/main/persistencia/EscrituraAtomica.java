@@ -0,0 +1,221 @@
+package main.persistencia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Escritura de instantáneas a prueba de cortes: temporal, {@code fsync} y renombrado atómico,
+ * conservando la generación anterior como {@code <archivo>.bak}.
+ * <p>
+ * El archivo no deja de existir en ningún momento: la generación actual se copia (con un enlace
+ * duro si el sistema de archivos lo permite) como anterior antes de reemplazarla con un solo
+ * renombrado, así que otro proceso que lee la carpeta compartida ve una generación u otra. Cada
+ * escritura usa un temporal con nombre propio, así que dos escritores no se pisan el temporal.
+ * <p>
+ * {@link #escribir} agrega al final un pie de 35 bytes con la suma CRC32C y la longitud del
+ * contenido, en forma de línea de comentario ({@code #CRC32C <suma> <longitud>}) para que los
+ * archivos de texto como {@code .properties} sigan siendo legibles. {@link #leer} lo verifica y,
+ * si el archivo está dañado, recurre a la generación anterior. Un archivo sin pie se acepta como
+ * formato anterior solo si no hay generación anterior (los archivos sin pie nunca la tienen).
+ */
+public final class EscrituraAtomica {
+    private static final byte[] PREFIJO_PIE = "\n#CRC32C ".getBytes(StandardCharsets.US_ASCII);
+    /** Prefijo, 8 dígitos hexadecimales de la suma, espacio, 16 de la longitud y salto de línea. */
+    public static final int LONGITUD_PIE = PREFIJO_PIE.length + 8 + 1 + 16 + 1;
+
+    private static final int SIN_PIE = -1;
+    private static final int DANADO = -2;
+
+    private EscrituraAtomica() { }
+
+    /**
+     * Contenido leído de una instantánea.
+     */
+    public static final class Lectura {
+        /** Contenido sin el pie. */
+        public final byte[] datos;
+        /** true si el contenido vino de la generación anterior porque la actual estaba dañada. */
+        public final boolean desdeRespaldo;
+
+        Lectura(byte[] datos, boolean desdeRespaldo) {
+            this.datos = datos;
+            this.desdeRespaldo = desdeRespaldo;
+        }
+    }
+
+    /**
+     * Devuelve la ruta de la generación anterior de un archivo.
+     */
+    public static Path respaldo(Path destino) {
+        return destino.resolveSibling(destino.getFileName() + ".bak");
+    }
+
+    /**
+     * Escribe el contenido con su pie de verificación, reemplazando el archivo de forma atómica.
+     */
+    public static void escribir(Path destino, byte[] contenido) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(contenido);
+        String pie = String.format("%08x %016x\n", crc.getValue(), (long) contenido.length);
+        byte[] bytesPie = pie.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer[] partes = {ByteBuffer.wrap(contenido), ByteBuffer.wrap(PREFIJO_PIE), ByteBuffer.wrap(bytesPie)};
+        reemplazar(destino, partes);
+    }
+
+    /**
+     * Reemplaza el archivo de forma atómica sin agregar pie (para formatos con su propia verificación).
+     */
+    public static void reemplazar(Path destino, byte[] contenido) throws IOException {
+        reemplazar(destino, new ByteBuffer[]{ByteBuffer.wrap(contenido)});
+    }
+
+    /**
+     * Lee y verifica una instantánea escrita con {@link #escribir}.
+     * @return El contenido verificado de la generación actual o, si está dañada, de la anterior.
+     * @throws NoSuchFileException Si no existe ninguna generación.
+     * @throws IOException Si ninguna generación es válida.
+     */
+    public static Lectura leer(Path destino) throws IOException {
+        Path anterior = respaldo(destino);
+        boolean hayRespaldo = Files.exists(anterior);
+        if (Files.exists(destino)) {
+            byte[] datos = Files.readAllBytes(destino);
+            int longitud = verificar(ByteBuffer.wrap(datos));
+            if (longitud >= 0) return new Lectura(recortar(datos, longitud), false);
+            if (longitud == SIN_PIE && !hayRespaldo) return new Lectura(datos, false); // Formato anterior
+        } else if (!hayRespaldo) {
+            throw new NoSuchFileException(destino.toString());
+        }
+
+        if (hayRespaldo) {
+            byte[] datos = Files.readAllBytes(anterior);
+            int longitud = verificar(ByteBuffer.wrap(datos));
+            if (longitud >= 0) return new Lectura(recortar(datos, longitud), true);
+        }
+        throw new IOException("La suma de verificación de " + destino.getFileName() + " no coincide y no hay una generación anterior válida");
+    }
+
+    /**
+     * Aparta un archivo dañado como {@code <archivo>.danado-<fecha>} para que la siguiente
+     * escritura no lo convierta en la generación anterior ni lo sobrescriba.
+     * @return La nueva ruta, o null si el archivo no existía.
+     */
+    public static Path apartar(Path destino) throws IOException {
+        if (!Files.exists(destino)) return null;
+        String sufijo = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path apartado = destino.resolveSibling(destino.getFileName() + ".danado-" + sufijo);
+        return Files.move(destino, apartado, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Verifica una instantánea ya mapeada en memoria.
+     * @param buffer Contenido completo del archivo, desde la posición 0.
+     * @param hayRespaldo Si existe una generación anterior (un archivo sin pie se considera dañado).
+     * @return Una vista del contenido sin el pie, o null si está dañado.
+     */
+    public static ByteBuffer contenidoVerificado(ByteBuffer buffer, boolean hayRespaldo) {
+        int longitud = verificar(buffer.duplicate());
+        if (longitud >= 0) return buffer.slice(0, longitud);
+        if (longitud == SIN_PIE && !hayRespaldo) return buffer.slice(0, buffer.limit());
+        return null;
+    }
+
+    /**
+     * @return La longitud del contenido si el pie es válido, {@link #SIN_PIE} o {@link #DANADO}.
+     */
+    private static int verificar(ByteBuffer buffer) {
+        int total = buffer.limit();
+        if (total < LONGITUD_PIE) return SIN_PIE;
+        int inicioPie = total - LONGITUD_PIE;
+        for (int i = 0; i < PREFIJO_PIE.length; i++) {
+            if (buffer.get(inicioPie + i) != PREFIJO_PIE[i]) return SIN_PIE;
+        }
+        byte[] campos = new byte[LONGITUD_PIE - PREFIJO_PIE.length];
+        buffer.get(inicioPie + PREFIJO_PIE.length, campos);
+        String texto = new String(campos, StandardCharsets.US_ASCII);
+        long suma;
+        long longitud;
+        try {
+            suma = Long.parseLong(texto.substring(0, 8), 16);
+            longitud = Long.parseLong(texto.substring(9, 25), 16);
+        } catch (NumberFormatException e) {
+            return DANADO;
+        }
+        if (longitud != inicioPie) return DANADO;
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, inicioPie));
+        return crc.getValue() == suma ? inicioPie : DANADO;
+    }
+
+    private static void reemplazar(Path destino, ByteBuffer[] partes) throws IOException {
+        Path temporal = temporal(destino);
+        try {
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                for (ByteBuffer parte : partes) {
+                    while (parte.hasRemaining()) canal.write(parte);
+                }
+                canal.force(true);
+            }
+            // La generación actual pasa a ser la anterior sin dejar de ser la actual; si el
+            // proceso muere aquí, ambas son la misma generación
+            if (Files.exists(destino)) conservarAnterior(destino);
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        sincronizarDirectorio(destino);
+    }
+
+    /**
+     * Deja en {@code <archivo>.bak} la generación actual, que sigue en su lugar.
+     */
+    private static void conservarAnterior(Path destino) throws IOException {
+        Path copia = temporal(destino);
+        try {
+            try {
+                Files.createLink(copia, destino);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                // Sin enlaces duros (algunas carpetas de red): se copia el contenido
+                Files.copy(destino, copia, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(copia, respaldo(destino), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(copia);
+        }
+    }
+
+    /**
+     * Nombre único para un temporal junto al archivo (en el mismo directorio, para que el
+     * renombrado sea atómico). No se usa {@link Files#createTempFile}, que crea el archivo solo
+     * legible por su dueño y así quedaría la instantánea en la carpeta compartida.
+     */
+    private static Path temporal(Path destino) {
+        long aleatorio = java.util.concurrent.ThreadLocalRandom.current().nextLong();
+        return destino.resolveSibling(destino.getFileName() + "." + Long.toHexString(aleatorio) + ".tmp");
+    }
+
+    /**
+     * Persiste los renombrados. No todos los sistemas permiten abrir un directorio (Windows no).
+     */
+    private static void sincronizarDirectorio(Path archivo) {
+        Path directorio = archivo.toAbsolutePath().getParent();
+        if (directorio == null) return;
+        try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Sin soporte: el renombrado sigue siendo atómico, solo no se fuerza a disco
+        }
+    }
+
+    private static byte[] recortar(byte[] datos, int longitud) {
+        if (longitud == datos.length) return datos;
+        byte[] contenido = new byte[longitud];
+        System.arraycopy(datos, 0, contenido, 0, longitud);
+        return contenido;
+    }
+}
@@ -0,0 +1,242 @@
+package main.persistencia;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lectura y escritura de JSON sin dependencias, para la API HTTP del servidor del foro.
+ * <p>
+ * Los objetos se leen como {@link LinkedHashMap}, los arreglos como {@link ArrayList}, los
+ * números enteros como {@link Long} y los demás como {@link Double}. Al escribir se aceptan
+ * {@link Map}, {@link Collection}, {@link String}, {@link Number}, {@link Boolean} y null.
+ */
+public final class Json {
+    /** Profundidad máxima de anidamiento, para que una entrada maliciosa no agote la pila. */
+    private static final int MAX_PROFUNDIDAD = 64;
+
+    private final String texto;
+    private int posicion;
+
+    private Json(String texto) {
+        this.texto = texto;
+    }
+
+    /**
+     * Lee un documento JSON completo.
+     * @throws IllegalArgumentException Si el texto no es JSON válido.
+     */
+    public static Object leer(String texto) {
+        Json lector = new Json(texto);
+        Object valor = lector.valor(0);
+        lector.saltarEspacios();
+        if (lector.posicion < texto.length()) throw lector.error("contenido después del valor");
+        return valor;
+    }
+
+    /**
+     * Lee un documento que debe ser un objeto.
+     * @throws IllegalArgumentException Si no es JSON válido o no es un objeto.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> leerObjeto(String texto) {
+        Object valor = leer(texto);
+        if (!(valor instanceof Map)) throw new IllegalArgumentException("Se esperaba un objeto JSON");
+        return (Map<String, Object>) valor;
+    }
+
+    /**
+     * Escribe un valor como JSON compacto.
+     * @throws IllegalArgumentException Si el valor contiene un tipo no admitido.
+     */
+    public static String escribir(Object valor) {
+        StringBuilder sb = new StringBuilder();
+        escribir(sb, valor);
+        return sb.toString();
+    }
+
+    private static void escribir(StringBuilder sb, Object valor) {
+        if (valor == null) {
+            sb.append("null");
+        } else if (valor instanceof String) {
+            escribirTexto(sb, (String) valor);
+        } else if (valor instanceof Boolean || valor instanceof Integer || valor instanceof Long) {
+            sb.append(valor);
+        } else if (valor instanceof Number) {
+            double numero = ((Number) valor).doubleValue();
+            if (Double.isNaN(numero) || Double.isInfinite(numero)) throw new IllegalArgumentException("Número no representable en JSON: " + numero);
+            sb.append(numero);
+        } else if (valor instanceof Map) {
+            sb.append('{');
+            boolean primero = true;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) valor).entrySet()) {
+                if (!primero) sb.append(',');
+                primero = false;
+                escribirTexto(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                escribir(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (valor instanceof Collection) {
+            sb.append('[');
+            boolean primero = true;
+            for (Object elemento : (Collection<?>) valor) {
+                if (!primero) sb.append(',');
+                primero = false;
+                escribir(sb, elemento);
+            }
+            sb.append(']');
+        } else {
+            throw new IllegalArgumentException("Tipo no admitido en JSON: " + valor.getClass().getName());
+        }
+    }
+
+    private static void escribirTexto(StringBuilder sb, String texto) {
+        sb.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private Object valor(int profundidad) {
+        if (profundidad > MAX_PROFUNDIDAD) throw error("anidamiento demasiado profundo");
+        saltarEspacios();
+        if (posicion >= texto.length()) throw error("fin inesperado");
+        char c = texto.charAt(posicion);
+        switch (c) {
+            case '{': return objeto(profundidad);
+            case '[': return arreglo(profundidad);
+            case '"': return cadena();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return numero();
+                throw error("carácter inesperado '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> objeto(int profundidad) {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        posicion++;
+        saltarEspacios();
+        if (consumir('}')) return mapa;
+        do {
+            saltarEspacios();
+            if (posicion >= texto.length() || texto.charAt(posicion) != '"') throw error("se esperaba el nombre de un campo");
+            String clave = cadena();
+            saltarEspacios();
+            if (!consumir(':')) throw error("se esperaba ':'");
+            mapa.put(clave, valor(profundidad + 1));
+            saltarEspacios();
+        } while (consumir(','));
+        if (!consumir('}')) throw error("se esperaba '}'");
+        return mapa;
+    }
+
+    private List<Object> arreglo(int profundidad) {
+        List<Object> lista = new ArrayList<>();
+        posicion++;
+        saltarEspacios();
+        if (consumir(']')) return lista;
+        do {
+            lista.add(valor(profundidad + 1));
+            saltarEspacios();
+        } while (consumir(','));
+        if (!consumir(']')) throw error("se esperaba ']'");
+        return lista;
+    }
+
+    private String cadena() {
+        posicion++;
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (posicion >= texto.length()) throw error("cadena sin cerrar");
+            char c = texto.charAt(posicion++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (posicion >= texto.length()) throw error("cadena sin cerrar");
+            char escape = texto.charAt(posicion++);
+            switch (escape) {
+                case '"': case '\\': case '/': sb.append(escape); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (posicion + 4 > texto.length()) throw error("escape \\u incompleto");
+                    try {
+                        sb.append((char) Integer.parseInt(texto.substring(posicion, posicion + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("escape \\u inválido");
+                    }
+                    posicion += 4;
+                    break;
+                default:
+                    throw error("escape inválido \\" + escape);
+            }
+        }
+    }
+
+    private Number numero() {
+        int inicio = posicion;
+        boolean entero = true;
+        if (texto.charAt(posicion) == '-') posicion++;
+        while (posicion < texto.length()) {
+            char c = texto.charAt(posicion);
+            if (c >= '0' && c <= '9') {
+                posicion++;
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                entero = false;
+                posicion++;
+            } else {
+                break;
+            }
+        }
+        String numero = texto.substring(inicio, posicion);
+        try {
+            return entero ? (Number) Long.parseLong(numero) : (Number) Double.parseDouble(numero);
+        } catch (NumberFormatException e) {
+            throw error("número inválido " + numero);
+        }
+    }
+
+    private Object literal(String palabra, Object valor) {
+        if (!texto.startsWith(palabra, posicion)) throw error("se esperaba " + palabra);
+        posicion += palabra.length();
+        return valor;
+    }
+
+    private boolean consumir(char c) {
+        if (posicion < texto.length() && texto.charAt(posicion) == c) {
+            posicion++;
+            return true;
+        }
+        return false;
+    }
+
+    private void saltarEspacios() {
+        while (posicion < texto.length() && Character.isWhitespace(texto.charAt(posicion))) posicion++;
+    }
+
+    private IllegalArgumentException error(String detalle) {
+        return new IllegalArgumentException("JSON inválido en la posición " + posicion + ": " + detalle);
+    }
+}
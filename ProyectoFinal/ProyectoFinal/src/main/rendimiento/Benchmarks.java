@@ -0,0 +1,339 @@
+package main.rendimiento;
+
+import auth.AuthService;
+import foro.Idea;
+import foro.IdeaService;
+import foro.MultiUserIdeaService;
+import main.multiuser.LockManager;
+import main.persistencia.EscrituraAtomica;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Pruebas de rendimiento de los caminos críticos de persistencia y consulta, al estilo de JMH
+ * pero sin dependencias: el proyecto se compila sin gestor de dependencias.
+ * <p>
+ * Cada caso y tamaño de foro se ejecuta en una JVM nueva cuyo directorio de trabajo es una
+ * carpeta temporal (los servicios usan rutas relativas, y la carpeta compartida se redirige ahí
+ * con {@code foro.compartida}). Primero una JVM prepara los datos con {@link GeneradorDatos};
+ * luego otra hace iteraciones de calentamiento y de medición. Cada iteración repite la operación
+ * durante al menos {@link #DURACION_ITERACION_MS} ms y reporta el tiempo promedio por operación;
+ * el resultado final es la media de las iteraciones medidas con su desviación estándar.
+ * <p>
+ * Uso, con las clases compiladas en {@code bin}:
+ * <pre>
+ * java -cp bin main.rendimiento.Benchmarks [filtro] [--tamanos=100,1000,10000,100000]
+ *      [--calentamiento=3] [--iteraciones=5]
+ * </pre>
+ * El filtro selecciona los casos cuyo nombre lo contiene. Las opciones {@code -X} y {@code -D}
+ * de la JVM que lanza las pruebas se pasan a las JVM hijas; por ejemplo,
+ * {@code -Dforo.almacen.ideas=embebida} mide el almacén embebido en vez de los archivos sueltos.
+ */
+public final class Benchmarks {
+    private static final int[] TAMANOS_POR_DEFECTO = {100, 1_000, 10_000, 100_000};
+    private static final int CALENTAMIENTO_POR_DEFECTO = 3;
+    private static final int ITERACIONES_POR_DEFECTO = 5;
+    private static final long DURACION_ITERACION_MS = 500;
+    private static final long SEMILLA = 20240601L;
+    private static final String MARCA_RESULTADO = "RESULTADO ";
+    private static final String CARPETA_COMPARTIDA = "compartida";
+
+    /** Evita que el compilador elimine el trabajo medido */
+    private static volatile Object sumidero;
+
+    private Benchmarks() { }
+
+    /**
+     * Operación medida. {@link #antes()} y {@link #despues()} rodean cada invocación y no se miden.
+     */
+    private interface Medible {
+        default void antes() throws Exception { }
+        Object ejecutar() throws Exception;
+        default void despues() throws Exception { }
+        default void cerrar() throws Exception { }
+    }
+
+    /**
+     * Casos de prueba. {@link #preparar} corre en una JVM propia, antes de la JVM que mide.
+     */
+    private enum Caso {
+        GUARDAR_IDEAS("IdeaService.guardarIdeas", true) {
+            @Override void preparar(int tamano) { crearForoLocal(tamano); }
+
+            @Override Medible iniciar(int tamano) {
+                IdeaService servicio = new IdeaService();
+                return new Medible() {
+                    @Override public Object ejecutar() {
+                        servicio.guardarIdeas();
+                        return servicio;
+                    }
+                    @Override public void cerrar() { servicio.cerrar(); }
+                };
+            }
+        },
+        CARGAR_IDEAS("IdeaService.cargarIdeas", true) {
+            @Override void preparar(int tamano) { crearForoLocal(tamano); }
+
+            @Override Medible iniciar(int tamano) {
+                return new Medible() {
+                    IdeaService servicio;
+
+                    @Override public Object ejecutar() {
+                        servicio = new IdeaService();
+                        return servicio.getIdeas().size();
+                    }
+                    // Cerrado y sin referencias, el foro cargado se libera antes de la siguiente
+                    // medición y no suma presión de GC a las que siguen
+                    @Override public void despues() {
+                        servicio.cerrar();
+                        servicio = null;
+                    }
+                };
+            }
+        },
+        INICIAR_SESION("AuthService.iniciarSesion", true) {
+            @Override List<String> opcionesPreparacion() {
+                // Las credenciales de los usuarios de relleno no se verifican: se generan rápido
+                return Collections.singletonList("-Dforo.auth.iteraciones=1");
+            }
+
+            @Override void preparar(int tamano) {
+                AuthService auth = new AuthService();
+                for (int i = 0; i < tamano; i++) auth.registrarUsuario("usuario" + i, "clave" + i);
+            }
+
+            @Override Medible iniciar(int tamano) {
+                AuthService auth = new AuthService();
+                // El primer inicio regenera la credencial con el factor de trabajo real (calentamiento)
+                return () -> auth.iniciarSesion("usuario0", "clave0");
+            }
+        },
+        CARGAR_MULTIUSUARIO("MultiUserIdeaService.cargarIdeasDesdeArchivo", true) {
+            @Override void preparar(int tamano) throws IOException {
+                Properties props = new Properties();
+                int i = 0;
+                for (Idea idea : new GeneradorDatos(SEMILLA).generarIdeas(tamano)) {
+                    String prefijo = "idea." + i++ + ".";
+                    props.setProperty(prefijo + "id", Long.toString(idea.getId()));
+                    props.setProperty(prefijo + "titulo", idea.getTitulo());
+                    props.setProperty(prefijo + "descripcion", idea.getContenido());
+                    props.setProperty(prefijo + "imagen", idea.getImageUrl());
+                    props.setProperty(prefijo + "nombre", idea.getNombreEstudiante());
+                    props.setProperty(prefijo + "autor", idea.getCodigoEstudiante());
+                    props.setProperty(prefijo + "estado", idea.getEstado().name());
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                props.store(out, "Foro sintético de " + tamano + " ideas");
+                EscrituraAtomica.escribir(Paths.get(LockManager.getSharedPath(), "ideas.properties"), out.toByteArray());
+            }
+
+            @Override Medible iniciar(int tamano) {
+                // El constructor carga ideas.properties y aplica el feed (vacío)
+                return () -> new MultiUserIdeaService().getIdeas().size();
+            }
+        },
+        PROMEDIO_CALIFICACION("Idea.getAverageRating (todo el foro)", true) {
+            @Override Medible iniciar(int tamano) {
+                List<Idea> ideas = new GeneradorDatos(SEMILLA).generarIdeas(tamano);
+                return () -> {
+                    double suma = 0;
+                    for (Idea idea : ideas) suma += idea.getAverageRating();
+                    return suma;
+                };
+            }
+        },
+        BLOQUEO("LockManager.executeWithLock", false) {
+            @Override Medible iniciar(int tamano) {
+                int[] contador = new int[1];
+                return () -> LockManager.executeWithLock("benchmark", () -> contador[0]++);
+            }
+        };
+
+        final String nombre;
+        /** false si el caso no depende de la cantidad de ideas: se mide una sola vez */
+        final boolean dependeDelTamano;
+
+        Caso(String nombre, boolean dependeDelTamano) {
+            this.nombre = nombre;
+            this.dependeDelTamano = dependeDelTamano;
+        }
+
+        /** Crea los datos del caso en el directorio de trabajo. */
+        void preparar(int tamano) throws Exception { }
+
+        /** Opciones adicionales de la JVM que prepara los datos. */
+        List<String> opcionesPreparacion() { return Collections.emptyList(); }
+
+        abstract Medible iniciar(int tamano) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("--preparar")) {
+            Caso.valueOf(args[1]).preparar(Integer.parseInt(args[2]));
+            System.exit(0); // Detiene los hilos de sincronización y escritura
+        }
+        if (args.length >= 5 && args[0].equals("--medir")) {
+            medir(Caso.valueOf(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            System.exit(0);
+        }
+
+        String filtro = "";
+        int[] tamanos = TAMANOS_POR_DEFECTO;
+        int calentamiento = CALENTAMIENTO_POR_DEFECTO;
+        int iteraciones = ITERACIONES_POR_DEFECTO;
+        for (String arg : args) {
+            if (arg.startsWith("--tamanos=")) {
+                tamanos = Arrays.stream(arg.substring("--tamanos=".length()).split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--calentamiento=")) {
+                calentamiento = Integer.parseInt(arg.substring("--calentamiento=".length()));
+            } else if (arg.startsWith("--iteraciones=")) {
+                iteraciones = Integer.parseInt(arg.substring("--iteraciones=".length()));
+            } else {
+                filtro = arg;
+            }
+        }
+
+        System.out.printf("%-46s %8s %5s %12s %12s  %s%n", "Caso", "Ideas", "Iter", "Media", "Desv.", "Unidad");
+        for (Caso caso : Caso.values()) {
+            if (!caso.nombre.contains(filtro) && !caso.name().contains(filtro)) continue;
+            int[] tamanosCaso = caso.dependeDelTamano ? tamanos : new int[] {tamanos[0]};
+            for (int tamano : tamanosCaso) {
+                String resultado = ejecutarEnJvmNueva(caso, tamano, calentamiento, iteraciones);
+                if (resultado == null) continue;
+                String[] partes = resultado.split(" ");
+                double media = Double.parseDouble(partes[0]);
+                double desviacion = Double.parseDouble(partes[1]);
+                String unidad = media >= 1e6 ? "ms/op" : "us/op";
+                double escala = media >= 1e6 ? 1e6 : 1e3;
+                System.out.printf(Locale.ROOT, "%-46s %8s %5d %12.3f %12.3f  %s%n", caso.nombre,
+                        caso.dependeDelTamano ? Integer.toString(tamano) : "-", iteraciones,
+                        media / escala, desviacion / escala, unidad);
+            }
+        }
+    }
+
+    /**
+     * Prepara y mide un caso en JVM nuevas dentro de una carpeta temporal, que luego se borra.
+     * @return "media desviación" en nanosegundos por operación, o null si falló.
+     */
+    private static String ejecutarEnJvmNueva(Caso caso, int tamano, int calentamiento, int iteraciones) throws IOException, InterruptedException {
+        Path carpeta = Files.createTempDirectory("foro-rendimiento-");
+        try {
+            Files.createDirectories(carpeta.resolve(CARPETA_COMPARTIDA));
+            List<String> preparar = comandoJava(carpeta, caso.opcionesPreparacion());
+            preparar.addAll(Arrays.asList("--preparar", caso.name(), Integer.toString(tamano)));
+            if (ejecutar(preparar, carpeta, caso) == null) return null;
+
+            List<String> medir = comandoJava(carpeta, Collections.emptyList());
+            medir.addAll(Arrays.asList("--medir", caso.name(), Integer.toString(tamano),
+                    Integer.toString(calentamiento), Integer.toString(iteraciones)));
+            String salida = ejecutar(medir, carpeta, caso);
+            if (salida == null) return null;
+            for (String linea : salida.split("\\R")) {
+                if (linea.startsWith(MARCA_RESULTADO)) return linea.substring(MARCA_RESULTADO.length());
+            }
+            System.err.println("Sin resultado para " + caso.nombre + ":\n" + salida);
+            return null;
+        } finally {
+            borrar(carpeta);
+        }
+    }
+
+    private static List<String> comandoJava(Path carpeta, List<String> opciones) {
+        List<String> comando = new ArrayList<>();
+        comando.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String opcion : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (opcion.startsWith("-X") || opcion.startsWith("-D")) comando.add(opcion);
+        }
+        comando.addAll(opciones);
+        comando.add("-Dforo.compartida=" + carpeta.resolve(CARPETA_COMPARTIDA));
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add(Benchmarks.class.getName());
+        return comando;
+    }
+
+    /**
+     * Ejecuta un proceso hijo y devuelve su salida, o null si terminó con error.
+     */
+    private static String ejecutar(List<String> comando, Path carpeta, Caso caso) throws IOException, InterruptedException {
+        Process proceso = new ProcessBuilder(comando).directory(carpeta.toFile()).redirectErrorStream(true).start();
+        String salida;
+        try (InputStream in = proceso.getInputStream()) {
+            salida = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (proceso.waitFor() != 0) {
+            System.err.println("Falló " + caso.nombre + ":\n" + salida);
+            return null;
+        }
+        return salida;
+    }
+
+    /**
+     * Mide un caso en esta JVM e imprime la línea de resultado.
+     */
+    private static void medir(Caso caso, int tamano, int calentamiento, int iteraciones) throws Exception {
+        Medible medible = caso.iniciar(tamano);
+        try {
+            for (int i = 0; i < calentamiento; i++) iteracion(medible);
+            double[] tiempos = new double[iteraciones];
+            for (int i = 0; i < iteraciones; i++) tiempos[i] = iteracion(medible);
+
+            double media = Arrays.stream(tiempos).average().orElse(0);
+            double varianza = Arrays.stream(tiempos).map(t -> (t - media) * (t - media)).sum() / Math.max(1, iteraciones - 1);
+            System.out.println(MARCA_RESULTADO + media + " " + Math.sqrt(varianza));
+        } finally {
+            medible.cerrar();
+        }
+    }
+
+    /**
+     * Repite la operación durante al menos {@link #DURACION_ITERACION_MS} ms (y al menos una vez).
+     * @return Nanosegundos promedio por operación, sin contar antes() ni despues().
+     */
+    private static double iteracion(Medible medible) throws Exception {
+        long limite = System.nanoTime() + DURACION_ITERACION_MS * 1_000_000L;
+        long medido = 0;
+        long operaciones = 0;
+        do {
+            medible.antes();
+            long inicio = System.nanoTime();
+            sumidero = medible.ejecutar();
+            medido += System.nanoTime() - inicio;
+            medible.despues();
+            operaciones++;
+        } while (System.nanoTime() < limite);
+        return (double) medido / operaciones;
+    }
+
+    /**
+     * Crea un foro local con el generador y lo deja guardado en ideas.dat.
+     */
+    private static void crearForoLocal(int tamano) {
+        IdeaService servicio = new IdeaService();
+        for (Idea idea : new GeneradorDatos(SEMILLA).generarIdeas(tamano)) servicio.agregarIdea(idea);
+        servicio.guardarIdeas();
+        servicio.cerrar();
+    }
+
+    private static void borrar(Path carpeta) throws IOException {
+        Files.walkFileTree(carpeta, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path archivo, BasicFileAttributes atributos) throws IOException {
+                Files.delete(archivo);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directorio, IOException e) throws IOException {
+                Files.delete(directorio);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
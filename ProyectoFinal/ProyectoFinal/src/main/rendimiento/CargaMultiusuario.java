@@ -0,0 +1,400 @@
+package main.rendimiento;
+
+import foro.Idea;
+import foro.MultiUserIdeaService;
+import main.multiuser.LockManager;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generador de carga multiusuario: simula varios equipos del laboratorio usando a la vez
+ * {@link MultiUserIdeaService} sobre una carpeta local que reemplaza a la compartida.
+ * <p>
+ * Cada cliente es una JVM propia (el servicio de sincronización es único por proceso) con su
+ * directorio de trabajo; todas arrancan a la misma hora y ejecutan durante el tiempo pedido una
+ * mezcla de operaciones con una pausa entre ellas. Al terminar se informa:
+ * <ul>
+ * <li>Operaciones por segundo, en total y por tipo, y su latencia p50/p99.</li>
+ * <li>Espera de los bloqueos compartidos p50/p99 y tiempos de espera agotados.</li>
+ * <li>Desfase de sincronización: desde que un cliente agrega una idea hasta que otro la ve.</li>
+ * <li>Actualizaciones perdidas: ideas agregadas que no están al final y cambios de estado
+ *     confirmados que no se reflejan en la versión final de la idea.</li>
+ * </ul>
+ * Uso:
+ * <pre>
+ * java -cp bin main.rendimiento.CargaMultiusuario [--clientes=8] [--segundos=30] [--pausa-ms=100]
+ *      [--mezcla=agregar:40,aprobar:25,desaprobar:25,eliminar:10] [--ideas-iniciales=100]
+ *      [--gracia-s=5] [--conservar]
+ * </pre>
+ */
+public final class CargaMultiusuario {
+    /** Operaciones que replica el servicio multiusuario */
+    private enum Operacion { AGREGAR, APROBAR, DESAPROBAR, ELIMINAR }
+
+    private static final String CARPETA_COMPARTIDA = "compartida";
+    private static final String PREFIJO_MARCA = "t=";
+    /** Margen para que todas las JVM terminen de arrancar antes de la hora de inicio */
+    private static final long MARGEN_ARRANQUE_MS = 3000;
+    private static final long INTERVALO_OBSERVACION_MS = 5;
+
+    private CargaMultiusuario() { }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--sembrar")) {
+            sembrar(Integer.parseInt(args[1]));
+        } else if (args.length > 0 && args[0].equals("--cliente")) {
+            cliente(Integer.parseInt(args[1]), Long.parseLong(args[2]), Long.parseLong(args[3]),
+                    Long.parseLong(args[4]), Long.parseLong(args[5]), args[6]);
+        } else if (args.length > 0 && args[0].equals("--verificar")) {
+            verificar();
+        } else {
+            coordinar(args);
+        }
+        System.exit(0); // Detiene los hilos de sincronización
+    }
+
+    // ---------------------------------------------------------------- Coordinador
+
+    private static void coordinar(String[] args) throws Exception {
+        int clientes = 8;
+        long segundos = 30;
+        long pausaMs = 100;
+        long graciaS = 5;
+        int iniciales = 100;
+        String mezcla = "agregar:40,aprobar:25,desaprobar:25,eliminar:10";
+        boolean conservar = false;
+        for (String arg : args) {
+            if (arg.startsWith("--clientes=")) clientes = Integer.parseInt(valor(arg));
+            else if (arg.startsWith("--segundos=")) segundos = Long.parseLong(valor(arg));
+            else if (arg.startsWith("--pausa-ms=")) pausaMs = Long.parseLong(valor(arg));
+            else if (arg.startsWith("--gracia-s=")) graciaS = Long.parseLong(valor(arg));
+            else if (arg.startsWith("--ideas-iniciales=")) iniciales = Integer.parseInt(valor(arg));
+            else if (arg.startsWith("--mezcla=")) mezcla = valor(arg);
+            else if (arg.equals("--conservar")) conservar = true;
+            else throw new IllegalArgumentException("Opción desconocida: " + arg);
+        }
+        leerMezcla(mezcla); // Valida antes de lanzar procesos
+
+        Path base = Files.createTempDirectory("foro-carga-");
+        Files.createDirectories(base.resolve(CARPETA_COMPARTIDA));
+        System.out.printf("Carga: %d clientes, %d s, pausa %d ms, mezcla %s, carpeta %s%n",
+                clientes, segundos, pausaMs, mezcla, base);
+        try {
+            if (iniciales > 0) ejecutarYEsperar(base, "semilla", "--sembrar", Integer.toString(iniciales));
+
+            long inicio = System.currentTimeMillis() + MARGEN_ARRANQUE_MS;
+            List<Process> procesos = new ArrayList<>();
+            for (int c = 0; c < clientes; c++) {
+                procesos.add(lanzar(base, "cliente-" + c, "--cliente", Integer.toString(c), Long.toString(inicio),
+                        Long.toString(TimeUnit.SECONDS.toMillis(segundos)), Long.toString(TimeUnit.SECONDS.toMillis(graciaS)),
+                        Long.toString(pausaMs), mezcla));
+            }
+            long limite = MARGEN_ARRANQUE_MS + TimeUnit.SECONDS.toMillis(segundos + graciaS + 60);
+            for (int c = 0; c < clientes; c++) {
+                Process p = procesos.get(c);
+                if (!p.waitFor(limite, TimeUnit.MILLISECONDS)) {
+                    p.destroyForcibly();
+                    System.err.println("El cliente " + c + " no terminó a tiempo");
+                } else if (p.exitValue() != 0) {
+                    System.err.println("El cliente " + c + " falló:\n" + salida(base, "cliente-" + c));
+                }
+            }
+            ejecutarYEsperar(base, "verificacion", "--verificar");
+            informar(base, clientes, segundos);
+        } finally {
+            if (conservar) System.out.println("Datos conservados en " + base);
+            else borrar(base);
+        }
+    }
+
+    private static void informar(Path base, int clientes, long segundos) throws IOException {
+        Map<Operacion, Long> operaciones = new EnumMap<>(Operacion.class);
+        long errores = 0;
+        long timeouts = 0;
+        Histograma latencia = new Histograma();
+        Histograma bloqueos = new Histograma();
+        Histograma desfase = new Histograma();
+        Set<Long> agregadas = new HashSet<>();
+        Set<Long> eliminadas = new HashSet<>();
+        Map<Long, Integer> confirmados = new HashMap<>();
+
+        for (int c = 0; c < clientes; c++) {
+            for (String linea : salida(base, "cliente-" + c).split("\\R")) {
+                String[] partes = linea.split(" ", 2);
+                if (partes.length < 2) continue;
+                switch (partes[0]) {
+                    case "OPERACION": {
+                        String[] op = partes[1].split(" ");
+                        operaciones.merge(Operacion.valueOf(op[0]), Long.parseLong(op[1]), Long::sum);
+                        break;
+                    }
+                    case "ERRORES": errores += Long.parseLong(partes[1]); break;
+                    case "TIMEOUTS": timeouts += Long.parseLong(partes[1]); break;
+                    case "LATENCIA": latencia.sumar(Histograma.decodificar(partes[1])); break;
+                    case "BLOQUEOS": bloqueos.sumar(Histograma.decodificar(partes[1])); break;
+                    case "DESFASE": desfase.sumar(Histograma.decodificar(partes[1])); break;
+                    case "AGREGADA": agregadas.add(Long.parseLong(partes[1])); break;
+                    case "ELIMINADA": eliminadas.add(Long.parseLong(partes[1])); break;
+                    case "CONFIRMADA": confirmados.merge(Long.parseLong(partes[1]), 1, Integer::sum); break;
+                    default: break;
+                }
+            }
+        }
+
+        Map<Long, Integer> versionFinal = new HashMap<>();
+        for (String linea : salida(base, "verificacion").split("\\R")) {
+            String[] partes = linea.split(" ");
+            if (partes.length == 3 && partes[0].equals("FINAL")) {
+                versionFinal.put(Long.parseLong(partes[1]), Integer.parseInt(partes[2]));
+            }
+        }
+        long altasPerdidas = agregadas.stream().filter(id -> !eliminadas.contains(id) && !versionFinal.containsKey(id)).count();
+        long cambiosPerdidos = 0;
+        long cambiosVerificados = 0;
+        for (Map.Entry<Long, Integer> e : confirmados.entrySet()) {
+            Integer version = versionFinal.get(e.getKey());
+            if (version == null || eliminadas.contains(e.getKey())) continue;
+            cambiosVerificados += e.getValue();
+            cambiosPerdidos += Math.max(0, e.getValue() - version);
+        }
+
+        long total = operaciones.values().stream().mapToLong(Long::longValue).sum();
+        System.out.printf(Locale.ROOT, "Operaciones: %d (%.1f op/s)%n", total, (double) total / segundos);
+        for (Map.Entry<Operacion, Long> e : operaciones.entrySet()) {
+            System.out.printf(Locale.ROOT, "  %-10s %8d (%.1f op/s)%n", e.getKey().name().toLowerCase(Locale.ROOT),
+                    e.getValue(), (double) e.getValue() / segundos);
+        }
+        System.out.println("Errores: " + errores + ", tiempos de espera de bloqueo agotados: " + timeouts);
+        System.out.println("Latencia por operación: " + latencia.resumen());
+        System.out.println("Espera de bloqueos: " + bloqueos.resumen());
+        System.out.println("Desfase de sincronización: " + desfase.resumen());
+        System.out.printf("Ideas agregadas: %d, perdidas: %d%n", agregadas.size(), altasPerdidas);
+        System.out.printf("Cambios de estado confirmados verificables: %d, perdidos: %d%n", cambiosVerificados, cambiosPerdidos);
+    }
+
+    // ---------------------------------------------------------------- Procesos hijos
+
+    /**
+     * Agrega ideas generadas antes de la prueba y guarda la instantánea.
+     */
+    private static void sembrar(int cantidad) {
+        MultiUserIdeaService servicio = new MultiUserIdeaService();
+        for (Idea idea : new GeneradorDatos(cantidad).generarIdeas(cantidad)) servicio.agregarIdea(idea);
+        servicio.guardarIdeas();
+    }
+
+    /**
+     * Un equipo simulado: espera la hora de inicio, ejecuta la mezcla durante el tiempo pedido y
+     * sigue observando la sincronización durante el periodo de gracia.
+     */
+    private static void cliente(int numero, long inicio, long duracionMs, long graciaMs, long pausaMs, String mezcla) throws Exception {
+        Operacion[] ruleta = leerMezcla(mezcla);
+        MultiUserIdeaService servicio = new MultiUserIdeaService();
+        Map<Operacion, Long> operaciones = new EnumMap<>(Operacion.class);
+        Histograma latencia = new Histograma();
+        Histograma desfase = new Histograma();
+        StringBuilder registro = new StringBuilder();
+        long errores = 0;
+
+        Observador observador = new Observador(servicio, numero, inicio, desfase);
+        Thread hilo = new Thread(observador, "observador");
+        hilo.setDaemon(true);
+        hilo.start();
+
+        Thread.sleep(Math.max(0, inicio - System.currentTimeMillis()));
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        long fin = inicio + duracionMs;
+        int secuencia = 0;
+        while (System.currentTimeMillis() < fin) {
+            Operacion op = ruleta[aleatorio.nextInt(ruleta.length)];
+            List<Idea> ideas = servicio.getIdeas();
+            if (op != Operacion.AGREGAR && ideas.isEmpty()) op = Operacion.AGREGAR;
+            long t0 = System.nanoTime();
+            try {
+                switch (op) {
+                    case AGREGAR: {
+                        Idea idea = new Idea("cliente-" + numero, "carga" + numero, "Idea de carga " + numero + "-" + secuencia++,
+                                PREFIJO_MARCA + System.currentTimeMillis(), "");
+                        servicio.agregarIdea(idea);
+                        registro.append("AGREGADA ").append(idea.getId()).append('\n');
+                        break;
+                    }
+                    case APROBAR:
+                    case DESAPROBAR: {
+                        Idea idea = ideas.get(aleatorio.nextInt(ideas.size()));
+                        boolean confirmada = op == Operacion.APROBAR ? servicio.aprobarIdea(idea) : servicio.desaprobarIdea(idea);
+                        if (confirmada) registro.append("CONFIRMADA ").append(idea.getId()).append('\n');
+                        break;
+                    }
+                    default: {
+                        Idea idea = ideas.get(aleatorio.nextInt(ideas.size()));
+                        registro.append("ELIMINADA ").append(idea.getId()).append('\n');
+                        servicio.eliminarIdea(idea);
+                        break;
+                    }
+                }
+                latencia.registrar(System.nanoTime() - t0);
+                operaciones.merge(op, 1L, Long::sum);
+            } catch (RuntimeException e) {
+                errores++;
+            }
+            if (pausaMs > 0) Thread.sleep(pausaMs);
+        }
+        Thread.sleep(graciaMs);
+        observador.detener();
+        hilo.join();
+
+        StringBuilder salida = new StringBuilder(registro);
+        for (Map.Entry<Operacion, Long> e : operaciones.entrySet()) {
+            salida.append("OPERACION ").append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+        }
+        salida.append("ERRORES ").append(errores).append('\n');
+        salida.append("TIMEOUTS ").append(LockManager.getTimeouts()).append('\n');
+        salida.append("LATENCIA ").append(latencia.codificar()).append('\n');
+        Histograma bloqueos = new Histograma();
+        bloqueos.sumar(LockManager.getHistogramaEspera());
+        salida.append("BLOQUEOS ").append(bloqueos.codificar()).append('\n');
+        salida.append("DESFASE ").append(desfase.codificar()).append('\n');
+        System.out.print(salida);
+        System.out.flush();
+    }
+
+    /**
+     * Revisa la instantánea publicada cada vez que cambia y mide cuánto tardó en llegar cada
+     * idea agregada por otro cliente desde la hora de inicio.
+     */
+    private static final class Observador implements Runnable {
+        private final MultiUserIdeaService servicio;
+        private final String propio;
+        private final long inicio;
+        private final Histograma desfase;
+        private final Set<Long> vistas = new HashSet<>();
+        private volatile boolean activo = true;
+
+        Observador(MultiUserIdeaService servicio, int numero, long inicio, Histograma desfase) {
+            this.servicio = servicio;
+            this.propio = "cliente-" + numero;
+            this.inicio = inicio;
+            this.desfase = desfase;
+        }
+
+        void detener() { activo = false; }
+
+        @Override
+        public void run() {
+            List<Idea> anterior = null;
+            while (activo) {
+                List<Idea> actual = servicio.getIdeas();
+                if (actual != anterior) {
+                    long ahora = System.currentTimeMillis();
+                    for (Idea idea : actual) {
+                        if (!vistas.add(idea.getId())) continue;
+                        String contenido = idea.getContenido();
+                        if (propio.equals(idea.getNombreEstudiante()) || !contenido.startsWith(PREFIJO_MARCA)) continue;
+                        long creada = Long.parseLong(contenido.substring(PREFIJO_MARCA.length()));
+                        if (creada >= inicio) desfase.registrar(TimeUnit.MILLISECONDS.toNanos(Math.max(0, ahora - creada)));
+                    }
+                    anterior = actual;
+                }
+                try {
+                    Thread.sleep(INTERVALO_OBSERVACION_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Imprime el estado final del foro compartido: identificador y versión de cada idea.
+     */
+    private static void verificar() {
+        MultiUserIdeaService servicio = new MultiUserIdeaService();
+        StringBuilder sb = new StringBuilder();
+        for (Idea idea : servicio.getIdeas()) {
+            sb.append("FINAL ").append(idea.getId()).append(' ').append(idea.getVersion()).append('\n');
+        }
+        System.out.print(sb);
+        System.out.flush();
+    }
+
+    // ---------------------------------------------------------------- Utilidades
+
+    /**
+     * Convierte la mezcla "operación:peso,..." en una ruleta con una posición por unidad de peso.
+     */
+    private static Operacion[] leerMezcla(String mezcla) {
+        List<Operacion> ruleta = new ArrayList<>();
+        for (String parte : mezcla.split(",")) {
+            String[] op = parte.trim().split(":");
+            if (op.length != 2) throw new IllegalArgumentException("Mezcla inválida: " + parte);
+            Operacion operacion;
+            try {
+                operacion = Operacion.valueOf(op[0].trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                // Votos y comentarios no se replican entre equipos; no tiene sentido simularlos aquí
+                throw new IllegalArgumentException("Operación no soportada: " + op[0]
+                        + " (disponibles: agregar, aprobar, desaprobar, eliminar)");
+            }
+            for (int i = Integer.parseInt(op[1].trim()); i > 0; i--) ruleta.add(operacion);
+        }
+        if (ruleta.isEmpty()) throw new IllegalArgumentException("La mezcla no tiene operaciones");
+        return ruleta.toArray(new Operacion[0]);
+    }
+
+    private static String valor(String opcion) {
+        return opcion.substring(opcion.indexOf('=') + 1);
+    }
+
+    /**
+     * Lanza una JVM hija con su propio directorio de trabajo; la salida queda en salida.txt.
+     */
+    private static Process lanzar(Path base, String nombre, String... argumentos) throws IOException {
+        Path carpeta = Files.createDirectories(base.resolve(nombre));
+        List<String> comando = new ArrayList<>();
+        comando.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String opcion : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (opcion.startsWith("-X") || opcion.startsWith("-D")) comando.add(opcion);
+        }
+        comando.add("-Dforo.compartida=" + base.resolve(CARPETA_COMPARTIDA));
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add(CargaMultiusuario.class.getName());
+        comando.addAll(Arrays.asList(argumentos));
+        return new ProcessBuilder(comando).directory(carpeta.toFile())
+                .redirectErrorStream(true).redirectOutput(carpeta.resolve("salida.txt").toFile()).start();
+    }
+
+    private static void ejecutarYEsperar(Path base, String nombre, String... argumentos) throws IOException, InterruptedException {
+        Process p = lanzar(base, nombre, argumentos);
+        if (p.waitFor() != 0) throw new IOException("Falló el proceso " + nombre + ":\n" + salida(base, nombre));
+    }
+
+    private static String salida(Path base, String nombre) throws IOException {
+        Path archivo = base.resolve(nombre).resolve("salida.txt");
+        return Files.exists(archivo) ? new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8) : "";
+    }
+
+    private static void borrar(Path carpeta) throws IOException {
+        Files.walkFileTree(carpeta, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path archivo, BasicFileAttributes atributos) throws IOException {
+                Files.delete(archivo);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directorio, IOException e) throws IOException {
+                Files.delete(directorio);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package main.rendimiento;
+
+import foro.Comentario;
+import foro.Idea;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Genera foros sintéticos con distribuciones parecidas a las de un foro real, para medir
+ * rendimiento con datos representativos. Con la misma semilla genera siempre los mismos datos.
+ * <ul>
+ * <li>Autores: pocos estudiantes publican mucho (distribución de Zipf).</li>
+ * <li>Estados: 70 % aprobadas, 20 % pendientes, 10 % desaprobadas.</li>
+ * <li>Votos por idea: cola larga (log-normal), la mayoría con pocos votos y algunas con cientos.</li>
+ * <li>Calificaciones: en forma de J, con muchas de 5 y de 1 estrella.</li>
+ * <li>Comentarios por idea: geométrica con media 1,5.</li>
+ * </ul>
+ */
+public final class GeneradorDatos {
+    private static final String[] PALABRAS = {
+            "aplicación", "sistema", "estudiantes", "biblioteca", "cafetería", "horario", "laboratorio",
+            "plataforma", "reciclaje", "energía", "solar", "transporte", "bicicletas", "tutorías", "clases",
+            "virtual", "proyecto", "investigación", "semillero", "deporte", "torneo", "música", "arte",
+            "campus", "parqueadero", "préstamo", "computadores", "impresión", "becas", "intercambio",
+            "idiomas", "inglés", "programación", "robótica", "huerta", "agua", "lluvia", "iluminación",
+            "seguridad", "bienestar", "salud", "mental", "psicología", "red", "wifi", "conexión", "nube",
+            "datos", "encuesta", "votación", "consejo", "estudiantil", "evento", "feria", "emprendimiento",
+            "empresa", "práctica", "empleo", "egresados", "mentoría", "calendario", "notas", "examen",
+            "parcial", "grupo", "estudio", "salón", "mejorar", "crear", "organizar", "compartir", "reducir",
+            "ampliar", "nuevo", "gratuito", "digital", "móvil", "semanal", "comunidad", "universidad"};
+    private static final String[] CONECTORES = {"de", "para", "con", "en", "y", "la", "el", "los", "las", "del"};
+    /** Probabilidad acumulada de 1 a 5 estrellas: 18 %, 7 %, 10 %, 20 %, 45 % */
+    private static final double[] ESTRELLAS_ACUMULADAS = {0.18, 0.25, 0.35, 0.55, 1.0};
+    private static final int MAX_VOTOS = 500;
+
+    private final Random aleatorio;
+
+    /**
+     * @param semilla Semilla del generador; la misma semilla produce los mismos datos.
+     */
+    public GeneradorDatos(long semilla) {
+        this.aleatorio = new Random(semilla);
+    }
+
+    /**
+     * Genera ideas con votos y comentarios.
+     * @param cantidad Cantidad de ideas.
+     * @return Ideas nuevas, en orden de creación.
+     */
+    public List<Idea> generarIdeas(int cantidad) {
+        int estudiantes = Math.max(10, cantidad / 5);
+        int votantes = Math.max(50, cantidad / 2);
+        double[] zipf = acumuladaZipf(estudiantes, 1.1);
+        List<Idea> ideas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            int autor = muestrear(zipf);
+            Idea idea = new Idea("Estudiante " + autor, String.format("2024%05d", autor),
+                    frase(3 + aleatorio.nextInt(6)), frase(20 + aleatorio.nextInt(100)),
+                    aleatorio.nextInt(5) == 0 ? "https://picsum.photos/seed/" + i + "/400/300" : "");
+
+            double estado = aleatorio.nextDouble();
+            if (estado < 0.7) idea.aprobar();
+            else if (estado >= 0.9) idea.desaprobar();
+
+            int votos = (int) Math.min(MAX_VOTOS, Math.exp(1.5 + 1.2 * aleatorio.nextGaussian()));
+            int primerVotante = aleatorio.nextInt(votantes);
+            for (int v = 0; v < votos; v++) {
+                idea.addVote("usuario" + ((primerVotante + v) % votantes), estrellas());
+            }
+
+            int comentarios = (int) (Math.log(1 - aleatorio.nextDouble()) / Math.log(0.6));
+            for (int c = 0; c < comentarios; c++) {
+                idea.agregarComentario(new Comentario("usuario" + aleatorio.nextInt(votantes),
+                        frase(5 + aleatorio.nextInt(25))));
+            }
+            ideas.add(idea);
+        }
+        return ideas;
+    }
+
+    /**
+     * Genera una frase de palabras del vocabulario del foro, con conectores intercalados.
+     */
+    public String frase(int palabras) {
+        StringBuilder sb = new StringBuilder(palabras * 9);
+        for (int i = 0; i < palabras; i++) {
+            if (i > 0) sb.append(' ');
+            boolean conector = i > 0 && i < palabras - 1 && aleatorio.nextInt(4) == 0;
+            sb.append(conector ? CONECTORES[aleatorio.nextInt(CONECTORES.length)] : PALABRAS[aleatorio.nextInt(PALABRAS.length)]);
+        }
+        if (sb.length() > 0) sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.toString();
+    }
+
+    private int estrellas() {
+        double p = aleatorio.nextDouble();
+        int e = 0;
+        while (p > ESTRELLAS_ACUMULADAS[e]) e++;
+        return e + 1;
+    }
+
+    private int muestrear(double[] acumulada) {
+        int posicion = Arrays.binarySearch(acumulada, aleatorio.nextDouble());
+        return Math.min(acumulada.length - 1, posicion >= 0 ? posicion : -posicion - 1);
+    }
+
+    private static double[] acumuladaZipf(int n, double exponente) {
+        double[] acumulada = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1 / Math.pow(i + 1, exponente);
+            acumulada[i] = total;
+        }
+        for (int i = 0; i < n; i++) acumulada[i] /= total;
+        return acumulada;
+    }
+}
@@ -0,0 +1,69 @@
+package main.rendimiento;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de duraciones por potencias de dos, con el mismo formato que
+ * {@code LockManager.getHistogramaEspera()}: la posición i cuenta las duraciones menores a
+ * 2^i microsegundos. Los percentiles son cotas superiores con resolución de un factor 2.
+ * Seguro para hilos.
+ */
+final class Histograma {
+    static final int RANGOS = 32;
+
+    private final AtomicLongArray cuentas = new AtomicLongArray(RANGOS);
+
+    void registrar(long nanos) {
+        int rango = Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, nanos) / 1000);
+        cuentas.incrementAndGet(Math.min(rango, RANGOS - 1));
+    }
+
+    /** Suma otro histograma del mismo formato (por ejemplo, el de otro proceso). */
+    void sumar(long[] otras) {
+        for (int i = 0; i < Math.min(RANGOS, otras.length); i++) cuentas.addAndGet(i, otras[i]);
+    }
+
+    long total() {
+        long total = 0;
+        for (int i = 0; i < RANGOS; i++) total += cuentas.get(i);
+        return total;
+    }
+
+    /**
+     * Cota superior del percentil, en milisegundos.
+     * @param percentil Entre 0 y 100.
+     */
+    double percentilMs(double percentil) {
+        long total = total();
+        if (total == 0) return 0;
+        long objetivo = (long) Math.ceil(total * percentil / 100);
+        long acumulado = 0;
+        for (int i = 0; i < RANGOS; i++) {
+            acumulado += cuentas.get(i);
+            if (acumulado >= Math.max(1, objetivo)) return (1L << i) / 1000.0;
+        }
+        return (1L << (RANGOS - 1)) / 1000.0;
+    }
+
+    /** Texto de una línea para pasar el histograma entre procesos. */
+    String codificar() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < RANGOS; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(cuentas.get(i));
+        }
+        return sb.toString();
+    }
+
+    static long[] decodificar(String texto) {
+        return Arrays.stream(texto.split(",")).mapToLong(Long::parseLong).toArray();
+    }
+
+    /** Resumen "p50 ≤ x ms, p99 ≤ y ms" para reportes. */
+    String resumen() {
+        return String.format(Locale.ROOT, "p50 <= %.3f ms, p99 <= %.3f ms (%d muestras)",
+                percentilMs(50), percentilMs(99), total());
+    }
+}
@@ -0,0 +1,276 @@
+package main.servidor;
+
+import com.sun.net.httpserver.HttpExchange;
+import foro.TipoCambio;
+import main.persistencia.Json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Canal de eventos de cambio del servidor del foro, en formato Server-Sent Events.
+ * <p>
+ * Cada cambio recibe una secuencia creciente y se guarda en un búfer circular de los últimos
+ * {@link #CAPACIDAD} eventos. Publicar solo encola el evento; cada cliente se escribe por
+ * separado, en un hilo de un grupo que solo se ocupa mientras haya algo que enviarle, así que
+ * un cliente lento no frena ni a quien hace el cambio ni a los demás clientes. Un cliente que
+ * se reconecta indica la última secuencia que aplicó y recibe los eventos siguientes; si ya no
+ * están en el búfer, o son de otra ejecución del servidor (otra época), recibe un evento
+ * {@link TipoCambio#RECARGA}. Lo mismo pasa si un cliente conectado se atrasa tanto que sus
+ * eventos salen del búfer, y si una escritura tarda más de {@link #PLAZO_ESCRITURA_MS} ms el
+ * cliente se da por perdido: se interrumpe el hilo que le escribe, lo que cierra la conexión
+ * y devuelve el hilo al grupo.
+ * <p>
+ * Sin cambios no hay tráfico salvo un comentario cada {@link #INTERVALO_LATIDO_MS} ms, que
+ * mantiene viva la conexión y permite descartar clientes desconectados.
+ */
+final class CanalEventos {
+    static final int CAPACIDAD = 4096;
+    static final long INTERVALO_LATIDO_MS = TimeUnit.SECONDS.toMillis(25);
+    static final long PLAZO_ESCRITURA_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final long INTERVALO_VIGILANCIA_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final byte[] RECARGA = ("event: " + TipoCambio.RECARGA.name() + "\ndata: {}\n\n").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LATIDO = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final Logger logger = Logger.getLogger(CanalEventos.class.getName());
+
+    /** Identifica esta ejecución del servidor: las secuencias de otra ejecución no sirven. */
+    private final String epoca = Long.toString(System.currentTimeMillis(), 36);
+    // Protegidos por this
+    private final ArrayDeque<Evento> recientes = new ArrayDeque<>();
+    private final List<Suscriptor> suscriptores = new ArrayList<>();
+    private long secuencia = 0;
+    private boolean cerrado = false;
+    private long proximoLatido = System.currentTimeMillis() + INTERVALO_LATIDO_MS;
+
+    private final ExecutorService escritores;
+    private final ScheduledExecutorService vigilante;
+
+    private static final class Evento {
+        final long secuencia;
+        final byte[] bytes;
+
+        Evento(long secuencia, byte[] bytes) {
+            this.secuencia = secuencia;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Estado de un cliente conectado; sus campos están protegidos por el canal.
+     */
+    private static final class Suscriptor {
+        final HttpExchange intercambio;
+        final OutputStream salida;
+        /** Última secuencia enviada a este cliente */
+        long enviada;
+        /** El cliente debe recargar antes de recibir eventos */
+        boolean recargar;
+        boolean latido;
+        /** Hay un hilo escribiendo a este cliente */
+        boolean enCurso;
+        /** Momento en que empezó la escritura en curso */
+        long inicioEscritura;
+        /** Hilo que escribe a este cliente, mientras hay una escritura en curso */
+        Thread escritor;
+        /** Se quitó del canal; quien termine de escribirle cierra la conexión */
+        boolean retirado;
+
+        Suscriptor(HttpExchange intercambio, long enviada, boolean recargar) {
+            this.intercambio = intercambio;
+            this.salida = intercambio.getResponseBody();
+            this.enviada = enviada;
+            this.recargar = recargar;
+        }
+    }
+
+    CanalEventos() {
+        AtomicInteger contador = new AtomicInteger();
+        escritores = Executors.newCachedThreadPool(tarea -> {
+            Thread hilo = new Thread(tarea, "eventos-foro-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        vigilante = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "eventos-foro-vigilante");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        vigilante.scheduleWithFixedDelay(this::vigilar, INTERVALO_VIGILANCIA_MS, INTERVALO_VIGILANCIA_MS, TimeUnit.MILLISECONDS);
+    }
+
+    String getEpoca() { return epoca; }
+
+    synchronized long getSecuencia() { return secuencia; }
+
+    /**
+     * Encola un cambio para todos los clientes conectados. Se llama con el bloqueo del servicio
+     * de ideas tomado, para que el orden de los eventos sea el de los cambios.
+     * @return La secuencia asignada.
+     */
+    synchronized long publicar(TipoCambio tipo, Map<String, Object> datos) {
+        long nueva = ++secuencia;
+        String texto = "id: " + nueva + "\nevent: " + tipo.name() + "\ndata: " + Json.escribir(datos) + "\n\n";
+        recientes.addLast(new Evento(nueva, texto.getBytes(StandardCharsets.UTF_8)));
+        if (recientes.size() > CAPACIDAD) recientes.removeFirst();
+        for (Suscriptor s : suscriptores) programar(s);
+        return nueva;
+    }
+
+    /**
+     * Deja abierta la respuesta como flujo de eventos. Retorna de inmediato: los eventos se
+     * escriben en los hilos del canal.
+     * @param desde Última secuencia que el cliente ya aplicó.
+     * @param epocaCliente Época en que se obtuvo esa secuencia, o null si el cliente no tiene ninguna.
+     */
+    void suscribir(HttpExchange intercambio, long desde, String epocaCliente) throws IOException {
+        intercambio.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        intercambio.getResponseHeaders().set("Cache-Control", "no-cache");
+        intercambio.sendResponseHeaders(200, 0);
+        synchronized (this) {
+            if (cerrado) {
+                intercambio.close();
+                return;
+            }
+            boolean perdidos = !epoca.equals(epocaCliente) || desde > secuencia;
+            Suscriptor suscriptor = new Suscriptor(intercambio, perdidos ? secuencia : desde, perdidos);
+            suscriptores.add(suscriptor);
+            programar(suscriptor);
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones y detiene los hilos del canal.
+     */
+    void cerrar() {
+        List<Suscriptor> libres = new ArrayList<>();
+        synchronized (this) {
+            cerrado = true;
+            for (Suscriptor s : suscriptores) {
+                s.retirado = true;
+                if (!s.enCurso) libres.add(s);
+            }
+            suscriptores.clear();
+        }
+        vigilante.shutdownNow();
+        escritores.shutdown();
+        for (Suscriptor s : libres) s.intercambio.close();
+        try {
+            escritores.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    synchronized int getConectados() { return suscriptores.size(); }
+
+    /**
+     * Pone a escribir a un cliente si tiene algo pendiente y nadie le está escribiendo.
+     * Se llama con el bloqueo del canal tomado.
+     */
+    private void programar(Suscriptor s) {
+        if (s.enCurso || s.retirado || cerrado) return;
+        if (!s.recargar && !s.latido && s.enviada >= secuencia) return;
+        s.enCurso = true;
+        escritores.execute(() -> escribir(s));
+    }
+
+    /**
+     * Escribe a un cliente todo lo que tenga pendiente, fuera del bloqueo del canal, hasta que
+     * no quede nada. Si el cliente se atrasó más que el búfer, recibe {@link TipoCambio#RECARGA}
+     * en vez de los eventos que faltan.
+     */
+    private void escribir(Suscriptor s) {
+        try {
+            escribirPendientes(s);
+        } finally {
+            // Si el vigilante interrumpió la escritura, el hilo vuelve al grupo sin la marca
+            Thread.interrupted();
+        }
+    }
+
+    private void escribirPendientes(Suscriptor s) {
+        while (true) {
+            List<byte[]> bloques = new ArrayList<>();
+            synchronized (this) {
+                if (s.retirado) {
+                    s.enCurso = false;
+                    s.escritor = null;
+                    break;
+                }
+                long primera = recientes.isEmpty() ? secuencia + 1 : recientes.peekFirst().secuencia;
+                if (s.enviada + 1 < primera) {
+                    s.recargar = true;
+                    s.enviada = secuencia;
+                }
+                if (s.recargar) bloques.add(RECARGA);
+                for (Evento e : recientes) {
+                    if (e.secuencia > s.enviada) bloques.add(e.bytes);
+                }
+                if (s.latido) bloques.add(LATIDO);
+                if (bloques.isEmpty()) {
+                    s.enCurso = false;
+                    s.escritor = null;
+                    return;
+                }
+                s.recargar = false;
+                s.latido = false;
+                s.enviada = secuencia;
+                s.inicioEscritura = System.currentTimeMillis();
+                s.escritor = Thread.currentThread();
+            }
+            try {
+                for (byte[] bloque : bloques) s.salida.write(bloque);
+                s.salida.flush();
+            } catch (IOException e) {
+                logger.fine("Cliente de eventos desconectado: " + e.getMessage());
+                synchronized (this) {
+                    suscriptores.remove(s);
+                    s.retirado = true;
+                    s.enCurso = false;
+                    s.escritor = null;
+                }
+                break;
+            }
+        }
+        // El cliente se retiró mientras se le escribía (o la escritura falló)
+        s.intercambio.close();
+    }
+
+    /**
+     * Cada segundo: marca el latido cuando toca y retira a los clientes cuya escritura lleva más
+     * que el plazo bloqueada (ventana TCP llena). Cerrar el intercambio no sirve, porque también
+     * escribe en el socket bloqueado; en cambio, interrumpir al hilo bloqueado en el canal del
+     * socket cierra la conexión, y la escritura falla y libera el hilo.
+     */
+    private void vigilar() {
+        long ahora = System.currentTimeMillis();
+        synchronized (this) {
+            boolean latido = ahora >= proximoLatido;
+            if (latido) proximoLatido = ahora + INTERVALO_LATIDO_MS;
+            for (int i = suscriptores.size() - 1; i >= 0; i--) {
+                Suscriptor s = suscriptores.get(i);
+                if (s.enCurso && ahora - s.inicioEscritura > PLAZO_ESCRITURA_MS) {
+                    logger.warning("Cliente de eventos sin leer por más de " + PLAZO_ESCRITURA_MS + " ms; se desconecta");
+                    s.retirado = true;
+                    suscriptores.remove(i);
+                    if (s.escritor != null) s.escritor.interrupt();
+                } else if (latido) {
+                    s.latido = true;
+                    programar(s);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,511 @@
+package main.servidor;
+
+import auth.AuthService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import foro.CodecJsonIdeas;
+import foro.Comentario;
+import foro.Idea;
+import foro.IdeaService;
+import foro.TipoCambio;
+import main.persistencia.ConfiguracionAlmacen;
+import main.persistencia.Json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Servidor HTTP/JSON del foro: un solo proceso tiene el {@link IdeaService} autoritativo en
+ * memoria y los clientes ({@link foro.IdeaServiceRemoto}) le piden los cambios por la red, en
+ * vez de escribir cada uno en la carpeta compartida. La consistencia queda en este proceso
+ * (los métodos del servicio están sincronizados) y no hay bloqueos de archivos en el camino de
+ * cada cambio; la persistencia sigue siendo la del servicio (diario y almacén configurado).
+ * <p>
+ * API, con cuerpos en JSON ({@link CodecJsonIdeas}):
+ * <pre>
+ * POST   /api/usuarios                           {"usuario": ..., "contrasena": ...} registra (201)
+ * POST   /api/sesiones                           {"usuario": ..., "contrasena": ...} -> {"token": ...} (201)
+ * DELETE /api/sesiones                           cierra la sesión del token (204)
+ * GET    /api/ideas                              todas las ideas
+ * POST   /api/ideas                              agrega una idea (201) [sesión]
+ * GET    /api/ideas/{id}                         una idea
+ * DELETE /api/ideas/{id}                         elimina una idea (204) [admin]
+ * PUT    /api/ideas/{id}/estado                  {"estado": "APROBADA" | "DESAPROBADA"} [admin]
+ * POST   /api/ideas/{id}/votos                   {"calificacion": 1..5} [sesión]
+ * POST   /api/ideas/{id}/comentarios             {"texto": ...} (201) [sesión]
+ * POST   /api/ideas/{id}/comentarios/eliminar    el comentario a eliminar, con su fecha [admin]
+ * GET    /api/eventos?desde={secuencia}&epoca={epoca}   flujo de cambios (text/event-stream)
+ * </pre>
+ * Las consultas son públicas. Los cambios marcados requieren {@code Authorization: Bearer <token>}
+ * con el token de {@code POST /api/sesiones} (ver {@link Sesiones}); el voto y el autor del comentario
+ * son los del usuario de la sesión, y aprobar, desaprobar y eliminar quedan para el
+ * administrador. Los usuarios son los del {@link AuthService} del servidor.
+ * <p>
+ * {@code GET /api/ideas} incluye la {@code epoca} y la {@code secuencia} del último cambio que
+ * refleja; con ellas el cliente abre {@code /api/eventos} y recibe, sin consultar periódicamente,
+ * cada cambio posterior como un evento {@link TipoCambio} (ver {@link CanalEventos}).
+ * Los errores responden {@code {"error": "..."}} con 400, 401, 403, 404, 405 o 409. Por defecto
+ * solo escucha en {@code 127.0.0.1}; para la red local se configura
+ * {@code foro.servidor.direccion=0.0.0.0}. Las contraseñas viajan sin cifrar, así que no conviene
+ * exponerlo fuera de una red de confianza.
+ * <p>
+ * Uso: {@code java -cp bin main.servidor.ServidorForo}, con {@code foro.servidor.puerto}
+ * (por defecto {@value #PUERTO_POR_DEFECTO}) en {@code foro.properties} o como propiedad de sistema.
+ */
+public final class ServidorForo {
+    public static final String CLAVE_DIRECCION = "foro.servidor.direccion";
+    public static final String CLAVE_PUERTO = "foro.servidor.puerto";
+    public static final int PUERTO_POR_DEFECTO = 8085;
+    private static final String PREFIJO = "/api/ideas";
+    private static final String RUTA_EVENTOS = "/api/eventos";
+    private static final String RUTA_SESIONES = "/api/sesiones";
+    private static final String RUTA_USUARIOS = "/api/usuarios";
+    /** Usuario que modera las ideas, el mismo que reconoce la aplicación de escritorio */
+    private static final String ADMINISTRADOR = "admin";
+    private static final int MAX_CUERPO = 1024 * 1024;
+    private static final List<String> ACCIONES = List.of("", "estado", "votos", "comentarios", "comentarios/eliminar");
+
+    private static final Logger logger = Logger.getLogger(ServidorForo.class.getName());
+
+    static {
+        // Sin esto, el servidor del JDK aplica Nagle a las respuestas y cada solicitud espera el
+        // ACK retardado del cliente (unos 40 ms); con él, un voto en localhost toma alrededor de 1 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final IdeaService ideas;
+    private final AuthService usuarios;
+    private final Sesiones sesiones = new Sesiones();
+    private final HttpServer servidor;
+    private final ExecutorService ejecutor;
+    private final CanalEventos eventos = new CanalEventos();
+
+    /**
+     * Crea el servidor sin iniciarlo.
+     * @param ideas Servicio autoritativo; el servidor no lo cierra.
+     * @param usuarios Usuarios que pueden iniciar sesión.
+     * @param direccion Dirección y puerto de escucha (puerto 0 para uno libre).
+     */
+    public ServidorForo(IdeaService ideas, AuthService usuarios, InetSocketAddress direccion) throws IOException {
+        this.ideas = ideas;
+        this.usuarios = usuarios;
+        this.servidor = HttpServer.create(direccion, 0);
+        this.ejecutor = crearEjecutor();
+        servidor.createContext(PREFIJO, intercambio -> atender(intercambio, this::despachar));
+        servidor.createContext(RUTA_SESIONES, intercambio -> atender(intercambio, this::despacharSesiones));
+        servidor.createContext(RUTA_USUARIOS, intercambio -> atender(intercambio, this::despacharUsuarios));
+        servidor.createContext(RUTA_EVENTOS, this::suscribir);
+        servidor.setExecutor(ejecutor);
+    }
+
+    /**
+     * Empieza a atender solicitudes.
+     */
+    public void iniciar() {
+        servidor.start();
+    }
+
+    /**
+     * Cierra los flujos de eventos, deja de aceptar conexiones y espera hasta un segundo a que
+     * terminen las solicitudes en curso.
+     */
+    public void detener() {
+        eventos.cerrar();
+        servidor.stop(1);
+        ejecutor.shutdown();
+    }
+
+    /**
+     * Puerto en que escucha el servidor.
+     */
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Desde el JDK 21 cada solicitud se atiende en un hilo virtual; en versiones anteriores, en un
+     * grupo de hilos de plataforma. Las solicitudes solo esperan el bloqueo del servicio, así que
+     * un grupo pequeño basta.
+     */
+    private static ExecutorService crearEjecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger contador = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2), tarea -> {
+                Thread hilo = new Thread(tarea, "servidor-foro-" + contador.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+    }
+
+    /**
+     * Atiende una ruta de la API a partir del contexto al que pertenece.
+     */
+    private interface Manejador {
+        void despachar(HttpExchange intercambio, String metodo, List<String> partes) throws IOException;
+    }
+
+    private void atender(HttpExchange intercambio, Manejador manejador) throws IOException {
+        try {
+            String ruta = intercambio.getRequestURI().getPath().substring(intercambio.getHttpContext().getPath().length());
+            List<String> partes = new ArrayList<>();
+            for (String parte : ruta.split("/")) {
+                if (!parte.isEmpty()) partes.add(parte);
+            }
+            manejador.despachar(intercambio, intercambio.getRequestMethod(), partes);
+        } catch (ErrorHttp e) {
+            responder(intercambio, e.codigo, Collections.singletonMap("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            responder(intercambio, 400, Collections.singletonMap("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Error atendiendo " + intercambio.getRequestURI(), e);
+            responder(intercambio, 500, Collections.singletonMap("error", "Error interno del servidor"));
+        } finally {
+            intercambio.close();
+        }
+    }
+
+    /**
+     * Abre un flujo de eventos. El intercambio queda abierto después de retornar: lo escribe y
+     * lo cierra {@link CanalEventos}, sin ocupar un hilo del servidor por cliente.
+     */
+    private void suscribir(HttpExchange intercambio) throws IOException {
+        try {
+            if (!intercambio.getRequestMethod().equals("GET")) throw new ErrorHttp(405, "Método no permitido: " + intercambio.getRequestMethod());
+            if (!intercambio.getRequestURI().getPath().equals(RUTA_EVENTOS)) throw new ErrorHttp(404, "Ruta desconocida");
+            Map<String, String> parametros = parametros(intercambio.getRequestURI().getRawQuery());
+            // Al reconectarse por su cuenta, un EventSource manda la última secuencia en Last-Event-ID
+            String desde = parametros.getOrDefault("desde", intercambio.getRequestHeaders().getFirst("Last-Event-ID"));
+            long secuencia;
+            try {
+                secuencia = desde == null ? -1 : Long.parseLong(desde);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Secuencia inválida: " + desde);
+            }
+            eventos.suscribir(intercambio, secuencia, parametros.get("epoca"));
+        } catch (ErrorHttp e) {
+            responder(intercambio, e.codigo, Collections.singletonMap("error", e.getMessage()));
+            intercambio.close();
+        } catch (IllegalArgumentException e) {
+            responder(intercambio, 400, Collections.singletonMap("error", e.getMessage()));
+            intercambio.close();
+        }
+    }
+
+    private static Map<String, String> parametros(String consulta) {
+        Map<String, String> parametros = new LinkedHashMap<>();
+        if (consulta == null) return parametros;
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) {
+                parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parametros;
+    }
+
+    private void despachar(HttpExchange intercambio, String metodo, List<String> partes) throws IOException {
+        if (partes.isEmpty()) {
+            if (metodo.equals("GET")) {
+                responder(intercambio, 200, todas());
+            } else if (metodo.equals("POST")) {
+                usuarioDeSesion(intercambio);
+                responder(intercambio, 201, agregar(leerCuerpo(intercambio)));
+            } else {
+                throw new ErrorHttp(405, "Método no permitido: " + metodo);
+            }
+            return;
+        }
+
+        long id;
+        try {
+            id = Long.parseLong(partes.get(0));
+        } catch (NumberFormatException e) {
+            throw new ErrorHttp(404, "Ruta desconocida");
+        }
+        String accion = String.join("/", partes.subList(1, partes.size()));
+        switch (metodo + " " + accion) {
+            case "GET ": {
+                Map<String, Object> idea;
+                synchronized (ideas) {
+                    idea = CodecJsonIdeas.aMapa(buscar(id));
+                }
+                responder(intercambio, 200, idea);
+                break;
+            }
+            case "DELETE ":
+                exigirAdministrador(intercambio);
+                eliminar(id);
+                responder(intercambio, 204, null);
+                break;
+            case "PUT estado":
+                exigirAdministrador(intercambio);
+                responder(intercambio, 200, cambiarEstado(id, leerCuerpo(intercambio)));
+                break;
+            case "POST votos":
+                responder(intercambio, 200, votar(id, usuarioDeSesion(intercambio), leerCuerpo(intercambio)));
+                break;
+            case "POST comentarios":
+                responder(intercambio, 201, comentar(id, usuarioDeSesion(intercambio), leerCuerpo(intercambio)));
+                break;
+            case "POST comentarios/eliminar":
+                exigirAdministrador(intercambio);
+                eliminarComentario(id, leerCuerpo(intercambio));
+                responder(intercambio, 204, null);
+                break;
+            default:
+                boolean rutaConocida = ACCIONES.contains(accion);
+                throw new ErrorHttp(rutaConocida ? 405 : 404, rutaConocida ? "Método no permitido: " + metodo : "Ruta desconocida");
+        }
+    }
+
+    private void despacharSesiones(HttpExchange intercambio, String metodo, List<String> partes) throws IOException {
+        if (!partes.isEmpty()) throw new ErrorHttp(404, "Ruta desconocida");
+        if (metodo.equals("POST")) {
+            Map<String, Object> cuerpo = leerCuerpo(intercambio);
+            String usuario = campoTexto(cuerpo, "usuario");
+            String contrasena = campoTexto(cuerpo, "contrasena");
+            boolean valido;
+            synchronized (usuarios) {
+                valido = usuarios.iniciarSesion(usuario, contrasena) != null;
+            }
+            if (!valido) throw new ErrorHttp(401, "Usuario o contraseña incorrectos");
+            Map<String, Object> respuesta = new LinkedHashMap<>();
+            respuesta.put("usuario", usuario);
+            respuesta.put("token", sesiones.abrir(usuario));
+            responder(intercambio, 201, respuesta);
+        } else if (metodo.equals("DELETE")) {
+            String token = token(intercambio);
+            if (token != null) sesiones.cerrar(token);
+            responder(intercambio, 204, null);
+        } else {
+            throw new ErrorHttp(405, "Método no permitido: " + metodo);
+        }
+    }
+
+    private void despacharUsuarios(HttpExchange intercambio, String metodo, List<String> partes) throws IOException {
+        if (!partes.isEmpty()) throw new ErrorHttp(404, "Ruta desconocida");
+        if (!metodo.equals("POST")) throw new ErrorHttp(405, "Método no permitido: " + metodo);
+        Map<String, Object> cuerpo = leerCuerpo(intercambio);
+        String usuario = campoTexto(cuerpo, "usuario");
+        String contrasena = campoTexto(cuerpo, "contrasena");
+        boolean registrado;
+        synchronized (usuarios) {
+            registrado = usuarios.registrarUsuario(usuario, contrasena);
+        }
+        if (!registrado) throw new ErrorHttp(409, "El usuario ya existe");
+        responder(intercambio, 201, Collections.singletonMap("usuario", usuario));
+    }
+
+    private static String campoTexto(Map<String, Object> cuerpo, String campo) {
+        Object valor = cuerpo.get(campo);
+        if (!(valor instanceof String) || ((String) valor).isEmpty()) throw new IllegalArgumentException("Falta el campo " + campo);
+        return (String) valor;
+    }
+
+    private static String token(HttpExchange intercambio) {
+        String cabecera = intercambio.getRequestHeaders().getFirst("Authorization");
+        if (cabecera == null || !cabecera.startsWith("Bearer ")) return null;
+        return cabecera.substring("Bearer ".length()).trim();
+    }
+
+    /**
+     * Usuario de la sesión de la solicitud.
+     * @throws ErrorHttp 401 si la solicitud no trae una sesión vigente.
+     */
+    private String usuarioDeSesion(HttpExchange intercambio) {
+        String token = token(intercambio);
+        String usuario = token == null ? null : sesiones.usuario(token);
+        if (usuario == null) throw new ErrorHttp(401, "Se requiere iniciar sesión");
+        return usuario;
+    }
+
+    private void exigirAdministrador(HttpExchange intercambio) {
+        if (!usuarioDeSesion(intercambio).equals(ADMINISTRADOR)) throw new ErrorHttp(403, "Solo el administrador puede hacerlo");
+    }
+
+    /**
+     * Las ideas se convierten con el bloqueo del servicio tomado, para no leer una idea a medio
+     * cambiar; como los eventos se publican con el mismo bloqueo, la secuencia devuelta es
+     * exactamente la del último cambio incluido.
+     */
+    private Map<String, Object> todas() {
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        synchronized (ideas) {
+            List<Object> lista = new ArrayList<>(ideas.getIdeas().size());
+            for (Idea idea : ideas.getIdeas()) lista.add(CodecJsonIdeas.aMapa(idea));
+            respuesta.put("epoca", eventos.getEpoca());
+            respuesta.put("secuencia", eventos.getSecuencia());
+            respuesta.put("ideas", lista);
+        }
+        return respuesta;
+    }
+
+    /**
+     * Datos de un evento sobre una idea; se completan con los campos del cambio.
+     */
+    private static Map<String, Object> evento(Idea idea) {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("id", idea.getId());
+        return datos;
+    }
+
+    private Map<String, Object> agregar(Map<String, Object> cuerpo) {
+        Idea idea = CodecJsonIdeas.leerIdea(cuerpo);
+        if (idea.getEstado() != Idea.Estado.PENDIENTE) throw new IllegalArgumentException("Las ideas nuevas quedan pendientes");
+        synchronized (ideas) {
+            if (ideas.getIdea(idea.getId()) != null) throw new ErrorHttp(409, "Ya existe la idea " + idea.getId());
+            ideas.agregarIdea(idea);
+            Map<String, Object> mapa = CodecJsonIdeas.aMapa(idea);
+            Map<String, Object> datos = evento(idea);
+            datos.put("idea", mapa);
+            eventos.publicar(TipoCambio.IDEA_AGREGADA, datos);
+            return mapa;
+        }
+    }
+
+    private Map<String, Object> cambiarEstado(long id, Map<String, Object> cuerpo) {
+        Object nombre = cuerpo.get("estado");
+        if (!(nombre instanceof String)) throw new IllegalArgumentException("Falta el campo estado");
+        Idea.Estado estado = CodecJsonIdeas.leerEstado((String) nombre);
+        synchronized (ideas) {
+            Idea idea = buscar(id);
+            if (estado == Idea.Estado.APROBADA) ideas.aprobarIdea(idea);
+            else if (estado == Idea.Estado.DESAPROBADA) ideas.desaprobarIdea(idea);
+            else throw new IllegalArgumentException("Una idea no puede volver a quedar pendiente");
+            Map<String, Object> datos = evento(idea);
+            datos.put("estado", idea.getEstado().name());
+            datos.put("version", idea.getVersion());
+            eventos.publicar(TipoCambio.ESTADO, datos);
+            return CodecJsonIdeas.aMapa(idea);
+        }
+    }
+
+    private Map<String, Object> votar(long id, String usuario, Map<String, Object> cuerpo) {
+        Object calificacion = cuerpo.get("calificacion");
+        if (!(calificacion instanceof Long) || (Long) calificacion < 1 || (Long) calificacion > Idea.MAX_ESTRELLAS) {
+            throw new IllegalArgumentException("La calificación debe estar entre 1 y " + Idea.MAX_ESTRELLAS);
+        }
+        synchronized (ideas) {
+            Idea idea = buscar(id);
+            ideas.votarIdea(idea, usuario, ((Long) calificacion).intValue());
+            Map<String, Object> datos = evento(idea);
+            datos.put("usuario", usuario);
+            datos.put("calificacion", calificacion);
+            eventos.publicar(TipoCambio.VOTO, datos);
+            return CodecJsonIdeas.aMapa(idea);
+        }
+    }
+
+    private Map<String, Object> comentar(long id, String autor, Map<String, Object> cuerpo) {
+        cuerpo.put("autor", autor);
+        Comentario comentario = CodecJsonIdeas.leerComentario(cuerpo);
+        Map<String, Object> mapa = CodecJsonIdeas.aMapa(comentario);
+        synchronized (ideas) {
+            Idea idea = buscar(id);
+            ideas.agregarComentario(idea, comentario);
+            Map<String, Object> datos = evento(idea);
+            datos.put("comentario", mapa);
+            eventos.publicar(TipoCambio.COMENTARIO, datos);
+        }
+        return mapa;
+    }
+
+    private void eliminarComentario(long id, Map<String, Object> cuerpo) {
+        Comentario buscado = CodecJsonIdeas.leerComentario(cuerpo);
+        synchronized (ideas) {
+            Idea idea = buscar(id);
+            for (Comentario comentario : idea.getComentarios()) {
+                if (CodecJsonIdeas.mismoComentario(comentario, buscado)) {
+                    ideas.eliminarComentario(idea, comentario);
+                    Map<String, Object> datos = evento(idea);
+                    datos.put("comentario", CodecJsonIdeas.aMapa(comentario));
+                    eventos.publicar(TipoCambio.COMENTARIO_ELIMINADO, datos);
+                    return;
+                }
+            }
+        }
+        throw new ErrorHttp(404, "No existe el comentario");
+    }
+
+    private void eliminar(long id) {
+        synchronized (ideas) {
+            Idea idea = buscar(id);
+            ideas.eliminarIdea(idea);
+            eventos.publicar(TipoCambio.IDEA_ELIMINADA, evento(idea));
+        }
+    }
+
+    private Idea buscar(long id) {
+        Idea idea = ideas.getIdea(id);
+        if (idea == null) throw new ErrorHttp(404, "No existe la idea " + id);
+        return idea;
+    }
+
+    private static Map<String, Object> leerCuerpo(HttpExchange intercambio) throws IOException {
+        try (InputStream in = intercambio.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_CUERPO + 1);
+            if (bytes.length > MAX_CUERPO) throw new ErrorHttp(413, "El cuerpo supera " + MAX_CUERPO + " bytes");
+            return Json.leerObjeto(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void responder(HttpExchange intercambio, int codigo, Object cuerpo) throws IOException {
+        if (cuerpo == null) {
+            intercambio.sendResponseHeaders(codigo, -1);
+            return;
+        }
+        byte[] bytes = Json.escribir(cuerpo).getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(codigo, bytes.length);
+        try (OutputStream out = intercambio.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Error con el código HTTP que se debe responder.
+     */
+    private static final class ErrorHttp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int codigo;
+
+        ErrorHttp(int codigo, String mensaje) {
+            super(mensaje);
+            this.codigo = codigo;
+        }
+    }
+
+    /**
+     * Inicia el servidor con el almacén y la dirección configurados, y lo detiene al terminar la JVM.
+     */
+    public static void main(String[] args) throws IOException {
+        String direccion = ConfiguracionAlmacen.valor(CLAVE_DIRECCION, "127.0.0.1");
+        int puerto = Integer.parseInt(ConfiguracionAlmacen.valor(CLAVE_PUERTO, String.valueOf(PUERTO_POR_DEFECTO)));
+        IdeaService ideas = new IdeaService();
+        ServidorForo servidor = new ServidorForo(ideas, new AuthService(), new InetSocketAddress(direccion, puerto));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.detener();
+            ideas.cerrar();
+        }));
+        servidor.iniciar();
+        System.out.println("Servidor del foro en http://" + direccion + ":" + servidor.getPuerto() + PREFIJO);
+    }
+}
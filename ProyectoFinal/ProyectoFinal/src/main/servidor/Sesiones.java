@@ -0,0 +1,67 @@
+package main.servidor;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sesiones abiertas en el servidor del foro. Cada inicio de sesión correcto recibe un token
+ * aleatorio que el cliente envía en {@code Authorization: Bearer <token>}; el servidor toma de
+ * ahí el usuario que vota, comenta o modera, nunca del cuerpo de la solicitud.
+ * <p>
+ * Las sesiones viven en memoria: se pierden al reiniciar el servidor y vencen tras
+ * {@link #INACTIVIDAD_MS} ms sin usarse.
+ */
+final class Sesiones {
+    static final long INACTIVIDAD_MS = TimeUnit.HOURS.toMillis(12);
+    private static final int BYTES_TOKEN = 32;
+
+    private final SecureRandom aleatorio = new SecureRandom();
+    private final Map<String, Sesion> activas = new ConcurrentHashMap<>();
+
+    private static final class Sesion {
+        final String usuario;
+        volatile long ultimoUso;
+
+        Sesion(String usuario, long ultimoUso) {
+            this.usuario = usuario;
+            this.ultimoUso = ultimoUso;
+        }
+    }
+
+    /**
+     * Abre una sesión para un usuario ya autenticado.
+     * @return El token de la sesión.
+     */
+    String abrir(String usuario) {
+        long ahora = System.currentTimeMillis();
+        activas.values().removeIf(s -> ahora - s.ultimoUso > INACTIVIDAD_MS);
+        byte[] bytes = new byte[BYTES_TOKEN];
+        aleatorio.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        activas.put(token, new Sesion(usuario, ahora));
+        return token;
+    }
+
+    /**
+     * Usuario de una sesión abierta; renueva su vencimiento.
+     * @return El usuario, o null si el token no corresponde a una sesión vigente.
+     */
+    String usuario(String token) {
+        Sesion sesion = activas.get(token);
+        if (sesion == null) return null;
+        long ahora = System.currentTimeMillis();
+        if (ahora - sesion.ultimoUso > INACTIVIDAD_MS) {
+            activas.remove(token, sesion);
+            return null;
+        }
+        sesion.ultimoUso = ahora;
+        return sesion.usuario;
+    }
+
+    void cerrar(String token) {
+        activas.remove(token);
+    }
+}